@@ -173,8 +173,47 @@ public class Application implements ApplicationRunner {
 		appProperties.setMaxDecimals(FormatUtil.getIntValue(arguments.get("maxDecimals"), 5, 10));
 		appProperties.setMaxTextSize(FormatUtil.getIntValue(arguments.get("maxTextSize"), 500, 5000));
 		appProperties.setMaxNoofThreads(FormatUtil.getIntValue(arguments.get("noofParrallelChunks"), 1, 10)); 
+		appProperties.setNoofParallelTables(FormatUtil.getIntValue(arguments.get("noofParallelTables"), 1, 10));
+		appProperties.setSourceParallelFetches(FormatUtil.getIntValue(arguments.get("sourceParallelFetches"), 0, 10));
+		appProperties.setTargetParallelFetches(FormatUtil.getIntValue(arguments.get("targetParallelFetches"), 0, 10));
+		appProperties.setSourceRowsPerSecond(FormatUtil.getIntValue(arguments.get("sourceRowsPerSecond"), 0, 0));
+		appProperties.setSourceBytesPerSecond(FormatUtil.getIntValue(arguments.get("sourceBytesPerSecond"), 0, 0));
+		appProperties.setTargetRowsPerSecond(FormatUtil.getIntValue(arguments.get("targetRowsPerSecond"), 0, 0));
+		appProperties.setTargetBytesPerSecond(FormatUtil.getIntValue(arguments.get("targetBytesPerSecond"), 0, 0));
+		appProperties.setFetchRetries(FormatUtil.getIntValue(arguments.get("fetchRetries"), 3, 10));
+		appProperties.setResume((FormatUtil.getIntValue(arguments.get("resume"), 0, 0) == 1) ? true : false);
+		appProperties.setQueryTimeout(FormatUtil.getIntValue(arguments.get("queryTimeout"), 0, 0));
+		appProperties.setStuckChunkFactor(FormatUtil.getIntValue(arguments.get("stuckChunkFactor"), 0, 100));
+		appProperties.setMemoryBudgetPercent(FormatUtil.getIntValue(arguments.get("memoryBudgetPercent"), 80, 95));
 		appProperties.setCompareOnlyDate((FormatUtil.getIntValue(arguments.get("compareOnlyDate"), 0, 0) == 1) ? true : false);
 		appProperties.setDisplayCompleteData((FormatUtil.getIntValue(arguments.get("displayCompleteData"), 0, 0) == 1) ? true : false);
+		appProperties.setRowFingerprint((FormatUtil.getIntValue(arguments.get("rowFingerprint"), 0, 0) == 1) ? true : false);
+		
+		String lobHashAlgorithm = arguments.get("lobHashAlgorithm");
+		lobHashAlgorithm = (lobHashAlgorithm != null && !lobHashAlgorithm.isEmpty()) ? lobHashAlgorithm.toUpperCase() : "MD5";
+		appProperties.setLobHashAlgorithm(lobHashAlgorithm);
+		appProperties.setHashPushdown((FormatUtil.getIntValue(arguments.get("hashPushdown"), 0, 0) == 1) ? true : false);
+		appProperties.setChunkChecksum((FormatUtil.getIntValue(arguments.get("chunkChecksum"), 0, 0) == 1) ? true : false);
+		
+		String compareMode = arguments.get("compareMode");
+		compareMode = (compareMode != null && !compareMode.isEmpty()) ? compareMode : "Hash";
+		appProperties.setCompareMode(compareMode);
+		
+		String fetchThreadMode = arguments.get("fetchThreadMode");
+		fetchThreadMode = (fetchThreadMode != null && !fetchThreadMode.isEmpty()) ? fetchThreadMode : "Platform";
+		appProperties.setFetchThreadMode(fetchThreadMode);
+		
+		String chunkPlanner = arguments.get("chunkPlanner");
+		chunkPlanner = (chunkPlanner != null && !chunkPlanner.isEmpty()) ? chunkPlanner : "Ntile";
+		appProperties.setChunkPlanner(chunkPlanner);
+		
+		String keylessStrategy = arguments.get("keylessStrategy");
+		keylessStrategy = (keylessStrategy != null && !keylessStrategy.isEmpty()) ? keylessStrategy : "RowNumber";
+		appProperties.setKeylessStrategy(keylessStrategy);
+		
+		String chunkStrategy = arguments.get("chunkStrategy");
+		chunkStrategy = (chunkStrategy != null && !chunkStrategy.isEmpty()) ? chunkStrategy : "Range";
+		appProperties.setChunkStrategy(chunkStrategy);
 		
 		String jobName = arguments.get("jobName");
 		jobName = (jobName != null && !jobName.isEmpty()) ? jobName : "data_comparison_result";
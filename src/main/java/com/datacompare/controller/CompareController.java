@@ -34,6 +34,8 @@ public class CompareController {
 	
 	private Boolean toolRunning = Boolean.FALSE;
 	
+	private volatile CompareService runningService = null;
+	
 	public static String reportFileName = "XXX";
 	
 	public static String reportOutputFolder = null;
@@ -45,6 +47,7 @@ public class CompareController {
 			
 			model.addAttribute("msg", "Data Compare is in progress.");
 			model.addAttribute("fileName", reportFileName);
+			model.addAttribute("running", toolRunning);
 			
 			return "result";
 			
@@ -68,6 +71,7 @@ public class CompareController {
 	@GetMapping("/result")
 	public String result(Model model, HttpServletRequest request) {
 		model.addAttribute("msg", toolRunning.booleanValue() ? "Data Compare is in progress." : "Data Compare completed.");
+		model.addAttribute("running", toolRunning);
 		
 		if(!"XXX".equals(reportFileName)) {
 			
@@ -100,9 +104,30 @@ public class CompareController {
 		reportFileName = "XXX";
 		
 		CompareService compareService = new CompareService();
-		compareService.startService(appProperties); 
+		runningService = compareService;
 		
-		toolRunning = Boolean.FALSE;
+		try {
+			
+			compareService.startService(appProperties); 
+			
+		} finally {
+			
+			runningService = null;
+			toolRunning = Boolean.FALSE;
+		}
+		
+		return "redirect:/result";
+	}
+	
+	@PostMapping("/cancel")
+	public String cancel() {
+		
+		CompareService compareService = runningService;
+		
+		if (compareService != null) {
+			
+			compareService.cancel();
+		}
 		
 		return "redirect:/result";
 	}
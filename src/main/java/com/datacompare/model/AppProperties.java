@@ -80,6 +80,48 @@ public class AppProperties {
 
 	private boolean sourceSSLRequire;
 
+	private boolean rowFingerprint;
+
+	private String lobHashAlgorithm = "MD5";
+
+	private boolean hashPushdown;
+
+	private boolean chunkChecksum;
+
+	private String compareMode = "Hash";
+
+	private int noofParallelTables = 1;
+
+	private String fetchThreadMode = "Platform";
+
+	private int memoryBudgetPercent = 80;
+
+	private int sourceParallelFetches;
+
+	private int targetParallelFetches;
+
+	private int sourceRowsPerSecond = 0;
+
+	private int sourceBytesPerSecond = 0;
+
+	private int targetRowsPerSecond = 0;
+
+	private int targetBytesPerSecond = 0;
+
+	private boolean resume;
+
+	private int fetchRetries = 3;
+
+	private int queryTimeout = 0;
+
+	private int stuckChunkFactor = 0;
+
+	private String chunkPlanner = "Ntile";
+
+	private String keylessStrategy = "RowNumber";
+
+	private String chunkStrategy = "Range";
+
 	/**
 	 * @return the fetchSize
 	 */
@@ -540,6 +582,300 @@ public class AppProperties {
 		this.sourceSSLRequire = sourceSSLRequire;
 	}
 
+	/**
+	 * @return the rowFingerprint
+	 */
+	public boolean isRowFingerprint() {
+		return rowFingerprint;
+	}
+
+	/**
+	 * @param rowFingerprint the rowFingerprint to set
+	 */
+	public void setRowFingerprint(boolean rowFingerprint) {
+		this.rowFingerprint = rowFingerprint;
+	}
+
+	/**
+	 * @return the lobHashAlgorithm
+	 */
+	public String getLobHashAlgorithm() {
+		return lobHashAlgorithm;
+	}
+
+	/**
+	 * @param lobHashAlgorithm the lobHashAlgorithm to set
+	 */
+	public void setLobHashAlgorithm(String lobHashAlgorithm) {
+		this.lobHashAlgorithm = lobHashAlgorithm;
+	}
+
+	/**
+	 * @return the hashPushdown
+	 */
+	public boolean isHashPushdown() {
+		return hashPushdown;
+	}
+
+	/**
+	 * @param hashPushdown the hashPushdown to set
+	 */
+	public void setHashPushdown(boolean hashPushdown) {
+		this.hashPushdown = hashPushdown;
+	}
+
+	/**
+	 * @return the chunkChecksum
+	 */
+	public boolean isChunkChecksum() {
+		return chunkChecksum;
+	}
+
+	/**
+	 * @param chunkChecksum the chunkChecksum to set
+	 */
+	public void setChunkChecksum(boolean chunkChecksum) {
+		this.chunkChecksum = chunkChecksum;
+	}
+
+	/**
+	 * @return the compareMode
+	 */
+	public String getCompareMode() {
+		return compareMode;
+	}
+
+	/**
+	 * @param compareMode the compareMode to set
+	 */
+	public void setCompareMode(String compareMode) {
+		this.compareMode = compareMode;
+	}
+
+	/**
+	 * @return the noofParallelTables
+	 */
+	public int getNoofParallelTables() {
+		return noofParallelTables;
+	}
+
+	/**
+	 * @param noofParallelTables the noofParallelTables to set
+	 */
+	public void setNoofParallelTables(int noofParallelTables) {
+		this.noofParallelTables = noofParallelTables;
+	}
+
+	/**
+	 * @return the fetchThreadMode
+	 */
+	public String getFetchThreadMode() {
+		return fetchThreadMode;
+	}
+
+	/**
+	 * @param fetchThreadMode the fetchThreadMode to set
+	 */
+	public void setFetchThreadMode(String fetchThreadMode) {
+		this.fetchThreadMode = fetchThreadMode;
+	}
+
+	/**
+	 * @return the memoryBudgetPercent
+	 */
+	public int getMemoryBudgetPercent() {
+		return memoryBudgetPercent;
+	}
+
+	/**
+	 * @param memoryBudgetPercent the memoryBudgetPercent to set
+	 */
+	public void setMemoryBudgetPercent(int memoryBudgetPercent) {
+		this.memoryBudgetPercent = memoryBudgetPercent;
+	}
+
+	/**
+	 * @return the sourceParallelFetches
+	 */
+	public int getSourceParallelFetches() {
+		return sourceParallelFetches;
+	}
+
+	/**
+	 * @param sourceParallelFetches the sourceParallelFetches to set
+	 */
+	public void setSourceParallelFetches(int sourceParallelFetches) {
+		this.sourceParallelFetches = sourceParallelFetches;
+	}
+
+	/**
+	 * @return the targetParallelFetches
+	 */
+	public int getTargetParallelFetches() {
+		return targetParallelFetches;
+	}
+
+	/**
+	 * @param targetParallelFetches the targetParallelFetches to set
+	 */
+	public void setTargetParallelFetches(int targetParallelFetches) {
+		this.targetParallelFetches = targetParallelFetches;
+	}
+
+	/**
+	 * @return the sourceRowsPerSecond
+	 */
+	public int getSourceRowsPerSecond() {
+		return sourceRowsPerSecond;
+	}
+
+	/**
+	 * @param sourceRowsPerSecond the sourceRowsPerSecond to set
+	 */
+	public void setSourceRowsPerSecond(int sourceRowsPerSecond) {
+		this.sourceRowsPerSecond = sourceRowsPerSecond;
+	}
+
+	/**
+	 * @return the sourceBytesPerSecond
+	 */
+	public int getSourceBytesPerSecond() {
+		return sourceBytesPerSecond;
+	}
+
+	/**
+	 * @param sourceBytesPerSecond the sourceBytesPerSecond to set
+	 */
+	public void setSourceBytesPerSecond(int sourceBytesPerSecond) {
+		this.sourceBytesPerSecond = sourceBytesPerSecond;
+	}
+
+	/**
+	 * @return the targetRowsPerSecond
+	 */
+	public int getTargetRowsPerSecond() {
+		return targetRowsPerSecond;
+	}
+
+	/**
+	 * @param targetRowsPerSecond the targetRowsPerSecond to set
+	 */
+	public void setTargetRowsPerSecond(int targetRowsPerSecond) {
+		this.targetRowsPerSecond = targetRowsPerSecond;
+	}
+
+	/**
+	 * @return the targetBytesPerSecond
+	 */
+	public int getTargetBytesPerSecond() {
+		return targetBytesPerSecond;
+	}
+
+	/**
+	 * @param targetBytesPerSecond the targetBytesPerSecond to set
+	 */
+	public void setTargetBytesPerSecond(int targetBytesPerSecond) {
+		this.targetBytesPerSecond = targetBytesPerSecond;
+	}
+
+	/**
+	 * @return the resume
+	 */
+	public boolean isResume() {
+		return resume;
+	}
+
+	/**
+	 * @param resume the resume to set
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+
+	/**
+	 * @return the fetchRetries
+	 */
+	public int getFetchRetries() {
+		return fetchRetries;
+	}
+
+	/**
+	 * @param fetchRetries the fetchRetries to set
+	 */
+	public void setFetchRetries(int fetchRetries) {
+		this.fetchRetries = fetchRetries;
+	}
+
+	/**
+	 * @return the queryTimeout
+	 */
+	public int getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	/**
+	 * @param queryTimeout the queryTimeout to set
+	 */
+	public void setQueryTimeout(int queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
+	/**
+	 * @return the stuckChunkFactor
+	 */
+	public int getStuckChunkFactor() {
+		return stuckChunkFactor;
+	}
+
+	/**
+	 * @param stuckChunkFactor the stuckChunkFactor to set
+	 */
+	public void setStuckChunkFactor(int stuckChunkFactor) {
+		this.stuckChunkFactor = stuckChunkFactor;
+	}
+
+	/**
+	 * @return the chunkPlanner
+	 */
+	public String getChunkPlanner() {
+		return chunkPlanner;
+	}
+
+	/**
+	 * @param chunkPlanner the chunkPlanner to set
+	 */
+	public void setChunkPlanner(String chunkPlanner) {
+		this.chunkPlanner = chunkPlanner;
+	}
+
+	/**
+	 * @return the keylessStrategy
+	 */
+	public String getKeylessStrategy() {
+		return keylessStrategy;
+	}
+
+	/**
+	 * @param keylessStrategy the keylessStrategy to set
+	 */
+	public void setKeylessStrategy(String keylessStrategy) {
+		this.keylessStrategy = keylessStrategy;
+	}
+
+	/**
+	 * @return the chunkStrategy
+	 */
+	public String getChunkStrategy() {
+		return chunkStrategy;
+	}
+
+	/**
+	 * @param chunkStrategy the chunkStrategy to set
+	 */
+	public void setChunkStrategy(String chunkStrategy) {
+		this.chunkStrategy = chunkStrategy;
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder();
@@ -605,6 +941,48 @@ public class AppProperties {
 		builder.append(targetJdbcUrl);
 		builder.append(", reportType=");
 		builder.append(reportType);
+		builder.append(", rowFingerprint=");
+		builder.append(rowFingerprint);
+		builder.append(", lobHashAlgorithm=");
+		builder.append(lobHashAlgorithm);
+		builder.append(", hashPushdown=");
+		builder.append(hashPushdown);
+		builder.append(", chunkChecksum=");
+		builder.append(chunkChecksum);
+		builder.append(", compareMode=");
+		builder.append(compareMode);
+		builder.append(", noofParallelTables=");
+		builder.append(noofParallelTables);
+		builder.append(", fetchThreadMode=");
+		builder.append(fetchThreadMode);
+		builder.append(", memoryBudgetPercent=");
+		builder.append(memoryBudgetPercent);
+		builder.append(", sourceParallelFetches=");
+		builder.append(sourceParallelFetches);
+		builder.append(", targetParallelFetches=");
+		builder.append(targetParallelFetches);
+		builder.append(", sourceRowsPerSecond=");
+		builder.append(sourceRowsPerSecond);
+		builder.append(", sourceBytesPerSecond=");
+		builder.append(sourceBytesPerSecond);
+		builder.append(", targetRowsPerSecond=");
+		builder.append(targetRowsPerSecond);
+		builder.append(", targetBytesPerSecond=");
+		builder.append(targetBytesPerSecond);
+		builder.append(", resume=");
+		builder.append(resume);
+		builder.append(", fetchRetries=");
+		builder.append(fetchRetries);
+		builder.append(", queryTimeout=");
+		builder.append(queryTimeout);
+		builder.append(", stuckChunkFactor=");
+		builder.append(stuckChunkFactor);
+		builder.append(", chunkPlanner=");
+		builder.append(chunkPlanner);
+		builder.append(", keylessStrategy=");
+		builder.append(keylessStrategy);
+		builder.append(", chunkStrategy=");
+		builder.append(chunkStrategy);
 		builder.append("]");
 		return builder.toString();
 	}
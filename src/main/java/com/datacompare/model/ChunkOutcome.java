@@ -0,0 +1,126 @@
+/**
+ * Model class for the outcome of one compared chunk: row counts, mismatches and fetch times. Written to
+ * the checkpoint of the table, so a resumed run can report the chunk without comparing it again.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ChunkOutcome {
+
+	private int chunkNo;
+
+	private String result = "Completed";
+
+	private long sourceCount;
+
+	private long targetCount;
+
+	private List<Long> sourceTimeTaken = new ArrayList<Long>();
+
+	private List<Long> targetTimeTaken = new ArrayList<Long>();
+
+	private List<String> failTuple = new ArrayList<String>();
+
+	private Map<String, String> sourceData = new LinkedHashMap<String, String>();
+
+	private Map<String, String> targetData = new LinkedHashMap<String, String>();
+
+	public ChunkOutcome() {
+	}
+
+	/**
+	 *
+	 * @param chunkNo
+	 */
+	public ChunkOutcome(int chunkNo) {
+		this.chunkNo = chunkNo;
+	}
+
+	public int getChunkNo() {
+		return chunkNo;
+	}
+
+	public void setChunkNo(int chunkNo) {
+		this.chunkNo = chunkNo;
+	}
+
+	public String getResult() {
+		return result;
+	}
+
+	public void setResult(String result) {
+		this.result = result;
+	}
+
+	public long getSourceCount() {
+		return sourceCount;
+	}
+
+	public void setSourceCount(long sourceCount) {
+		this.sourceCount = sourceCount;
+	}
+
+	public long getTargetCount() {
+		return targetCount;
+	}
+
+	public void setTargetCount(long targetCount) {
+		this.targetCount = targetCount;
+	}
+
+	public List<Long> getSourceTimeTaken() {
+		return sourceTimeTaken;
+	}
+
+	public void setSourceTimeTaken(List<Long> sourceTimeTaken) {
+		this.sourceTimeTaken = sourceTimeTaken;
+	}
+
+	public List<Long> getTargetTimeTaken() {
+		return targetTimeTaken;
+	}
+
+	public void setTargetTimeTaken(List<Long> targetTimeTaken) {
+		this.targetTimeTaken = targetTimeTaken;
+	}
+
+	public List<String> getFailTuple() {
+		return failTuple;
+	}
+
+	public void setFailTuple(List<String> failTuple) {
+		this.failTuple = failTuple;
+	}
+
+	public Map<String, String> getSourceData() {
+		return sourceData;
+	}
+
+	public void setSourceData(Map<String, String> sourceData) {
+		this.sourceData = sourceData;
+	}
+
+	public Map<String, String> getTargetData() {
+		return targetData;
+	}
+
+	public void setTargetData(Map<String, String> targetData) {
+		this.targetData = targetData;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkOutcome [chunkNo=" + chunkNo + ", result=" + result + ", sourceCount=" + sourceCount
+				+ ", targetCount=" + targetCount + ", failTuple=" + failTuple.size() + "]";
+	}
+}
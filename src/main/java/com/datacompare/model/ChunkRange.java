@@ -0,0 +1,146 @@
+/**
+ * Model class for a numeric key range of a chunk. Used to build the chunk condition and to split a chunk
+ * into halves when its checksums differ.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+
+package com.datacompare.model;
+
+public class ChunkRange {
+
+	private String filter;
+
+	private String keyColumn;
+
+	private String sortKey;
+
+	private long startRange;
+
+	private long endRange;
+
+	private boolean startInclusive;
+
+	/**
+	 *
+	 * @param filter
+	 * @param keyColumn
+	 * @param sortKey
+	 * @param startRange
+	 * @param endRange
+	 * @param startInclusive
+	 */
+	public ChunkRange(String filter, String keyColumn, String sortKey, long startRange, long endRange,
+			boolean startInclusive) {
+
+		this.filter = filter;
+		this.keyColumn = keyColumn;
+		this.sortKey = sortKey;
+		this.startRange = startRange;
+		this.endRange = endRange;
+		this.startInclusive = startInclusive;
+	}
+
+	/**
+	 * @return where clause of the range without ordering
+	 */
+	public String getCondition() {
+
+		StringBuilder condition = new StringBuilder("where ");
+
+		if (filter != null && !filter.isEmpty()) {
+
+			condition.append(filter).append(" and ");
+		}
+
+		condition.append(keyColumn).append(startInclusive ? " >= " : " > ").append(startRange).append(" and ")
+				.append(keyColumn).append(" <= ").append(endRange);
+
+		return condition.toString();
+	}
+
+	/**
+	 * @return chunk condition as used by FetchData
+	 */
+	public String getChunk() {
+
+		return getCondition() + " order by " + sortKey;
+	}
+
+	/**
+	 * @return true if the range holds more than one key value
+	 */
+	public boolean isSplittable() {
+
+		return endRange > firstKey();
+	}
+
+	/**
+	 * @return the lower and upper half of the range
+	 */
+	public ChunkRange[] split() {
+
+		long first = firstKey();
+		long middle = first + (endRange - first) / 2;
+
+		return new ChunkRange[] { new ChunkRange(filter, keyColumn, sortKey, first, middle, true),
+				new ChunkRange(filter, keyColumn, sortKey, middle, endRange, false) };
+	}
+
+	private long firstKey() {
+
+		return startInclusive ? startRange : startRange + 1;
+	}
+
+	/**
+	 * @return filter of the table, or null
+	 */
+	public String getFilter() {
+		return filter;
+	}
+
+	/**
+	 * @return numeric key column the range is on
+	 */
+	public String getKeyColumn() {
+		return keyColumn;
+	}
+
+	/**
+	 * @return order by columns of the chunk
+	 */
+	public String getSortKey() {
+		return sortKey;
+	}
+
+	/**
+	 * @return lower bound of the range
+	 */
+	public long getStartRange() {
+		return startRange;
+	}
+
+	/**
+	 * @return upper bound of the range, always included
+	 */
+	public long getEndRange() {
+		return endRange;
+	}
+
+	/**
+	 * @return true if the lower bound is included
+	 */
+	public boolean isStartInclusive() {
+		return startInclusive;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkRange [keyColumn=" + keyColumn + ", startRange=" + startRange + ", endRange=" + endRange
+				+ ", startInclusive=" + startInclusive + "]";
+	}
+}
@@ -0,0 +1,358 @@
+/**
+ * Model class for a key range of a chunk on a string, date or composite key. The range holds the keys
+ * above the lower key up to the upper key, compared column by column. The condition is written for each
+ * database, so the same rows fall into the range on the source and the target.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+
+package com.datacompare.model;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+
+public class KeyRange {
+
+	private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+
+	private static final DateTimeFormatter SECONDS = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	// SQL Server compares a uniqueidentifier by its last 6 bytes, then bytes 8-9, 7-6, 5-4 and 3-0
+	private static final int[] GUID_ORDER = { 10, 11, 12, 13, 14, 15, 8, 9, 7, 6, 5, 4, 3, 2, 1, 0 };
+
+	private String filter;
+
+	private String sortKey;
+
+	private String[] columns;
+
+	private String[] columnTypes;
+
+	private Object[] lowerKey;
+
+	private Object[] upperKey;
+
+	/**
+	 *
+	 * @param filter
+	 * @param sortKey
+	 * @param columns key columns
+	 * @param columnTypes database type names of the key columns on the source
+	 * @param lowerKey String, BigDecimal, Timestamp or byte[] values, null for no lower bound
+	 * @param upperKey String, BigDecimal, Timestamp or byte[] values, null for no upper bound
+	 */
+	public KeyRange(String filter, String sortKey, String[] columns, String[] columnTypes, Object[] lowerKey,
+			Object[] upperKey) {
+
+		this.filter = filter;
+		this.sortKey = sortKey;
+		this.columns = columns;
+		this.columnTypes = columnTypes;
+		this.lowerKey = lowerKey;
+		this.upperKey = upperKey;
+	}
+
+	/**
+	 * @param dbType
+	 * @param collateColumns string columns to compare in binary collation
+	 * @return chunk condition as used by FetchData
+	 */
+	public String getChunk(String dbType, Set<String> collateColumns) {
+
+		return getChunk(dbType, collateColumns, null);
+	}
+
+	/**
+	 * @param dbType
+	 * @param collateColumns string columns to compare in binary collation
+	 * @param targetColumnTypes PostgreSQL type names of the key columns, for RAW keys migrated to uuid or bytea
+	 * @return chunk condition as used by FetchData
+	 */
+	public String getChunk(String dbType, Set<String> collateColumns, String[] targetColumnTypes) {
+
+		StringBuilder chunk = new StringBuilder();
+
+		String range = getCondition(dbType, collateColumns, targetColumnTypes);
+
+		if (filter != null && !filter.isEmpty()) {
+
+			chunk.append("where ").append(filter).append(range.isEmpty() ? "" : " and " + range);
+
+		} else if (!range.isEmpty()) {
+
+			chunk.append("where ").append(range);
+		}
+
+		return chunk.append(chunk.length() > 0 ? " " : "").append("order by ").append(sortKey).toString();
+	}
+
+	/**
+	 * Row values are compared directly on PostgreSQL. Oracle and SQL Server have no row value comparison,
+	 * the lexicographic condition starts with a range on the first column so the key index is used.
+	 *
+	 * @param dbType
+	 * @param collateColumns
+	 * @param targetColumnTypes
+	 * @return condition of the range without where, empty for the whole table
+	 */
+	public String getCondition(String dbType, Set<String> collateColumns, String[] targetColumnTypes) {
+
+		StringBuilder condition = new StringBuilder();
+
+		if (lowerKey != null) {
+
+			condition.append(bound(dbType, collateColumns, targetColumnTypes, lowerKey, ">"));
+		}
+
+		if (upperKey != null) {
+
+			condition.append(condition.length() > 0 ? " and " : "")
+					.append(bound(dbType, collateColumns, targetColumnTypes, upperKey, "<="));
+		}
+
+		return condition.toString();
+	}
+
+	private String bound(String dbType, Set<String> collateColumns, String[] targetColumnTypes, Object[] key,
+			String operator) {
+
+		String[] names = new String[columns.length];
+		String[] values = new String[columns.length];
+
+		for (int i = 0; i < columns.length; i++) {
+
+			String targetType = (targetColumnTypes != null && targetColumnTypes[i] != null)
+					? targetColumnTypes[i].toLowerCase() : "";
+
+			names[i] = column(dbType, collateColumns, targetType, i);
+			values[i] = literal(dbType, targetType, i, key[i]);
+		}
+
+		if (columns.length == 1) {
+
+			return names[0] + " " + operator + " " + values[0];
+		}
+
+		if ("POSTGRESQL".equals(dbType)) {
+
+			return "(" + String.join(", ", names) + ") " + operator + " (" + String.join(", ", values) + ")";
+		}
+
+		String strict = operator.substring(0, 1);
+
+		StringBuilder bound = new StringBuilder();
+
+		bound.append(names[0]).append(" ").append(strict).append("= ").append(values[0]).append(" and ");
+
+		for (int i = 0; i < columns.length - 1; i++) {
+
+			bound.append("(").append(names[i]).append(" ").append(strict).append(" ").append(values[i])
+					.append(" or (").append(names[i]).append(" = ").append(values[i]).append(" and ");
+		}
+
+		bound.append(names[columns.length - 1]).append(" ").append(operator).append(" ")
+				.append(values[columns.length - 1]);
+
+		for (int i = 0; i < columns.length - 1; i++) {
+
+			bound.append("))");
+		}
+
+		return bound.toString();
+	}
+
+	private String column(String dbType, Set<String> collateColumns, String targetType, int i) {
+
+		if ("POSTGRESQL".equals(dbType) && isGuid(i)) {
+
+			return guidOrder(columns[i]);
+		}
+
+		if ("POSTGRESQL".equals(dbType) && isRaw(i) && !"uuid".equals(targetType) && !"bytea".equals(targetType)) {
+
+			// RAW keys migrated to text hold their hex digits
+			return "lower(replace(" + columns[i] + ", '-', '')) COLLATE \"C\"";
+		}
+
+		if (collateColumns == null || !collateColumns.contains(columns[i])) {
+			return columns[i];
+		}
+
+		switch (dbType) {
+
+		case "SQLSERVER":
+
+			return columns[i] + " COLLATE Latin1_General_BIN2";
+
+		case "POSTGRESQL":
+
+			return columns[i] + " COLLATE \"C\"";
+
+		default:
+
+			return columns[i];
+		}
+	}
+
+	private String literal(String dbType, String targetType, int i, Object value) {
+
+		String columnType = columnTypes[i].toLowerCase();
+
+		if (value instanceof byte[]) {
+
+			String hex = hex((byte[]) value);
+
+			if ("ORACLE".equals(dbType)) {
+				return "HEXTORAW('" + hex.toUpperCase() + "')";
+			}
+
+			return "uuid".equals(targetType) ? "'" + hex + "'::uuid"
+					: "bytea".equals(targetType) ? "'\\x" + hex + "'::bytea" : "'" + hex + "'";
+		}
+
+		if (isGuid(i) && "POSTGRESQL".equals(dbType)) {
+
+			String hex = ((String) value).replace("-", "").toLowerCase();
+
+			StringBuilder ordered = new StringBuilder();
+
+			for (int b : GUID_ORDER) {
+
+				ordered.append(hex, 2 * b, 2 * b + 2);
+			}
+
+			return "'" + ordered + "'";
+		}
+
+		if (value instanceof Timestamp) {
+
+			LocalDateTime time = ((Timestamp) value).toLocalDateTime();
+
+			switch (dbType) {
+
+			case "ORACLE":
+
+				return "date".equals(columnType)
+						? "TO_DATE('" + time.format(SECONDS) + "', 'YYYY-MM-DD HH24:MI:SS')"
+						: "TIMESTAMP '" + time.format(SECONDS) + fraction(time.getNano(), 9) + "'";
+
+			case "SQLSERVER":
+
+				if ("date".equals(columnType)) {
+					return "'" + time.format(DATE) + "'";
+				}
+
+				// datetime takes up to 3 fractional digits, datetime2 up to 7
+				int digits = columnType.endsWith("datetime") ? 3 : 7;
+
+				return "'" + time.format(SECONDS).replace(' ', 'T') + fraction(time.getNano(), digits) + "'";
+
+			default:
+
+				// PostgreSQL keeps microseconds and rounds the rest away
+				LocalDateTime micros = time.plusNanos(500).truncatedTo(ChronoUnit.MICROS);
+
+				return "'" + micros.format(SECONDS) + fraction(micros.getNano(), 6) + "'";
+			}
+		}
+
+		if (value instanceof String) {
+
+			String text = "'" + ((String) value).replace("'", "''") + "'";
+
+			// An N literal on a varchar column would convert the column and miss the index
+			return ("SQLSERVER".equals(dbType) && columnType.startsWith("n")) ? "N" + text : text;
+		}
+
+		return (value instanceof BigDecimal) ? ((BigDecimal) value).toPlainString() : String.valueOf(value);
+	}
+
+	private boolean isGuid(int i) {
+
+		return "uniqueidentifier".equalsIgnoreCase(columnTypes[i]);
+	}
+
+	private boolean isRaw(int i) {
+
+		return "RAW".equalsIgnoreCase(columnTypes[i]);
+	}
+
+	/**
+	 * @param column uuid or text column on PostgreSQL
+	 * @return hex digits of the column in the byte order SQL Server compares a uniqueidentifier in
+	 */
+	private static String guidOrder(String column) {
+
+		String hex = "replace(lower(" + column + "::text), '-', '')";
+
+		StringBuilder ordered = new StringBuilder();
+
+		for (int i = 0; i < GUID_ORDER.length;) {
+
+			// Ascending bytes are taken in one substring
+			int length = 1;
+
+			while (i + length < GUID_ORDER.length && GUID_ORDER[i + length] == GUID_ORDER[i] + length) {
+				length++;
+			}
+
+			ordered.append(ordered.length() > 0 ? " || " : "").append("substr(").append(hex).append(", ")
+					.append(2 * GUID_ORDER[i] + 1).append(", ").append(2 * length).append(")");
+
+			i += length;
+		}
+
+		return "(" + ordered + ") COLLATE \"C\"";
+	}
+
+	private static String hex(byte[] bytes) {
+
+		StringBuilder hex = new StringBuilder();
+
+		for (byte b : bytes) {
+
+			hex.append(String.format("%02x", b & 0xff));
+		}
+
+		return hex.toString();
+	}
+
+	private static String fraction(int nanos, int digits) {
+
+		String fraction = String.format("%09d", nanos).substring(0, digits);
+
+		return "." + fraction;
+	}
+
+	public String getFilter() {
+		return filter;
+	}
+
+	public String getSortKey() {
+		return sortKey;
+	}
+
+	public String[] getColumns() {
+		return columns;
+	}
+
+	public String[] getColumnTypes() {
+		return columnTypes;
+	}
+
+	public Object[] getLowerKey() {
+		return lowerKey;
+	}
+
+	public Object[] getUpperKey() {
+		return upperKey;
+	}
+}
@@ -0,0 +1,190 @@
+/**
+ * Service class to admit chunks only while the heap can hold them. Each chunk reserves its estimated
+ * memory before it fetches. A chunk has to wait while the heap in use outside of eden plus the
+ * reservations would exceed the budget, or while the JVM spends too much time collecting garbage. A chunk
+ * is always admitted when no other chunk runs, so a run never stalls.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ChunkAdmission {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("ChunkAdmissionLog");
+
+	/** Share of the elapsed time spent in garbage collection from which no chunk is admitted */
+	private static final double GC_PRESSURE = 0.25;
+
+	/** Milliseconds between two checks of the collection times */
+	private static final long GC_CHECK_INTERVAL = 1000;
+
+	/** Milliseconds a waiting chunk sleeps before it checks the heap again */
+	private static final long WAIT_INTERVAL = 500;
+
+	private long budget;
+
+	private long reserved;
+
+	private int running;
+
+	private long lastCheck;
+
+	private long lastGcTime;
+
+	private boolean gcPressure;
+
+	/**
+	 *
+	 * @param memoryBudgetPercent share of the maximum heap the chunks may use
+	 */
+	public ChunkAdmission(int memoryBudgetPercent) {
+
+		this.budget = Runtime.getRuntime().maxMemory() / 100 * Math.max(1, Math.min(memoryBudgetPercent, 100));
+		this.lastCheck = System.currentTimeMillis();
+		this.lastGcTime = gcTime();
+	}
+
+	/**
+	 * Waits until the chunk fits into the budget.
+	 *
+	 * @param estimatedBytes
+	 * @return bytes reserved, to pass to {@link #release(long)}
+	 * @throws InterruptedException
+	 */
+	public synchronized long admit(long estimatedBytes) throws InterruptedException {
+
+		boolean logged = false;
+
+		while (running > 0 && (checkGcPressure() || liveHeap() + reserved + estimatedBytes > budget)) {
+
+			if (!logged) {
+
+				logger.info("Chunk waits for memory, reserved " + (reserved >> 20) + " MB, needs "
+						+ (estimatedBytes >> 20) + " MB, budget " + (budget >> 20) + " MB"
+						+ (gcPressure ? ", GC pressure" : ""));
+				logged = true;
+			}
+
+			wait(WAIT_INTERVAL);
+		}
+
+		reserved += estimatedBytes;
+		running++;
+
+		return estimatedBytes;
+	}
+
+	/**
+	 *
+	 * @param reservedBytes
+	 */
+	public synchronized void release(long reservedBytes) {
+
+		reserved -= reservedBytes;
+		running--;
+
+		notifyAll();
+	}
+
+	/**
+	 * @return heap in use outside of eden, where most objects die young
+	 */
+	private long liveHeap() {
+
+		long live = 0;
+
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+
+			if (pool.getType() == MemoryType.HEAP && !pool.getName().contains("Eden")) {
+
+				live += pool.getUsage().getUsed();
+			}
+		}
+
+		return live;
+	}
+
+	private boolean checkGcPressure() {
+
+		long now = System.currentTimeMillis();
+
+		if (now - lastCheck >= GC_CHECK_INTERVAL) {
+
+			long gcTime = gcTime();
+
+			gcPressure = (gcTime - lastGcTime) > (now - lastCheck) * GC_PRESSURE;
+
+			lastCheck = now;
+			lastGcTime = gcTime;
+		}
+
+		return gcPressure;
+	}
+
+	private static long gcTime() {
+
+		long time = 0;
+
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+
+			time += Math.max(0, collector.getCollectionTime());
+		}
+
+		return time;
+	}
+
+	/**
+	 * Average size of the rows of a table as measured by the fetches, used to estimate the memory of the
+	 * next chunks of the table.
+	 */
+	public static class RowSize {
+
+		/** Characters per row assumed until the first chunk of the table is fetched */
+		private static final long DEFAULT_ROW_CHARS = 512;
+
+		/** Bytes of the map entry, key and value objects of a row on top of its characters */
+		private static final long ROW_OVERHEAD = 120;
+
+		private AtomicLong rows = new AtomicLong();
+
+		private AtomicLong chars = new AtomicLong();
+
+		/**
+		 *
+		 * @param fetchedRows
+		 * @param fetchedChars key and value characters of the fetched rows
+		 */
+		public void record(long fetchedRows, long fetchedChars) {
+
+			rows.addAndGet(fetchedRows);
+			chars.addAndGet(fetchedChars);
+		}
+
+		/**
+		 *
+		 * @param chunkRows
+		 * @return estimated heap bytes of the rows
+		 */
+		public long estimate(long chunkRows) {
+
+			long measuredRows = rows.get();
+			long rowChars = (measuredRows > 0) ? chars.get() / measuredRows : DEFAULT_ROW_CHARS;
+
+			return chunkRows * (2 * rowChars + ROW_OVERHEAD);
+		}
+	}
+}
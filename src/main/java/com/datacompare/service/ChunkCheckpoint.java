@@ -0,0 +1,253 @@
+/**
+ * Service class to keep the progress of a table comparison in a local file. The chunk plan is written
+ * first, then the outcome of each chunk as soon as it completes, one JSON line each. A resumed run reads
+ * the file back, compares the same chunks and skips the completed ones, so a failure late in a long run
+ * only repeats the chunks that did not complete. The plan keeps the options it was made with, a file of
+ * other options is started over.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datacompare.model.ChunkOutcome;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ChunkCheckpoint {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("ChunkCheckpointLog");
+
+	/** Field of the first line that holds the chunk plan */
+	private static final String CHUNKS = "chunks";
+
+	/** Field of the first line that holds the target chunks of the plan */
+	private static final String TARGET_CHUNKS = "targetChunks";
+
+	/** Field of the first line that holds the options of the plan */
+	private static final String OPTIONS = "options";
+
+	private ObjectMapper mapper = new ObjectMapper();
+
+	private File file;
+
+	private List<String> targetChunks = new ArrayList<String>();
+
+	private Map<Integer, ChunkOutcome> outcomes = new HashMap<Integer, ChunkOutcome>();
+
+	/**
+	 *
+	 * @param file
+	 */
+	public ChunkCheckpoint(File file) {
+
+		this.file = file;
+	}
+
+	/**
+	 * Starts the checkpoint of a comparison. A resumed comparison continues the plan and the outcomes found
+	 * in the file if it was made with the same options, otherwise the file is started over with the new plan.
+	 *
+	 * @param chunks chunk plan of the table
+	 * @param targetChunks the same chunks as read from the target
+	 * @param options options the plan and the outcomes depend on
+	 * @param resume
+	 * @return chunk plan to compare, the target chunks are in {@link #getTargetChunks()}
+	 */
+	public List<String> start(List<String> chunks, List<String> targetChunks, String options, boolean resume) {
+
+		outcomes.clear();
+
+		if (resume && file.exists()) {
+
+			List<String> plan = read(options);
+
+			if (plan != null) {
+
+				logger.info("Resuming " + file.getName() + ", " + outcomes.size() + " of " + plan.size()
+						+ " chunks completed");
+
+				return plan;
+			}
+
+			outcomes.clear();
+		}
+
+		this.targetChunks = targetChunks;
+
+		try {
+
+			File folder = file.getAbsoluteFile().getParentFile();
+
+			if (folder != null) {
+				folder.mkdirs();
+			}
+
+			Map<String, Object> plan = new LinkedHashMap<String, Object>();
+
+			plan.put(OPTIONS, options);
+			plan.put(CHUNKS, chunks);
+			plan.put(TARGET_CHUNKS, targetChunks);
+
+			write(plan, false);
+
+		} catch (IOException e) {
+
+			logger.error("Checkpoint " + file + " not written", e);
+		}
+
+		return chunks;
+	}
+
+	/**
+	 *
+	 * @param chunkNo
+	 * @return outcome of the chunk from the checkpoint, or null if it has not completed
+	 */
+	public ChunkOutcome getOutcome(int chunkNo) {
+
+		return outcomes.get(Integer.valueOf(chunkNo));
+	}
+
+	/**
+	 * Appends the outcome of a completed chunk. A failed write is logged, the comparison goes on.
+	 *
+	 * @param outcome
+	 */
+	public synchronized void record(ChunkOutcome outcome) {
+
+		try {
+
+			write(outcome, true);
+
+		} catch (IOException e) {
+
+			logger.error("Chunk No " + (outcome.getChunkNo() + 1) + " not written to " + file, e);
+		}
+	}
+
+	/**
+	 * @param options
+	 * @return the chunk plan, or null if the file cannot be read or was made with other options
+	 */
+	private List<String> read(String options) {
+
+		List<String> plan = null;
+
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+
+			String line;
+
+			while ((line = reader.readLine()) != null) {
+
+				if (line.trim().isEmpty()) {
+					continue;
+				}
+
+				JsonNode node;
+
+				try {
+
+					node = mapper.readTree(line);
+
+				} catch (IOException e) {
+
+					// The run stopped while a line was written
+					logger.info("Incomplete line in " + file.getName() + " skipped");
+					continue;
+				}
+
+				if (plan == null) {
+
+					if (!node.has(CHUNKS)) {
+						return null;
+					}
+
+					if (!node.path(OPTIONS).asText().equals(options)) {
+
+						logger.info(file.getName() + " was made with other options, starting over");
+						return null;
+					}
+
+					plan = new ArrayList<String>();
+
+					for (JsonNode chunk : node.path(CHUNKS)) {
+						plan.add(chunk.asText());
+					}
+
+					targetChunks = new ArrayList<String>();
+
+					for (JsonNode chunk : node.path(TARGET_CHUNKS)) {
+						targetChunks.add(chunk.asText());
+					}
+
+					// Plans written before the target chunks were kept read the same chunks on both sides
+					if (targetChunks.size() != plan.size()) {
+						targetChunks = new ArrayList<String>(plan);
+					}
+
+				} else {
+
+					ChunkOutcome outcome = mapper.treeToValue(node, ChunkOutcome.class);
+					outcomes.put(Integer.valueOf(outcome.getChunkNo()), outcome);
+				}
+			}
+
+		} catch (IOException e) {
+
+			logger.error("Checkpoint " + file + " not readable, starting over", e);
+			return null;
+		}
+
+		return plan;
+	}
+
+	private void write(Object line, boolean append) throws IOException {
+
+		try (FileOutputStream out = new FileOutputStream(file, append);
+				Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+
+			writer.write(mapper.writeValueAsString(line));
+			writer.write('\n');
+			writer.flush();
+
+			// The outcome has to survive a crash of the run right after the chunk
+			out.getFD().sync();
+		}
+	}
+
+	/**
+	 * @return target chunks of the plan returned by the last start
+	 */
+	public List<String> getTargetChunks() {
+		return targetChunks;
+	}
+
+	/**
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+}
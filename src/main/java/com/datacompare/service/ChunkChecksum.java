@@ -0,0 +1,170 @@
+/**
+ * Service class to compare chunks by checksum. The row count and two sums of 32 bit parts of the row
+ * hashes are computed inside the source and target databases. Ranges with different checksums are split
+ * into halves until they are small enough to fetch, so only the differing rows are compared on the client.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datacompare.model.ChunkRange;
+import com.datacompare.util.JdbcUtil;
+
+public class ChunkChecksum {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("ChunkChecksumLog");
+
+	private String sourceDBType;
+
+	private String targetDBType;
+
+	private String sourceHashSql;
+
+	private String targetHashSql;
+
+	private long leafRows;
+
+	/**
+	 *
+	 * @param sourceDBType
+	 * @param targetDBType
+	 * @param sourceHashSql
+	 * @param targetHashSql
+	 * @param leafRows ranges with up to this number of rows are not split any further
+	 */
+	public ChunkChecksum(String sourceDBType, String targetDBType, String sourceHashSql, String targetHashSql,
+			long leafRows) {
+
+		this.sourceDBType = sourceDBType;
+		this.targetDBType = targetDBType;
+		this.sourceHashSql = sourceHashSql;
+		this.targetHashSql = targetHashSql;
+		this.leafRows = Math.max(1, leafRows);
+	}
+
+	/**
+	 * Compares the checksums of the range and collects the smallest ranges that differ.
+	 *
+	 * @param sourceConnection
+	 * @param targetConnection
+	 * @param range
+	 * @param differingRanges
+	 * @param queries queries of the chunk the checksum queries are created with
+	 * @return row count of the range in source and target
+	 * @throws SQLException
+	 */
+	public long[] compare(Connection sourceConnection, Connection targetConnection, ChunkRange range,
+			List<ChunkRange> differingRanges, RunningQueries queries) throws SQLException {
+
+		long[] source = checksum(sourceConnection, sourceDBType, sourceHashSql, range, queries);
+		long[] target = checksum(targetConnection, targetDBType, targetHashSql, range, queries);
+
+		if (source[0] != target[0] || source[1] != target[1] || source[2] != target[2]) {
+
+			if (range.isSplittable() && Math.max(source[0], target[0]) > leafRows) {
+
+				for (ChunkRange half : range.split()) {
+
+					compare(sourceConnection, targetConnection, half, differingRanges, queries);
+				}
+
+			} else {
+
+				logger.debug("Checksum differs for " + range);
+
+				differingRanges.add(range);
+			}
+		}
+
+		return new long[] { source[0], target[0] };
+	}
+
+	/**
+	 *
+	 * @param connection
+	 * @param dbType
+	 * @param hashSql
+	 * @param range
+	 * @param queries
+	 * @return row count and the two hash sums
+	 * @throws SQLException
+	 */
+	private long[] checksum(Connection connection, String dbType, String hashSql, ChunkRange range,
+			RunningQueries queries) throws SQLException {
+
+		StringBuilder sql = new StringBuilder();
+
+		sql.append("SELECT count(*) AS row_count, ").append(hashPartSum(dbType, 1)).append(" AS hash_sum1, ")
+				.append(hashPartSum(dbType, 9)).append(" AS hash_sum2 FROM (").append(hashSql).append(" ")
+				.append(range.getCondition()).append(") t");
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+
+			stmt = queries.createStatement(connection);
+
+			rs = stmt.executeQuery(sql.toString());
+
+			long[] checksum = new long[3];
+
+			if (rs.next()) {
+
+				checksum[0] = rs.getLong("row_count");
+				checksum[1] = rs.getLong("hash_sum1");
+				checksum[2] = rs.getLong("hash_sum2");
+			}
+
+			return checksum;
+
+		} finally {
+
+			JdbcUtil jdbcUtil = new JdbcUtil();
+
+			jdbcUtil.closeResultSet(rs);
+			jdbcUtil.closeStatement(stmt);
+		}
+	}
+
+	/**
+	 *
+	 * @param dbType
+	 * @param position
+	 * @return sum of the 8 hex digits of the row hash at the position as unsigned numbers
+	 */
+	private String hashPartSum(String dbType, int position) {
+
+		String part = "SUBSTR(" + FetchMetadata.ROW_HASH_COLUMN + ", " + position + ", 8)";
+
+		switch (dbType) {
+
+		case "ORACLE":
+
+			return "SUM(TO_NUMBER(" + part + ", 'XXXXXXXX'))";
+
+		case "SQLSERVER":
+
+			return "SUM(CAST(CONVERT(VARBINARY(4), SUBSTRING(" + FetchMetadata.ROW_HASH_COLUMN + ", " + position
+					+ ", 8), 2) AS BIGINT))";
+
+		default:
+
+			return "sum(('x' || " + part + ")::bit(32)::bigint)";
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/**
+ * Service class to run the chunks of all tables on one set of worker threads. Idle workers take the next
+ * chunk of whichever table is waiting, so a long running chunk of a big table does not leave the other
+ * workers idle while smaller tables wait. Chunks of tables with more rows are taken first, the chunks of
+ * small tables fill the gaps. The fetches of the running chunks share one executor, while the comparisons
+ * run on a bounded pool of platform threads. In the virtual thread mode the chunks and their fetches run on
+ * virtual threads, so as many chunks as the connection pools hold are in flight and the chunks waiting for
+ * a connection or a fetch slot do not hold a platform thread.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ChunkScheduler {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("ChunkSchedulerLog");
+
+	private ThreadPoolExecutor executor;
+
+	private ExecutorService fetchExecutor;
+
+	private ExecutorService compareExecutor;
+
+	private AtomicLong sequence = new AtomicLong();
+
+	/**
+	 *
+	 * @param threads number of chunks running at the same time over all tables
+	 * @param connections number of chunks running at the same time in the virtual thread mode, the
+	 *                    connections of the smaller pool
+	 * @param fetchThreadMode Platform or Virtual
+	 */
+	public ChunkScheduler(int threads, int connections, String fetchThreadMode) {
+
+		ThreadFactory virtualThreads = "Virtual".equalsIgnoreCase(fetchThreadMode) ? newVirtualThreadFactory() : null;
+
+		int workers = Math.max(1, (virtualThreads != null) ? connections : threads);
+
+		if (virtualThreads != null) {
+
+			this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+					new PriorityBlockingQueue<Runnable>(), virtualThreads);
+
+			this.fetchExecutor = Executors.newCachedThreadPool(virtualThreads);
+
+		} else {
+
+			this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+					new PriorityBlockingQueue<Runnable>());
+
+			// A running chunk fetches its source and target at the same time
+			this.fetchExecutor = Executors.newFixedThreadPool(2 * workers);
+		}
+
+		this.compareExecutor = Executors.newFixedThreadPool(Math.max(1, threads));
+	}
+
+	/**
+	 *
+	 * @param chunk
+	 * @param tableRowCount row count of the table of the chunk, larger tables run first
+	 * @return future to wait for the chunk
+	 */
+	public Future<?> submit(Runnable chunk, long tableRowCount) {
+
+		ScheduledChunk scheduledChunk = new ScheduledChunk(chunk, tableRowCount, sequence.getAndIncrement());
+
+		// execute, submit would wrap the chunk in a task the priority queue cannot order
+		executor.execute(scheduledChunk);
+
+		return scheduledChunk;
+	}
+
+	/**
+	 * @return executor for the fetches of the running chunks
+	 */
+	public Executor getFetchExecutor() {
+		return fetchExecutor;
+	}
+
+	/**
+	 * @return executor for the comparisons of the running chunks
+	 */
+	public Executor getCompareExecutor() {
+		return compareExecutor;
+	}
+
+	/**
+	 * Lets the submitted chunks finish and stops the workers.
+	 */
+	public void shutdown() {
+
+		executor.shutdown();
+		fetchExecutor.shutdown();
+		compareExecutor.shutdown();
+	}
+
+	/**
+	 * Chunks and fetches spend their time waiting for the database. Virtual threads wait without holding a
+	 * platform thread, they are looked up by reflection as the tool is built for Java 8.
+	 *
+	 * @return factory of virtual threads, or null before Java 21
+	 */
+	private ThreadFactory newVirtualThreadFactory() {
+
+		try {
+
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+
+		} catch (ReflectiveOperationException e) {
+
+			logger.info("Virtual threads need Java 21 or later, running the chunks on platform threads");
+
+			return null;
+		}
+	}
+
+	/**
+	 * Chunk ordered by the row count of its table, then by submission.
+	 */
+	private static final class ScheduledChunk extends FutureTask<Void> implements Comparable<ScheduledChunk> {
+
+		private final long tableRowCount;
+
+		private final long sequence;
+
+		ScheduledChunk(Runnable chunk, long tableRowCount, long sequence) {
+
+			super(chunk, null);
+
+			this.tableRowCount = tableRowCount;
+			this.sequence = sequence;
+		}
+
+		public int compareTo(ScheduledChunk other) {
+
+			int cmp = Long.compare(other.tableRowCount, tableRowCount);
+
+			return (cmp != 0) ? cmp : Long.compare(sequence, other.sequence);
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/**
+ * Service class to keep track of the running chunks of a run. A chunk that runs much longer than the
+ * chunks of its table completed so far is most likely stuck on a lock or a bad plan, its queries are
+ * cancelled and the chunk is compared once more. Cancelling the run cancels the queries of all running
+ * chunks and of the tables being planned.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ChunkWatchdog {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("ChunkWatchdogLog");
+
+	/** Seconds between two checks of the running chunks */
+	private static final long CHECK_INTERVAL = 5;
+
+	/** Chunks of a table that have to complete before its median is trusted */
+	private static final int MIN_SAMPLES = 5;
+
+	/** Milliseconds a chunk runs at least before it counts as stuck */
+	private static final long MIN_STUCK_TIME = 30000;
+
+	private int stuckChunkFactor;
+
+	private volatile boolean cancelled;
+
+	private Map<ExecuteChunk, Running> running = new ConcurrentHashMap<ExecuteChunk, Running>();
+
+	private Set<RunningQueries> tableQueries = ConcurrentHashMap.newKeySet();
+
+	private ScheduledExecutorService timer;
+
+	/**
+	 *
+	 * @param stuckChunkFactor multiple of the median chunk time from which a chunk is stuck, 0 for no check
+	 */
+	public ChunkWatchdog(int stuckChunkFactor) {
+
+		this.stuckChunkFactor = stuckChunkFactor;
+
+		if (stuckChunkFactor > 0) {
+
+			timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+
+				Thread thread = new Thread(runnable, "Chunk watchdog");
+				thread.setDaemon(true);
+
+				return thread;
+			});
+
+			timer.scheduleWithFixedDelay(this::check, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 *
+	 * @param chunk
+	 * @param latency times of the completed chunks of the table
+	 */
+	public void started(ExecuteChunk chunk, Latency latency) {
+
+		running.put(chunk, new Running(System.currentTimeMillis(), latency));
+	}
+
+	/**
+	 *
+	 * @param chunk
+	 * @param completed false if the chunk failed, its time is not taken into the median
+	 */
+	public void finished(ExecuteChunk chunk, boolean completed) {
+
+		Running run = running.remove(chunk);
+
+		if (completed && run != null && run.latency != null) {
+
+			run.latency.record(System.currentTimeMillis() - run.start);
+		}
+	}
+
+	/**
+	 * Cancels the queries of the running chunks and tables, chunks that have not started yet fail when they
+	 * start.
+	 */
+	public void cancel() {
+
+		cancelled = true;
+
+		logger.info("Comparison cancelled, cancelling " + running.size() + " running chunks");
+
+		for (ExecuteChunk chunk : running.keySet()) {
+
+			chunk.cancel();
+		}
+
+		for (RunningQueries queries : tableQueries) {
+
+			queries.cancel();
+		}
+	}
+
+	/**
+	 * Keeps the queries of a table outside its chunks, like planning the chunks, until the table completes.
+	 *
+	 * @param queries
+	 */
+	public void register(RunningQueries queries) {
+
+		tableQueries.add(queries);
+
+		// A cancel between the add and the check
+		if (cancelled) {
+			queries.cancel();
+		}
+	}
+
+	/**
+	 *
+	 * @param queries
+	 */
+	public void unregister(RunningQueries queries) {
+
+		tableQueries.remove(queries);
+	}
+
+	/**
+	 * @return true once the run was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Stops the checks.
+	 */
+	public void shutdown() {
+
+		if (timer != null) {
+			timer.shutdownNow();
+		}
+	}
+
+	private void check() {
+
+		try {
+
+			long now = System.currentTimeMillis();
+
+			for (Map.Entry<ExecuteChunk, Running> entry : running.entrySet()) {
+
+				Running run = entry.getValue();
+
+				long median = (run.latency != null) ? run.latency.median() : -1;
+
+				if (median < 0) {
+					continue;
+				}
+
+				long elapsed = now - run.start;
+
+				if (elapsed > Math.max(MIN_STUCK_TIME, median * stuckChunkFactor) && entry.getKey().cancelStuck()) {
+
+					logger.info("Chunk No " + (entry.getKey().getChunkNo() + 1) + " running for " + (elapsed / 1000)
+							+ " s, median " + (median / 1000) + " s, cancelled to run it again");
+				}
+			}
+
+		} catch (RuntimeException e) {
+
+			// An exception would end the scheduled checks
+			logger.error(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Running chunk and the times of its table.
+	 */
+	private static final class Running {
+
+		private final long start;
+
+		private final Latency latency;
+
+		Running(long start, Latency latency) {
+			this.start = start;
+			this.latency = latency;
+		}
+	}
+
+	/**
+	 * Times of the completed chunks of a table.
+	 */
+	public static class Latency {
+
+		private List<Long> times = new ArrayList<Long>();
+
+		/**
+		 *
+		 * @param millis
+		 */
+		public synchronized void record(long millis) {
+
+			times.add(Long.valueOf(millis));
+		}
+
+		/**
+		 * @return median time in milliseconds, -1 until enough chunks have completed
+		 */
+		public synchronized long median() {
+
+			if (times.size() < MIN_SAMPLES) {
+				return -1;
+			}
+
+			List<Long> sorted = new ArrayList<Long>(times);
+			Collections.sort(sorted);
+
+			return sorted.get(sorted.size() / 2).longValue();
+		}
+	}
+}
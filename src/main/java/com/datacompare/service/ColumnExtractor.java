@@ -0,0 +1,458 @@
+/**
+ * Service class to extract a single column value of a chunk row. The column type, decimal format and
+ * result set column index are resolved once per chunk so that FetchData does not repeat the type checks
+ * and metadata lookups for every row.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datacompare.model.TableColumnMetadata;
+import com.datacompare.util.LobHasher;
+import com.datacompare.util.RowEncoder;
+
+public class ColumnExtractor {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("FetchDataLog");
+
+	private static final String PIPE_SEPARATOR = " || ";
+
+	/**
+	 * Column kinds in the order FetchData used to test the column type names.
+	 */
+	public enum ColumnKind {
+		INTEGER, BOOLEAN, NUMBER, FLOAT, CHARACTER, DATETIME, BINARY, CLOB, OTHER
+	}
+
+	private final String dbType;
+	private final String columnName;
+	private final int columnIndex;
+	private final ColumnKind kind;
+	private final boolean oracleNumber;
+	private final DecimalFormat decimalFormat;
+	private final SimpleDateFormat dateFormat;
+	private final int decimalScale;
+	private final Calendar calendar;
+	private final boolean dateOnly;
+	private final LobHasher lobHasher;
+
+	/**
+	 *
+	 * @param dbType
+	 * @param columnName
+	 * @param columnIndex
+	 * @param kind
+	 * @param oracleNumber
+	 * @param decimalFormat
+	 * @param dateFormat
+	 * @param lobHasher
+	 */
+	public ColumnExtractor(String dbType, String columnName, int columnIndex, ColumnKind kind, boolean oracleNumber,
+			DecimalFormat decimalFormat, SimpleDateFormat dateFormat, LobHasher lobHasher) {
+
+		this.dbType = dbType;
+		this.columnName = columnName;
+		this.columnIndex = columnIndex;
+		this.kind = kind;
+		this.oracleNumber = oracleNumber;
+		this.decimalFormat = decimalFormat;
+		this.dateFormat = dateFormat;
+		this.lobHasher = lobHasher;
+		this.decimalScale = (decimalFormat != null) ? RowEncoder.decimalScale(decimalFormat) : -1;
+
+		String datePattern = (dateFormat != null) ? dateFormat.toPattern() : null;
+
+		this.dateOnly = "yyyy-MM-dd".equals(datePattern);
+		this.calendar = (dateOnly || "yyyy-MM-dd HH:mm:ss".equals(datePattern))
+				? (Calendar) dateFormat.getCalendar().clone()
+				: null;
+	}
+
+	/**
+	 * Resolves the extractor for one column from the table metadata of this side and, for the target, the
+	 * metadata of the matching source column.
+	 *
+	 * @param dbType
+	 * @param rs
+	 * @param metadata
+	 * @param sourceMetadata
+	 * @param dateFormat
+	 * @param lobHashAlgorithm
+	 * @return
+	 * @throws SQLException
+	 */
+	public static ColumnExtractor compile(String dbType, ResultSet rs, TableColumnMetadata metadata,
+			TableColumnMetadata sourceMetadata, SimpleDateFormat dateFormat, String lobHashAlgorithm)
+			throws SQLException {
+
+		String columnType = metadata.getColumnType();
+		String columnName = metadata.getColumnName();
+		ColumnKind kind = resolveKind(columnType);
+
+		DecimalFormat decimalFormat = null;
+
+		if (kind == ColumnKind.NUMBER || kind == ColumnKind.FLOAT) {
+
+			int sourceNoOfDecimals = (sourceMetadata != null) ? sourceMetadata.getNoOfDecimals() : 0;
+			int noOfDecimals = (sourceNoOfDecimals > 0) ? sourceNoOfDecimals : metadata.getNoOfDecimals();
+
+			if (noOfDecimals > 0) {
+
+				String format = (sourceMetadata != null) ? sourceMetadata.getDecimalFormat()
+						: metadata.getDecimalFormat();
+
+				decimalFormat = new DecimalFormat(format);
+				decimalFormat.setGroupingUsed(false);
+			}
+		}
+
+		boolean oracleNumber = "ORACLE".equals(dbType) && columnType.compareTo("NUMBER") == 0;
+
+		LobHasher lobHasher = null;
+
+		if (kind == ColumnKind.BINARY || kind == ColumnKind.CLOB) {
+
+			try {
+
+				lobHasher = new LobHasher(lobHashAlgorithm);
+
+			} catch (NoSuchAlgorithmException e) {
+
+				throw new SQLException(e.getMessage(), e);
+			}
+		}
+
+		return new ColumnExtractor(dbType, columnName, rs.findColumn(columnName), kind, oracleNumber,
+				decimalFormat, dateFormat, lobHasher);
+	}
+
+	/**
+	 *
+	 * @param columnType
+	 * @return
+	 */
+	public static ColumnKind resolveKind(String columnType) {
+
+		if (columnType.contains("int") || columnType.contains("INT")) {
+
+			return ColumnKind.INTEGER;
+
+		} else if (columnType.contains("boolean") || columnType.contains("BOOLEAN")) {
+
+			return ColumnKind.BOOLEAN;
+
+		} else if (columnType.compareTo("DECIMAL") == 0 || columnType.compareTo("NUMBER") == 0
+				|| columnType.compareTo("numeric") == 0) {
+
+			return ColumnKind.NUMBER;
+
+		} else if (columnType.contains("float") || columnType.contains("FLOAT") || columnType.compareTo("DOUBLE") == 0) {
+
+			return ColumnKind.FLOAT;
+
+		} else if (columnType.contains("char") || columnType.contains("CHAR")) {
+
+			return ColumnKind.CHARACTER;
+
+		} else if (columnType.contains("timestamp") || columnType.contains("TIMESTAMP")
+				|| columnType.contains("DATE") || columnType.contains("date")) {
+
+			return ColumnKind.DATETIME;
+
+		} else if (columnType.equalsIgnoreCase("TEXT") || columnType.equalsIgnoreCase("BYTEA")
+				|| columnType.equalsIgnoreCase("BLOB")) {
+
+			return ColumnKind.BINARY;
+
+		} else if (columnType.equalsIgnoreCase("CLOB")) {
+
+			return ColumnKind.CLOB;
+		}
+
+		return ColumnKind.OTHER;
+	}
+
+	/**
+	 * Appends the separator and the formatted column value of the current row.
+	 *
+	 * @param rs
+	 * @param value
+	 * @throws SQLException
+	 */
+	public void append(ResultSet rs, StringBuilder value) throws SQLException {
+
+		value.append(PIPE_SEPARATOR);
+
+		switch (kind) {
+
+		case INTEGER:
+
+			value.append(rs.getLong(columnIndex));
+			break;
+
+		case BOOLEAN:
+
+			value.append(rs.getBoolean(columnIndex));
+			break;
+
+		case NUMBER:
+
+			if (decimalFormat != null) {
+
+				double doub = 0;
+
+				if (oracleNumber) {
+
+					doub = rs.getDouble(columnIndex);
+
+				} else {
+
+					BigDecimal bValue = rs.getBigDecimal(columnIndex);
+					doub = (bValue != null) ? bValue.doubleValue() : 0;
+				}
+
+				value.append(decimalFormat.format(doub));
+
+			} else if (oracleNumber) {
+
+				value.append(rs.getLong(columnIndex));
+
+			} else {
+
+				appendString(rs.getString(columnIndex), "0", value);
+			}
+			break;
+
+		case FLOAT:
+
+			if (decimalFormat != null) {
+
+				value.append(decimalFormat.format(rs.getDouble(columnIndex)));
+
+			} else {
+
+				appendString(rs.getString(columnIndex), "0", value);
+			}
+			break;
+
+		case DATETIME:
+
+			try {
+
+				Timestamp timestamp = rs.getTimestamp(columnIndex);
+
+				if (timestamp != null) {
+
+					value.append(dateFormat.format(timestamp));
+				}
+
+			} catch (Exception e) {
+
+				logger.error(dbType, e);
+			}
+			break;
+
+		case BINARY:
+		case CLOB:
+
+			// Large objects as hash value
+			String hash = hashLob(rs);
+
+			if (hash != null) {
+
+				value.append(hash);
+			}
+			break;
+
+		case CHARACTER:
+		case OTHER:
+		default:
+
+			appendString(rs.getString(columnIndex), "", value);
+			break;
+		}
+	}
+
+	/**
+	 * Writes the column value of the current row to the row encoder. The encoding matches the text
+	 * {@link #append(ResultSet, StringBuilder)} produces without building it.
+	 *
+	 * @param rs
+	 * @param encoder
+	 * @throws SQLException
+	 */
+	public void encode(ResultSet rs, RowEncoder encoder) throws SQLException {
+
+		switch (kind) {
+
+		case INTEGER:
+
+			encoder.putLong(rs.getLong(columnIndex));
+			break;
+
+		case BOOLEAN:
+
+			encoder.putBoolean(rs.getBoolean(columnIndex));
+			break;
+
+		case NUMBER:
+
+			if (decimalFormat != null) {
+
+				double doub = 0;
+
+				if (oracleNumber) {
+
+					doub = rs.getDouble(columnIndex);
+
+				} else {
+
+					BigDecimal bValue = rs.getBigDecimal(columnIndex);
+					doub = (bValue != null) ? bValue.doubleValue() : 0;
+				}
+
+				encoder.putDecimal(doub, decimalFormat, decimalScale);
+
+			} else if (oracleNumber) {
+
+				encoder.putLong(rs.getLong(columnIndex));
+
+			} else {
+
+				encoder.putText(rs.getString(columnIndex), "0");
+			}
+			break;
+
+		case FLOAT:
+
+			if (decimalFormat != null) {
+
+				encoder.putDecimal(rs.getDouble(columnIndex), decimalFormat, decimalScale);
+
+			} else {
+
+				encoder.putText(rs.getString(columnIndex), "0");
+			}
+			break;
+
+		case DATETIME:
+
+			String formatted = "";
+
+			try {
+
+				Timestamp timestamp = rs.getTimestamp(columnIndex);
+
+				if (timestamp != null) {
+
+					if (calendar != null) {
+
+						calendar.setTime(timestamp);
+
+						if (encoder.putTimestamp(calendar, dateOnly)) {
+							break;
+						}
+					}
+
+					formatted = dateFormat.format(timestamp);
+				}
+
+			} catch (Exception e) {
+
+				logger.error(dbType, e);
+			}
+
+			encoder.putText(formatted);
+			break;
+
+		case BINARY:
+		case CLOB:
+
+			String hash = hashLob(rs);
+
+			encoder.putText((hash != null) ? hash : "");
+			break;
+
+		case CHARACTER:
+		case OTHER:
+		default:
+
+			encoder.putText(rs.getString(columnIndex), "");
+			break;
+		}
+	}
+
+	/**
+	 *
+	 * @param sValue
+	 * @param defaultValue
+	 * @param value
+	 */
+	private void appendString(String sValue, String defaultValue, StringBuilder value) {
+
+		value.append((sValue != null && !sValue.equals("null") && sValue.trim().length() > 0) ? sValue : defaultValue);
+	}
+
+	/**
+	 * Streams the large object of the current row through the LOB hasher.
+	 *
+	 * @param rs
+	 * @return hex hash to compare the large objects, null when the value is null or empty
+	 * @throws SQLException
+	 */
+	private String hashLob(ResultSet rs) throws SQLException {
+
+		try {
+
+			if (kind == ColumnKind.CLOB) {
+
+				return lobHasher.hash(rs.getCharacterStream(columnIndex));
+			}
+
+			return lobHasher.hash(rs.getBinaryStream(columnIndex));
+
+		} catch (IOException e) {
+
+			throw new SQLException("Reading " + columnName + " failed", e);
+		}
+	}
+
+	/**
+	 * @return the columnName
+	 */
+	public String getColumnName() {
+		return columnName;
+	}
+
+	/**
+	 * @return the columnIndex
+	 */
+	public int getColumnIndex() {
+		return columnIndex;
+	}
+
+	/**
+	 * @return the kind
+	 */
+	public ColumnKind getKind() {
+		return kind;
+	}
+}
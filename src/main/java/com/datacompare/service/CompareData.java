@@ -12,6 +12,8 @@
 package com.datacompare.service;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,10 +44,20 @@ public class CompareData implements Runnable {
 
 	private Map<String, String> targetData;
 
+	private RowFingerprints sourceFingerprints;
+
+	private RowFingerprints targetFingerprints;
+
 	private long tempRowNumber = 0;
 	
 	private static final String DEFAULT_RESULT = "Completed";
 
+	/** Rows per side from which the rows are marked in parallel */
+	private static final int PARALLEL_THRESHOLD = 50000;
+
+	/** Rows marked by one fork join task */
+	private static final int PARALLEL_SLICE = 16384;
+
 	/**
 	 * 
 	 * @param source
@@ -66,6 +78,22 @@ public class CompareData implements Runnable {
 		Thread.currentThread().setName("CompareData for ChunkNo " + chunkNo+1); 
 	}
 
+	/**
+	 * Compares the rows by their fingerprints, the mismatched rows are returned with the fingerprint as value.
+	 * 
+	 * @param source
+	 * @param target
+	 * @param chunkNo
+	 * @param numberOfChunks
+	 */
+	public CompareData(RowFingerprints source, RowFingerprints target, int chunkNo, int numberOfChunks) {
+
+		this(new HashMap<String, String>(), new HashMap<String, String>(), chunkNo, numberOfChunks);
+		
+		this.sourceFingerprints = source;
+		this.targetFingerprints = target;
+	}
+
 	public long getfailedRowCount() {
 		return failedRowNumber;
 	}
@@ -115,15 +143,14 @@ public class CompareData implements Runnable {
 		Map<String, String> tempSource = new HashMap<String, String>();
 		Map<String, String> tempTarget = new HashMap<String, String>();
 
-		List<String> tempSourceFailTuple = new ArrayList<String>();
-		List<String> tempTargetFailTuple = new ArrayList<String>();
-		
-		compare(sourceData, targetData, tempSourceFailTuple, tempSource);
-
-		compare(targetData, sourceData, tempTargetFailTuple, tempTarget);
-
-		//this.failTuple.addAll(tempSourceFailTuple);
-		//this.failTuple.addAll(tempTargetFailTuple);
+		if (sourceFingerprints != null && targetFingerprints != null) {
+			
+			compareFingerprints(tempSource, tempTarget);
+			
+		} else {
+			
+			compare(tempSource, tempTarget);
+		}
 
 		long end = System.currentTimeMillis();
 
@@ -154,68 +181,385 @@ public class CompareData implements Runnable {
 	}
 
 	/**
+	 * Compares the rows in linear time. Rows with the same key and value on both sides match. Of the
+	 * remaining rows with the same value, a side fails as many rows as it has more than the other side, the
+	 * first ones in iteration order. Rows whose value is found elsewhere on the other side, like rows of
+	 * tables without a unique key, therefore do not fail.
 	 * 
-	 * @param data
-	 * @param dataToCompare
-	 * @param failTuple
+	 * @param failedSource
+	 * @param failedTarget
+	 */
+	private void compare(Map<String, String> failedSource, Map<String, String> failedTarget) {
+
+		compare(new TextRows(sourceData, targetData), new TextRows(targetData, sourceData), failedSource,
+				failedTarget);
+	}
+
+	/**
+	 * Fingerprint variant of {@link #compare(Map, Map)}.
+	 * 
+	 * @param failedSource
+	 * @param failedTarget
+	 */
+	private void compareFingerprints(Map<String, String> failedSource, Map<String, String> failedTarget) {
+
+		compare(new FingerprintRows(sourceFingerprints, targetFingerprints),
+				new FingerprintRows(targetFingerprints, sourceFingerprints), failedSource, failedTarget);
+	}
+
+	/**
+	 * The rows without an exact match are marked and counted per value first. Large chunks are split into
+	 * row ranges which are marked in parallel on the common fork join pool, the other side is only read.
+	 * The failed rows are then collected in iteration order, so the result does not depend on the split.
+	 * 
+	 * @param source
+	 * @param target
+	 * @param failedSource
+	 * @param failedTarget
+	 */
+	private <T> void compare(Rows<T> source, Rows<T> target, Map<String, String> failedSource,
+			Map<String, String> failedTarget) {
+
+		boolean[] sourceUnmatched = new boolean[source.size()];
+		boolean[] targetUnmatched = new boolean[target.size()];
+
+		Map<T, int[]> unmatched = new HashMap<T, int[]>();
+
+		merge(unmatched, markUnmatched(source, sourceUnmatched, 0));
+		merge(unmatched, markUnmatched(target, targetUnmatched, 1));
+
+		collectFailed(source, sourceUnmatched, unmatched, 0, failedSource);
+		collectFailed(target, targetUnmatched, unmatched, 1, failedTarget);
+	}
+
+	/**
+	 * 
+	 * @param rows
+	 * @param unmatchedRows
+	 * @param side
+	 * @return unmatched row counts per value
+	 */
+	private <T> Map<T, int[]> markUnmatched(Rows<T> rows, boolean[] unmatchedRows, int side) {
+
+		if (rows.size() < PARALLEL_THRESHOLD) {
+
+			return markUnmatched(rows, unmatchedRows, side, 0, rows.size());
+		}
+
+		return ForkJoinPool.commonPool().invoke(new MarkUnmatched<T>(rows, unmatchedRows, side, 0, rows.size()));
+	}
+
+	/**
+	 * 
+	 * @param rows
+	 * @param unmatchedRows
+	 * @param side
+	 * @param from
+	 * @param to
+	 * @return unmatched row counts per value of the rows in the range
+	 */
+	private static <T> Map<T, int[]> markUnmatched(Rows<T> rows, boolean[] unmatchedRows, int side, int from,
+			int to) {
+
+		Map<T, int[]> unmatched = new HashMap<T, int[]>();
+
+		for (int i = from; i < to; i++) {
+
+			if (rows.isUnmatched(i)) {
+
+				unmatchedRows[i] = true;
+				count(unmatched, rows.valueAt(i))[side]++;
+			}
+		}
+
+		return unmatched;
+	}
+
+	/**
+	 * 
+	 * @param rows
+	 * @param unmatchedRows
+	 * @param unmatched
+	 * @param side
 	 * @param failedEntry
 	 */
-	private void compare(Map<String, String> data, Map<String, String> dataToCompare, List<String> failTuple,
+	private <T> void collectFailed(Rows<T> rows, boolean[] unmatchedRows, Map<T, int[]> unmatched, int side,
 			Map<String, String> failedEntry) {
 
-		for (Map.Entry<String, String> entry : data.entrySet()) {
+		for (int i = 0; i < unmatchedRows.length; i++) {
+
+			if (!rows.isRow(i)) {
+				continue;
+			}
 
 			this.tempRowNumber++;
 
-			String key = entry.getKey();
+			if (unmatchedRows[i] && exceedsOtherSide(unmatched.get(rows.valueAt(i)), side)) {
+
+				this.result = "Failed";
+
+				this.failedRowNumber = this.tempRowNumber;
+
+				failedEntry.put(rows.keyAt(i), rows.failedValueAt(i));
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param unmatched
+	 * @param value
+	 * @return unmatched row counts of the value: source, target, failed source, failed target
+	 */
+	private static <T> int[] count(Map<T, int[]> unmatched, T value) {
+
+		int[] counts = unmatched.get(value);
+
+		if (counts == null) {
+
+			counts = new int[4];
+			unmatched.put(value, counts);
+		}
+
+		return counts;
+	}
+
+	/**
+	 * 
+	 * @param unmatched
+	 * @param partial
+	 */
+	private static <T> void merge(Map<T, int[]> unmatched, Map<T, int[]> partial) {
+
+		for (Map.Entry<T, int[]> entry : partial.entrySet()) {
+
+			int[] counts = count(unmatched, entry.getKey());
+			int[] partialCounts = entry.getValue();
+
+			for (int i = 0; i < counts.length; i++) {
+
+				counts[i] += partialCounts[i];
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param counts
+	 * @param side
+	 * @return true if the row is one of the unmatched rows the side has more than the other side
+	 */
+	private static boolean exceedsOtherSide(int[] counts, int side) {
+
+		if (counts[2 + side] < counts[side] - counts[1 - side]) {
+
+			counts[2 + side]++;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Marks the unmatched rows of a row range, splitting it in halves down to {@link #PARALLEL_SLICE} rows.
+	 */
+	private static final class MarkUnmatched<T> extends RecursiveTask<Map<T, int[]>> {
+
+		private static final long serialVersionUID = 1L;
 
-			try {
+		private final Rows<T> rows;
 
-				if (key != null) {
+		private final boolean[] unmatchedRows;
 
-					String content = entry.getValue();
-					String dataToCompareContent = dataToCompare.get(key);
+		private final int side;
 
-					//if it is mismatch
-					if (!(content != null && dataToCompareContent != null && content.equals(dataToCompareContent))) {
-                     // if target has the data
-						if(dataToCompare.containsValue(content))
-						{
-							int sourceCount = Collections.frequency(data.values(), content);
-							int targetCount = Collections.frequency(dataToCompare.values(), content);
+		private final int from;
 
-							if(sourceCount>targetCount){
+		private final int to;
 
-								 if(Collections.frequency(failedEntry.values(), content)<(sourceCount-targetCount)){
+		MarkUnmatched(Rows<T> rows, boolean[] unmatchedRows, int side, int from, int to) {
+			this.rows = rows;
+			this.unmatchedRows = unmatchedRows;
+			this.side = side;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Map<T, int[]> compute() {
+
+			if (to - from <= PARALLEL_SLICE) {
+
+				return markUnmatched(rows, unmatchedRows, side, from, to);
+			}
+
+			int middle = (from + to) >>> 1;
 
-									 String failedContent = (content != null) ? content : "";
+			MarkUnmatched<T> upper = new MarkUnmatched<T>(rows, unmatchedRows, side, middle, to);
+			upper.fork();
 
-									 this.result = "Failed";
+			Map<T, int[]> unmatched = new MarkUnmatched<T>(rows, unmatchedRows, side, from, middle).compute();
 
-									 //failTuple.add(failedContent);
+			merge(unmatched, upper.join());
+
+			return unmatched;
+		}
+	}
+
+	/**
+	 * Rows of one side by position, with the other side to look up exact matches.
+	 */
+	private interface Rows<T> {
 
-									 this.failedRowNumber = this.tempRowNumber;
+		int size();
 
-									 failedEntry.put(key, failedContent);
-								 }
-							}
-						}
-						else {
-							String failedContent = (content != null) ? content : "";
+		boolean isRow(int i);
 
-							this.result = "Failed";
+		boolean isUnmatched(int i);
 
-							//failTuple.add(failedContent);
+		String keyAt(int i);
 
-							this.failedRowNumber = this.tempRowNumber;
+		T valueAt(int i);
 
-							failedEntry.put(key, failedContent);
-						}
-					}
-				}
-			} catch (Exception e) {
-				logger.error(e.getMessage(), e);
+		String failedValueAt(int i);
+	}
+
+	/**
+	 * Row strings in the iteration order of the map.
+	 */
+	private static final class TextRows implements Rows<String> {
+
+		private final String[] keys;
+
+		private final String[] values;
+
+		private final Map<String, String> dataToCompare;
+
+		TextRows(Map<String, String> data, Map<String, String> dataToCompare) {
+
+			this.keys = new String[data.size()];
+			this.values = new String[data.size()];
+			this.dataToCompare = dataToCompare;
+
+			int i = 0;
+
+			for (Map.Entry<String, String> entry : data.entrySet()) {
+
+				keys[i] = entry.getKey();
+				values[i] = entry.getValue();
+				i++;
 			}
 		}
+
+		public int size() {
+			return keys.length;
+		}
+
+		public boolean isRow(int i) {
+			return true;
+		}
+
+		public boolean isUnmatched(int i) {
+
+			if (keys[i] == null) {
+				return false;
+			}
+
+			String content = values[i];
+
+			return content == null || !content.equals(dataToCompare.get(keys[i]));
+		}
+
+		public String keyAt(int i) {
+			return keys[i];
+		}
+
+		public String valueAt(int i) {
+			return values[i];
+		}
+
+		public String failedValueAt(int i) {
+			return (values[i] != null) ? values[i] : "";
+		}
+	}
+
+	/**
+	 * Row fingerprints by slot, empty slots are no rows.
+	 */
+	private static final class FingerprintRows implements Rows<RowHash> {
+
+		private final RowFingerprints data;
+
+		private final RowFingerprints dataToCompare;
+
+		FingerprintRows(RowFingerprints data, RowFingerprints dataToCompare) {
+			this.data = data;
+			this.dataToCompare = dataToCompare;
+		}
+
+		public int size() {
+			return data.capacity();
+		}
+
+		public boolean isRow(int i) {
+			return data.keyAt(i) != null;
+		}
+
+		public boolean isUnmatched(int i) {
+
+			String key = data.keyAt(i);
+
+			if (key == null) {
+				return false;
+			}
+
+			int otherSlot = dataToCompare.indexOf(key);
+
+			return otherSlot < 0 || !data.sameValue(i, dataToCompare, otherSlot);
+		}
+
+		public String keyAt(int i) {
+			return data.keyAt(i);
+		}
+
+		public RowHash valueAt(int i) {
+			return new RowHash(data.highAt(i), data.lowAt(i));
+		}
+
+		public String failedValueAt(int i) {
+			return data.hexAt(i);
+		}
+	}
+
+	/**
+	 * 128 bit row fingerprint as map key.
+	 */
+	private static final class RowHash {
+
+		private final long high;
+
+		private final long low;
+
+		RowHash(long high, long low) {
+			this.high = high;
+			this.low = low;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (high ^ (high >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+
+			if (!(obj instanceof RowHash)) {
+				return false;
+			}
+
+			RowHash other = (RowHash) obj;
+
+			return high == other.high && low == other.low;
+		}
 	}
 }
\ No newline at end of file
@@ -10,6 +10,7 @@
 
 package com.datacompare.service;
 
+import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
@@ -18,12 +19,19 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -31,9 +39,12 @@ import org.slf4j.LoggerFactory;
 
 import com.datacompare.controller.CompareController;
 import com.datacompare.model.AppProperties;
+import com.datacompare.model.ChunkOutcome;
 import com.datacompare.model.CompareResult;
 import com.datacompare.model.DatabaseInfo;
 import com.datacompare.model.DatabaseInfo.dbType;
+import com.datacompare.model.KeyRange;
+import com.datacompare.model.TableColumnMetadata;
 import com.datacompare.util.DateUtil;
 import com.datacompare.util.FileUtil;
 import com.datacompare.util.JdbcUtil;
@@ -44,6 +55,16 @@ public class CompareService {
 	
 	private Connection sourceConn = null;
 	private Connection targetConn = null;
+	private ConnectionPool sourcePool = null;
+	private ConnectionPool targetPool = null;
+	private ChunkScheduler chunkScheduler = null;
+	private ChunkAdmission chunkAdmission = null;
+	private Semaphore sourceFetchPermits = null;
+	private Semaphore targetFetchPermits = null;
+	private LoadGovernor sourceLoadGovernor = null;
+	private LoadGovernor targetLoadGovernor = null;
+	private ChunkWatchdog chunkWatchdog = null;
+	private volatile boolean cancelled;
 	
 	/**
 	 * @return the sourceConn
@@ -73,6 +94,154 @@ public class CompareService {
 		this.targetConn = targetConn;
 	}
 
+	/**
+	 * @return the sourcePool
+	 */
+	public ConnectionPool getSourcePool() {
+		return sourcePool;
+	}
+
+	/**
+	 * @param sourcePool the sourcePool to set
+	 */
+	public void setSourcePool(ConnectionPool sourcePool) {
+		this.sourcePool = sourcePool;
+	}
+
+	/**
+	 * @return the targetPool
+	 */
+	public ConnectionPool getTargetPool() {
+		return targetPool;
+	}
+
+	/**
+	 * @param targetPool the targetPool to set
+	 */
+	public void setTargetPool(ConnectionPool targetPool) {
+		this.targetPool = targetPool;
+	}
+
+	/**
+	 * @return the chunkScheduler
+	 */
+	public ChunkScheduler getChunkScheduler() {
+		return chunkScheduler;
+	}
+
+	/**
+	 * @param chunkScheduler the chunkScheduler to set
+	 */
+	public void setChunkScheduler(ChunkScheduler chunkScheduler) {
+		this.chunkScheduler = chunkScheduler;
+	}
+
+	/**
+	 * @return the chunkAdmission
+	 */
+	public ChunkAdmission getChunkAdmission() {
+		return chunkAdmission;
+	}
+
+	/**
+	 * @param chunkAdmission the chunkAdmission to set
+	 */
+	public void setChunkAdmission(ChunkAdmission chunkAdmission) {
+		this.chunkAdmission = chunkAdmission;
+	}
+
+	/**
+	 * @return the sourceFetchPermits
+	 */
+	public Semaphore getSourceFetchPermits() {
+		return sourceFetchPermits;
+	}
+
+	/**
+	 * @param sourceFetchPermits the sourceFetchPermits to set
+	 */
+	public void setSourceFetchPermits(Semaphore sourceFetchPermits) {
+		this.sourceFetchPermits = sourceFetchPermits;
+	}
+
+	/**
+	 * @return the targetFetchPermits
+	 */
+	public Semaphore getTargetFetchPermits() {
+		return targetFetchPermits;
+	}
+
+	/**
+	 * @param targetFetchPermits the targetFetchPermits to set
+	 */
+	public void setTargetFetchPermits(Semaphore targetFetchPermits) {
+		this.targetFetchPermits = targetFetchPermits;
+	}
+
+	/**
+	 * @return the chunkWatchdog
+	 */
+	public ChunkWatchdog getChunkWatchdog() {
+		return chunkWatchdog;
+	}
+
+	/**
+	 * @param chunkWatchdog the chunkWatchdog to set
+	 */
+	public void setChunkWatchdog(ChunkWatchdog chunkWatchdog) {
+		this.chunkWatchdog = chunkWatchdog;
+	}
+
+	/**
+	 * Cancels the running comparison. The queries of the running chunks are cancelled, the tables not
+	 * compared yet are reported as failed.
+	 */
+	public void cancel() {
+		
+		cancelled = true;
+		
+		ChunkWatchdog watchdog = getChunkWatchdog();
+		
+		if (watchdog != null) {
+			watchdog.cancel();
+		}
+	}
+
+	/**
+	 * @return true once the comparison was cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @return the sourceLoadGovernor
+	 */
+	public LoadGovernor getSourceLoadGovernor() {
+		return sourceLoadGovernor;
+	}
+
+	/**
+	 * @param sourceLoadGovernor the sourceLoadGovernor to set
+	 */
+	public void setSourceLoadGovernor(LoadGovernor sourceLoadGovernor) {
+		this.sourceLoadGovernor = sourceLoadGovernor;
+	}
+
+	/**
+	 * @return the targetLoadGovernor
+	 */
+	public LoadGovernor getTargetLoadGovernor() {
+		return targetLoadGovernor;
+	}
+
+	/**
+	 * @param targetLoadGovernor the targetLoadGovernor to set
+	 */
+	public void setTargetLoadGovernor(LoadGovernor targetLoadGovernor) {
+		this.targetLoadGovernor = targetLoadGovernor;
+	}
+
 	/**
 	 * 
 	 * @param appProperties
@@ -91,6 +260,21 @@ public class CompareService {
 	  	try {
 			
 	  		setConnections(appProperties); 
+	  		setChunkScheduler(new ChunkScheduler(appProperties.getMaxNoofThreads(),
+	  				getPoolConnections(appProperties.getMaxNoofThreads()), appProperties.getFetchThreadMode()));
+	  		setChunkAdmission(new ChunkAdmission(appProperties.getMemoryBudgetPercent()));
+	  		setChunkWatchdog(new ChunkWatchdog(appProperties.getStuckChunkFactor()));
+	  		
+	  		// A cancel that came before the watchdog existed
+	  		if (isCancelled()) {
+	  			getChunkWatchdog().cancel();
+	  		}
+	  		setSourceFetchPermits(newFetchPermits(appProperties.getSourceParallelFetches()));
+	  		setTargetFetchPermits(newFetchPermits(appProperties.getTargetParallelFetches()));
+	  		setSourceLoadGovernor(newLoadGovernor("Source", appProperties.getSourceRowsPerSecond(),
+	  				appProperties.getSourceBytesPerSecond()));
+	  		setTargetLoadGovernor(newLoadGovernor("Target", appProperties.getTargetRowsPerSecond(),
+	  				appProperties.getTargetBytesPerSecond()));
   			
   			if(getSourceConn() != null && getTargetConn() != null) { 
   				
@@ -171,6 +355,23 @@ public class CompareService {
 	  		
 	  		jdbcUtil.closeConnection(getSourceConn());
 	  		jdbcUtil.closeConnection(getTargetConn());
+	  		
+	  		if (getSourcePool() != null) {
+	  			getSourcePool().close();
+	  		}
+	  		
+	  		if (getTargetPool() != null) {
+	  			getTargetPool().close();
+	  		}
+	  		
+	  		if (getChunkScheduler() != null) {
+	  			getChunkScheduler().shutdown();
+	  			setChunkScheduler(null);
+	  		}
+	  		
+	  		if (getChunkWatchdog() != null) {
+	  			getChunkWatchdog().shutdown();
+	  		}
 		}
 	}
 	
@@ -231,8 +432,16 @@ public class CompareService {
 	  	Connection sourceConn = null;
 	  	Connection targetConn = null;
 	  	
+	  	ConnectionPool sourcePool = null;
+	  	ConnectionPool targetPool = null;
+	  	
 	  	JdbcUtil jdbcUtil = new JdbcUtil();
 	  	
+	  	// One connection per parallel chunk and side, the single connections run the metadata queries. Parallel
+	  	// tables hold one more connection each for their metadata queries, so they never take the chunk ones.
+	  	int poolSize = appProperties.getMaxNoofThreads();
+	  	int tableConnections = (appProperties.getNoofParallelTables() > 1) ? appProperties.getNoofParallelTables() : 0;
+	  	
 		if("All".equals(appProperties.getConnectionType())) {
 			
 			DatabaseInfo sourceDb = new DatabaseInfo(appProperties.getSourceIP(), appProperties.getSourcePort(),
@@ -251,6 +460,9 @@ public class CompareService {
   			targetConn = getConnection(targetDb);
   			logger.info("Target DB Connection Details: " + targetConn);
   			
+  			sourcePool = new ConnectionPool("Source", poolSize + tableConnections, () -> getConnection(sourceDb));
+  			targetPool = new ConnectionPool("Target", poolSize + tableConnections, () -> getConnection(targetDb));
+  			
 		} else if("JDBC".equals(appProperties.getConnectionType())) {
 			
 			sourceConn = getConnection(appProperties.getSourceJdbcUrl(),
@@ -261,10 +473,25 @@ public class CompareService {
 			targetConn = getConnection(appProperties.getTargetJdbcUrl(), jdbcUtil.getDriverClass("POSTGRESQL"),
 					appProperties.getTargetUserName(), appProperties.getTargetUserPassword());
   			logger.info("Target DB Connection Details: " + targetConn);
+  			
+			sourcePool = new ConnectionPool("Source", poolSize + tableConnections, () -> getConnection(appProperties.getSourceJdbcUrl(),
+					jdbcUtil.getDriverClass(appProperties.getSourceDBType().toUpperCase()),
+					appProperties.getSourceUserName(), appProperties.getSourceUserPassword()));
+			targetPool = new ConnectionPool("Target", poolSize + tableConnections, () -> getConnection(appProperties.getTargetJdbcUrl(),
+					jdbcUtil.getDriverClass("POSTGRESQL"), appProperties.getTargetUserName(),
+					appProperties.getTargetUserPassword()));
 		}
 		
 		setSourceConn(sourceConn);
 		setTargetConn(targetConn); 
+		setSourcePool(sourcePool);
+		setTargetPool(targetPool);
+		
+		if (sourcePool != null && targetPool != null && "Detail".equals(appProperties.getReportType())) {
+			
+			sourcePool.warmUp(fetchLimit(poolSize, appProperties.getSourceParallelFetches()));
+			targetPool.warmUp(fetchLimit(poolSize, appProperties.getTargetParallelFetches()));
+		}
 	}
 	
 	/**
@@ -430,6 +657,97 @@ public class CompareService {
 		logger.info(info.toString());
 	}
 	
+	/**
+	 * 
+	 * @param parallelFetches
+	 * @return permits for the fetches of one database, or null when it has no limit of its own
+	 */
+	private Semaphore newFetchPermits(int parallelFetches) {
+		
+		return (parallelFetches > 0) ? new Semaphore(parallelFetches, true) : null;
+	}
+	
+	/**
+	 * 
+	 * @param appProperties
+	 * @param schemaName
+	 * @param tableName
+	 * @return checkpoint file of the table in the checkpoints folder of the output folder
+	 */
+	private File getCheckpointFile(AppProperties appProperties, String schemaName, String tableName) {
+		
+		String outputFolderPath = appProperties.getOutputFolderPath();
+		
+		File folder = (outputFolderPath != null && !outputFolderPath.isEmpty())
+				? new File(outputFolderPath, "checkpoints") : new File("checkpoints");
+		
+		String fileName = (schemaName + "." + tableName).replaceAll("[^A-Za-z0-9_.-]", "_");
+		
+		return new File(folder, fileName + ".checkpoint");
+	}
+	
+	/**
+	 * 
+	 * @param appProperties
+	 * @return options the chunk plan and the chunk outcomes of a table depend on
+	 */
+	private String getPlanOptions(AppProperties appProperties) {
+		
+		Map<String, Object> options = new LinkedHashMap<String, Object>();
+		
+		options.put("filterType", appProperties.getFilterType());
+		options.put("filter", appProperties.getFilter());
+		options.put("columns", appProperties.getColumns());
+		options.put("ignoreColumns", appProperties.isIgnoreColumns());
+		options.put("compareOnlyDate", appProperties.isCompareOnlyDate());
+		options.put("rowFingerprint", appProperties.isRowFingerprint());
+		options.put("hashPushdown", appProperties.isHashPushdown());
+		options.put("fetchSize", appProperties.getFetchSize());
+		options.put("chunkPlanner", appProperties.getChunkPlanner());
+		options.put("keylessStrategy", appProperties.getKeylessStrategy());
+		options.put("chunkStrategy", appProperties.getChunkStrategy());
+		
+		return options.toString();
+	}
+	
+	/**
+	 * 
+	 * @param name
+	 * @param rowsPerSecond
+	 * @param bytesPerSecond
+	 * @return governor for the fetches of one database, or null when its load is not capped
+	 */
+	private LoadGovernor newLoadGovernor(String name, int rowsPerSecond, int bytesPerSecond) {
+		
+		return (rowsPerSecond > 0 || bytesPerSecond > 0) ? new LoadGovernor(name, rowsPerSecond, bytesPerSecond) : null;
+	}
+	
+	/**
+	 * 
+	 * @param parallelChunks
+	 * @return connections of the smaller pool, chunks beyond them would only wait for a connection
+	 */
+	private int getPoolConnections(int parallelChunks) {
+		
+		if (getSourcePool() == null || getTargetPool() == null) {
+			
+			return parallelChunks;
+		}
+		
+		return Math.min(getSourcePool().getSize(), getTargetPool().getSize());
+	}
+	
+	/**
+	 * 
+	 * @param parallelChunks
+	 * @param parallelFetches
+	 * @return number of queries running at the same time on one database
+	 */
+	private int fetchLimit(int parallelChunks, int parallelFetches) {
+		
+		return (parallelFetches > 0) ? Math.min(parallelChunks, parallelFetches) : parallelChunks;
+	}
+	
 	/**
 	 * 
 	 * @param db
@@ -537,6 +855,17 @@ public class CompareService {
 	public CompareResult compare(AppProperties appProperties, Connection sourceConn, Connection targetConn,
 			String schemaName, String tableName, List<String> columnList) {
 		
+		if (isCancelled()) {
+			
+			CompareResult dto = new CompareResult();
+			
+			dto.setTableName(tableName);
+			dto.setResult("Failed");
+			dto.setReason("Comparison cancelled");
+			
+			return dto;
+		}
+		
 		if("Detail".equals(appProperties.getReportType())) {
 			
 			return compareDetailData(appProperties, sourceConn, targetConn, schemaName, tableName, columnList);
@@ -575,21 +904,35 @@ public class CompareService {
 		// Get the Java runtime
        // Runtime runtime = Runtime.getRuntime();
         long usedMemory = 0;
+        
+		// Planning the chunks and fetching the left over rows again are cancelled with the run
+		RunningQueries tableQueries = new RunningQueries(appProperties.getQueryTimeout());
+		
+		if (getChunkWatchdog() != null) {
+			getChunkWatchdog().register(tableQueries);
+		}
 		
 		try {
 			
 			checkIfTableExistsInPg(schemaName.toLowerCase(), tableName.toLowerCase(), "POSTGRESQL", targetConn); 
 			
 			FetchMetadata fetchSourceMetadata = new FetchMetadata(sourceDBType, null, sourceConn,
-					schemaName.toUpperCase(), tableName.toUpperCase(), 0, null, null, false, null, columnList, appProperties);
+					schemaName.toUpperCase(), tableName.toUpperCase(), 0, null, null, false, null, columnList, appProperties,
+					tableQueries);
 			
 			FetchMetadata fetchTargetMetadata = new FetchMetadata("POSTGRESQL", sourceDBType, targetConn,
 					schemaName.toLowerCase(), tableName.toLowerCase(), fetchSourceMetadata.getRowCount(),
 					fetchSourceMetadata.getSortKey(), fetchSourceMetadata.getPrimaryKey(),
 					fetchSourceMetadata.isHasNoUniqueKey(),
-					fetchSourceMetadata.getTableMetadataMap(), columnList, appProperties);
+					fetchSourceMetadata.getTableMetadataMap(), columnList, appProperties, tableQueries);
 			
- 			List<String> sourceChunks = fetchSourceMetadata.getChunks();
+ 			// A resumed comparison continues the chunk plan of the checkpoint and skips its completed chunks
+ 			ChunkCheckpoint checkpoint = new ChunkCheckpoint(getCheckpointFile(appProperties, schemaName, tableName));
+ 			List<String> sourceChunks = checkpoint.start(fetchSourceMetadata.getChunks(),
+ 					getTargetChunks(fetchSourceMetadata, fetchTargetMetadata), getPlanOptions(appProperties),
+ 					appProperties.isResume());
+ 			List<String> targetChunks = checkpoint.getTargetChunks();
+ 			boolean samePlan = sourceChunks.equals(fetchSourceMetadata.getChunks());
 			
 			info.append("Schema: ");
 			info.append(schemaName);
@@ -619,15 +962,42 @@ public class CompareService {
 			List<Long> sourceTimeTaken = Collections.synchronizedList(new ArrayList<Long>());
 			List<Long> targetTimeTaken = Collections.synchronizedList(new ArrayList<Long>());
 			
-			ExecutorService executor = Executors.newFixedThreadPool(maxNoofThreads); 
+			// Row hashes are only comparable when both databases compute them
+			boolean rowHash = fetchSourceMetadata.getHashSql() != null && fetchTargetMetadata.getHashSql() != null;
+			boolean hashPushdown = appProperties.isHashPushdown() && rowHash;
 			
-			for (i = 0; i < numChunks; i++) {
+			if ((appProperties.isHashPushdown() || appProperties.isChunkChecksum()) && !rowHash) {
 				
-				String targetChunk = fetchSourceMetadata.isHasNoUniqueKey()
-						? getTargetChunkWhenNoUniqueKey(sourceChunks.get(i)) : sourceChunks.get(i);
+				logger.info("Row hash not possible for " + schemaName + "." + tableName + ", fetching the rows");
+			}
+			
+			ChunkChecksum chunkChecksum = null;
+			
+			// The checksum ranges belong to the new chunk plan, not to a resumed one
+			if (appProperties.isChunkChecksum() && rowHash && samePlan) {
+				
+				chunkChecksum = new ChunkChecksum(sourceDBType, "POSTGRESQL", fetchSourceMetadata.getHashSql(),
+						fetchTargetMetadata.getHashSql(), appProperties.getFetchSize() / 10);
+			}
+			
+			// Merge needs both sides ordered by the same single numeric key column
+			boolean mergeJoin = "Merge".equals(appProperties.getCompareMode()) && !fetchSourceMetadata.isHasNoUniqueKey()
+					&& !fetchSourceMetadata.isBucketChunks() && isNumericSortKey(fetchSourceMetadata);
+			
+			// The join drops a row at its first match, so keys have to be unique on each side
+			boolean pipeline = "Pipeline".equals(appProperties.getCompareMode()) && !fetchSourceMetadata.isHasNoUniqueKey();
+			
+			// Chunks of all tables share the scheduler of the run, a table compared on its own gets one
+			ChunkScheduler scheduler = (getChunkScheduler() != null) ? getChunkScheduler()
+					: new ChunkScheduler(maxNoofThreads, getPoolConnections(maxNoofThreads), appProperties.getFetchThreadMode());
+			List<Future<?>> chunkResults = new ArrayList<Future<?>>();
+			ChunkAdmission.RowSize rowSize = new ChunkAdmission.RowSize();
+			ChunkWatchdog.Latency latency = new ChunkWatchdog.Latency();
+			
+			for (i = 0; i < numChunks; i++) {
 				
 				ExecuteChunk executeChunk = new ExecuteChunk(sourceDBType, "POSTGRESQL", sourceChunks.get(i),
-						targetChunk, fetchSourceMetadata.getSql(), fetchTargetMetadata.getSql(), i, numChunks,
+						targetChunks.get(i), fetchSourceMetadata.getSql(), fetchTargetMetadata.getSql(), i, numChunks,
 						sourceConn, targetConn, fetchSourceMetadata.getTableMetadataMap(),
 						fetchTargetMetadata.getTableMetadataMap(), appProperties);
 				
@@ -639,17 +1009,80 @@ public class CompareService {
 				executeChunk.setTargetCount(targetCountList); 
 				executeChunk.setSourceTimeTaken(sourceTimeTaken);
 				executeChunk.setTargetTimeTaken(targetTimeTaken); 
+				executeChunk.setMergeJoin(mergeJoin);
+				executeChunk.setPipeline(pipeline);
+				executeChunk.setPhysicalChunks(fetchSourceMetadata.isPhysicalChunks());
+				executeChunk.setSourcePool(getSourcePool());
+				executeChunk.setTargetPool(getTargetPool());
+				executeChunk.setFetchExecutor(scheduler.getFetchExecutor());
+				executeChunk.setCompareExecutor(scheduler.getCompareExecutor());
+				executeChunk.setChunkAdmission(getChunkAdmission());
+				executeChunk.setRowSize(rowSize);
+				executeChunk.setSourceFetchPermits(getSourceFetchPermits());
+				executeChunk.setTargetFetchPermits(getTargetFetchPermits());
+				executeChunk.setSourceLoadGovernor(getSourceLoadGovernor());
+				executeChunk.setTargetLoadGovernor(getTargetLoadGovernor());
+				executeChunk.setWatchdog(getChunkWatchdog());
+				executeChunk.setLatency(latency);
+				
+				if (hashPushdown) {
+					
+					executeChunk.setSourceHashSql(fetchSourceMetadata.getHashSql());
+					executeChunk.setTargetHashSql(fetchTargetMetadata.getHashSql());
+				}
+				
+				if (chunkChecksum != null) {
+					
+					executeChunk.setChunkChecksum(chunkChecksum);
+					executeChunk.setChunkRange(fetchSourceMetadata.getChunkRanges().get(i));
+				}
+				
+				ChunkOutcome completed = checkpoint.getOutcome(i);
+				
+				if (completed != null) {
+					
+					logger.info("Chunk No " + (i+1) + " completed before, taken from the checkpoint");
+					
+					executeChunk.publish(completed);
+					continue;
+				}
 				
-				executor.execute(executeChunk); 
+				executeChunk.setCheckpoint(checkpoint);
+				
+				chunkResults.add(scheduler.submit(executeChunk, fetchSourceMetadata.getRowCount()));
 			}
 			
-			executor.shutdown();
+			ExecutionException chunkFailure = null;
+			
+			for (Future<?> chunkResult : chunkResults) {
+				
+				try {
+					
+					chunkResult.get();
+					
+				} catch (ExecutionException e) {
+					
+					chunkFailure = (chunkFailure != null) ? chunkFailure : e;
+				}
+			}
 			
-			while (!executor.isTerminated()) {
-	        }
+			if (scheduler != getChunkScheduler()) {
+				scheduler.shutdown();
+			}
+			
+			// All chunks have finished, a failed chunk fails the table
+			if (chunkFailure != null) {
+				throw new Exception(chunkFailure.getCause().getMessage(), chunkFailure.getCause());
+			}
 	
 			logger.info("Finished all chunks");
 			
+			if (fetchSourceMetadata.isPhysicalChunks()) {
+				
+				matchPhysicalChunkRows(appProperties, sourceConn, targetConn, fetchSourceMetadata, fetchTargetMetadata,
+						mismatchSourceData, mismatchTargetData, tableQueries);
+			}
+			
 			logTimeTaken(sourceTimeTaken, targetTimeTaken);
 			
 			dto.setResult(result);
@@ -692,7 +1125,13 @@ public class CompareService {
 			
 			dto.setTableName(tableName);
 			dto.setResult("Failed");
-		} 
+			
+		} finally {
+			
+			if (getChunkWatchdog() != null) {
+				getChunkWatchdog().unregister(tableQueries);
+			}
+		}
 
 		long end = System.currentTimeMillis();
 		long timeTaken = end - start;
@@ -712,6 +1151,206 @@ public class CompareService {
 		return dto;
 	}
 	
+	/**
+	 * The physical chunks of the source and the target hold different rows. Each chunk matches the rows it
+	 * has in common with the chunk of the other side and keeps the fingerprints of the rows left over, which
+	 * are matched here over the whole table. Only the rows still unmatched are read again for the report.
+	 * 
+	 * @param appProperties
+	 * @param sourceConn
+	 * @param targetConn
+	 * @param fetchSourceMetadata
+	 * @param fetchTargetMetadata
+	 * @param mismatchSourceData fingerprints of the rows left over by the chunks, keyed by ROWID
+	 * @param mismatchTargetData fingerprints of the rows left over by the chunks, keyed by ctid
+	 * @param tableQueries queries of the table the rows are fetched again with
+	 * @throws Exception
+	 */
+	private void matchPhysicalChunkRows(AppProperties appProperties, Connection sourceConn, Connection targetConn,
+			FetchMetadata fetchSourceMetadata, FetchMetadata fetchTargetMetadata,
+			Map<String, String> mismatchSourceData, Map<String, String> mismatchTargetData,
+			RunningQueries tableQueries) throws Exception {
+		
+		CompareData compareData = new CompareData(new HashMap<String, String>(mismatchSourceData),
+				new HashMap<String, String>(mismatchTargetData), 0, 1);
+		
+		compareData.run();
+		
+		logger.info("Rows left over by the physical chunks, source: " + mismatchSourceData.size() + ", target: "
+				+ mismatchTargetData.size() + ", unmatched source: " + compareData.getSourceData().size()
+				+ ", unmatched target: " + compareData.getTargetData().size());
+		
+		mismatchSourceData.clear();
+		mismatchTargetData.clear();
+		
+		mismatchSourceData.putAll(compareData.getSourceData());
+		mismatchTargetData.putAll(compareData.getTargetData());
+		
+		// Row hashes are reported as they are unless the complete rows are asked for
+		if ((appProperties.isRowFingerprint() || (appProperties.isHashPushdown() && fetchSourceMetadata.getHashSql() != null
+				&& fetchTargetMetadata.getHashSql() != null)) && !appProperties.isDisplayCompleteData()) {
+			return;
+		}
+		
+		String sourceDBType = fetchSourceMetadata.getDbType();
+		
+		for (List<String> rowids : batches(mismatchSourceData.keySet())) {
+			
+			List<String> rows = new ArrayList<String>();
+			
+			for (String rowid : rowids) {
+				rows.add("CHARTOROWID('" + rowid + "')");
+			}
+			
+			FetchData fetchSourceData = new FetchData(sourceDBType, null, fetchSourceMetadata.getSql(),
+					"where ROWID IN (" + String.join(", ", rows) + ")", sourceConn,
+					fetchSourceMetadata.getTableMetadataMap(), null, appProperties);
+			fetchSourceData.setQueries(tableQueries);
+			
+			mismatchSourceData.putAll(fetchSourceData.fetchRows(new HashSet<String>(rowids)));
+		}
+		
+		for (List<String> ctids : batches(mismatchTargetData.keySet())) {
+			
+			List<String> rows = new ArrayList<String>();
+			
+			for (String ctid : ctids) {
+				rows.add("'" + ctid + "'::tid");
+			}
+			
+			FetchData fetchTargetData = new FetchData("POSTGRESQL", sourceDBType, fetchTargetMetadata.getSql(),
+					"where ctid IN (" + String.join(", ", rows) + ")", targetConn,
+					fetchTargetMetadata.getTableMetadataMap(), fetchSourceMetadata.getTableMetadataMap(), appProperties);
+			fetchTargetData.setQueries(tableQueries);
+			
+			mismatchTargetData.putAll(fetchTargetData.fetchRows(new HashSet<String>(ctids)));
+		}
+	}
+	
+	/**
+	 * 
+	 * @param keys
+	 * @return the keys in lists of up to 1000, the most an Oracle IN list takes
+	 */
+	private List<List<String>> batches(Set<String> keys) {
+		
+		List<List<String>> batches = new ArrayList<List<String>>();
+		List<String> batch = new ArrayList<String>();
+		
+		for (String key : keys) {
+			
+			batch.add(key);
+			
+			if (batch.size() == 1000) {
+				
+				batches.add(batch);
+				batch = new ArrayList<String>();
+			}
+		}
+		
+		if (!batch.isEmpty()) {
+			batches.add(batch);
+		}
+		
+		return batches;
+	}
+	
+	/**
+	 * Key ranges are written for each database, other chunks are read the same way from both.
+	 * 
+	 * @param fetchSourceMetadata
+	 * @param fetchTargetMetadata
+	 * @return chunks of the source plan as read from the target
+	 */
+	private List<String> getTargetChunks(FetchMetadata fetchSourceMetadata, FetchMetadata fetchTargetMetadata) {
+		
+		// Page ranges and buckets are planned on the target for the chunks of the source
+		if (fetchSourceMetadata.isPhysicalChunks() || fetchSourceMetadata.isBucketChunks()) {
+			return new ArrayList<String>(fetchTargetMetadata.getChunks());
+		}
+		
+		List<String> targetChunks = new ArrayList<String>();
+		
+		Set<String> collateColumns = null;
+		String[] targetColumnTypes = null;
+		
+		for (int i = 0; i < fetchSourceMetadata.getChunks().size(); i++) {
+			
+			String chunk = fetchSourceMetadata.getChunks().get(i);
+			KeyRange keyRange = fetchSourceMetadata.getKeyRange(i);
+			
+			if (keyRange != null) {
+				
+				if (collateColumns == null) {
+					
+					collateColumns = getTargetCollateColumns(keyRange, fetchTargetMetadata);
+					targetColumnTypes = new String[keyRange.getColumns().length];
+					
+					for (int j = 0; j < targetColumnTypes.length; j++) {
+						
+						TableColumnMetadata metadata = fetchTargetMetadata.getTableMetadataMap()
+								.get(keyRange.getColumns()[j].toLowerCase());
+						
+						targetColumnTypes[j] = (metadata != null) ? metadata.getColumnType() : null;
+					}
+				}
+				
+				targetChunks.add(keyRange.getChunk("POSTGRESQL", collateColumns, targetColumnTypes));
+				
+			} else {
+				
+				targetChunks.add(fetchSourceMetadata.isHasNoUniqueKey() ? getTargetChunkWhenNoUniqueKey(chunk) : chunk);
+			}
+		}
+		
+		return targetChunks;
+	}
+	
+	/**
+	 * String keys compare in binary order on the source, PostgreSQL needs the C collation for that. Keys
+	 * migrated to a type other than text, such as uuid, and text columns in the C collation already compare
+	 * that way.
+	 * 
+	 * @param keyRange
+	 * @param fetchTargetMetadata
+	 * @return key columns to compare in the C collation on PostgreSQL
+	 */
+	private Set<String> getTargetCollateColumns(KeyRange keyRange, FetchMetadata fetchTargetMetadata) {
+		
+		Set<String> collateColumns = new HashSet<String>();
+		
+		Object[] key = (keyRange.getLowerKey() != null) ? keyRange.getLowerKey() : keyRange.getUpperKey();
+		
+		for (int i = 0; key != null && i < key.length; i++) {
+			
+			String column = keyRange.getColumns()[i];
+			TableColumnMetadata metadata = fetchTargetMetadata.getTableMetadataMap().get(column.toLowerCase());
+			String columnType = (metadata != null) ? metadata.getColumnType().toLowerCase() : "";
+			
+			if ("uniqueidentifier".equalsIgnoreCase(keyRange.getColumnTypes()[i])) {
+				
+				logger.info("Key column " + column + " is compared in the byte order of SQL Server, the chunks read "
+						+ "it without an index on PostgreSQL");
+				continue;
+			}
+			
+			if (key[i] instanceof String && (metadata == null || columnType.contains("char")
+					|| columnType.contains("text"))
+					&& !fetchTargetMetadata.getBinaryColumns().contains(column.toLowerCase())) {
+				
+				collateColumns.add(column);
+			}
+		}
+		
+		if (!collateColumns.isEmpty()) {
+			
+			logger.info("Key columns " + collateColumns + " are not in the C collation on PostgreSQL, the chunks "
+					+ "compare them with COLLATE \"C\" and read without the key index");
+		}
+		
+		return collateColumns;
+	}
+	
 	/**
 	 * 
 	 * @param targetChunk
@@ -1014,6 +1653,43 @@ public class CompareService {
 		}
 	}
 	
+	/**
+	 * 
+	 * @param fetchSourceMetadata
+	 * @return true if the table is sorted by a single integer or decimal column, whose order does not depend
+	 *         on the collation of the database
+	 */
+	private boolean isNumericSortKey(FetchMetadata fetchSourceMetadata) {
+		
+		String sortKey = fetchSourceMetadata.getSortKey();
+		
+		if (sortKey == null || sortKey.contains(",")) {
+			
+			return false;
+		}
+		
+		TableColumnMetadata metadata = fetchSourceMetadata.getTableMetadataMap().get(sortKey.trim().toUpperCase());
+		
+		if (metadata == null) {
+			
+			return false;
+		}
+		
+		switch (ColumnExtractor.resolveKind(metadata.getColumnType())) {
+		
+		case INTEGER:
+		case NUMBER:
+			
+			return true;
+			
+		default:
+			
+			logger.info(sortKey + " is not numeric, Merge compare mode not used");
+			
+			return false;
+		}
+	}
+	
 	/**
 	 * 
 	 * @param fetchSourceMetadata
@@ -1246,54 +1922,118 @@ public class CompareService {
 			new JdbcUtil().closeResultSet(rs);
 		}
 
-	//	ExecutorService executor = Executors.newFixedThreadPool(10);
-	//	Map<String, CompareResult> hashMap = new ConcurrentHashMap<String, CompareResult>();
-		if (!tableNames.isEmpty()) {
+		int parallelTables = appProperties.getNoofParallelTables();
+
+		if (parallelTables > 1 && getSourcePool() != null && getTargetPool() != null) {
+
+			// Table tasks run their metadata queries on pooled connections, the results keep the table order
+			ExecutorService executor = Executors.newFixedThreadPool(parallelTables);
+			List<Future<CompareResult>> results = new ArrayList<Future<CompareResult>>();
 
 			for (String tableName : tableNames) {
-				StringBuilder info = new StringBuilder();
-				info.append("\n----------------------------------------------------\n");
-				info.append("Started Comparing Table Name: ");
-				info.append(tableName);
-				info.append(" in Schema: ");
-				info.append(schemaName);
-				logger.info(info.toString());
-			/*	CompareResult dto = null;
-				CompareTableResults compareTableResults = new CompareTableResults(dto, appProperties, sourceConn, targetConn,
-						schemaName, tableName, columnList, hashMap);
-				executor.execute(compareTableResults);
+
+				results.add(executor.submit(() -> compareTable(appProperties, null, null, schemaName, tableName,
+						columnList)));
 			}
+
 			executor.shutdown();
-			while (!executor.isTerminated()) {
-			}
-			for (final String key : hashMap.keySet()) {
-				CompareResult dto = hashMap.get(key);*/
-				CompareResult dto = compare(appProperties, sourceConn, targetConn, schemaName, tableName, columnList);
-				//if (dto.getReason() == null && !(dto.getResult() != null && "Completed".equals(dto.getResult())) ) {
-					//dto.setTableName(tableName);
-				if (dto.getReason() == null && !(dto.getResult() != null && "Completed".equals(dto.getResult()))) {
-					dto.setTableName(tableName);
-					dto.setReason("Table " + schemaName + "." + tableName + " unable to compare.");
+
+			for (int i = 0; i < tableNames.size(); i++) {
+
+				try {
+
+					tableList.add(results.get(i).get());
+
+				} catch (InterruptedException | ExecutionException e) {
+
+					logger.error(e.getMessage(), e);
+
+					CompareResult dto = new CompareResult();
+					dto.setTableName(tableNames.get(i));
+					dto.setReason("Table " + schemaName + "." + tableNames.get(i) + " unable to compare.");
 					dto.setResult("Failed");
-				}
 
-				tableList.add(dto);
+					tableList.add(dto);
+				}
+			}
 
-	/*			StringBuilder info = new StringBuilder();
+		} else {
 
-				info.append("\n----------------------------------------------------\n");
-				info.append("Finished Comparing Table Name: ");
-				info.append(key);
-				info.append(" in Schema: ");
-				info.append(schemaName);*/
+			for (String tableName : tableNames) {
 
-				logger.info(info.toString());
+				tableList.add(compareTable(appProperties, sourceConn, targetConn, schemaName, tableName, columnList));
 			}
 		}
 
 		return tableList;
 	}
 	
+	/**
+	 * Compares one table of a schema. Without connections the table borrows them from the connection pools.
+	 * 
+	 * @param appProperties
+	 * @param sourceConn
+	 * @param targetConn
+	 * @param schemaName
+	 * @param tableName
+	 * @param columnList
+	 * @return
+	 */
+	private CompareResult compareTable(AppProperties appProperties, Connection sourceConn, Connection targetConn,
+			String schemaName, String tableName, List<String> columnList) {
+
+		StringBuilder info = new StringBuilder();
+		info.append("\n----------------------------------------------------\n");
+		info.append("Started Comparing Table Name: ");
+		info.append(tableName);
+		info.append(" in Schema: ");
+		info.append(schemaName);
+		logger.info(info.toString());
+
+		Connection sourcePooled = null;
+		Connection targetPooled = null;
+
+		CompareResult dto = null;
+
+		try {
+
+			if (sourceConn == null || targetConn == null) {
+
+				sourcePooled = getSourcePool().borrow();
+				targetPooled = getTargetPool().borrow();
+			}
+
+			dto = compare(appProperties, (sourcePooled != null) ? sourcePooled : sourceConn,
+					(targetPooled != null) ? targetPooled : targetConn, schemaName, tableName, columnList);
+
+		} catch (Exception e) {
+
+			logger.error(e.getMessage(), e);
+
+			dto = new CompareResult();
+
+		} finally {
+
+			if (sourcePooled != null) {
+				getSourcePool().release(sourcePooled);
+			}
+
+			if (targetPooled != null) {
+				getTargetPool().release(targetPooled);
+			}
+		}
+
+		if (dto.getReason() == null && !(dto.getResult() != null && "Completed".equals(dto.getResult()))) {
+			dto.setTableName(tableName);
+			dto.setReason("Table " + schemaName + "." + tableName + " unable to compare.");
+			dto.setResult("Failed");
+		}
+
+		logger.info(info.toString());
+
+		return dto;
+	}
+	
 	/**
 	 * 
 	 * @param tablesList
@@ -0,0 +1,197 @@
+/**
+ * Service class to pool the JDBC connections of one database. Each chunk borrows its own connection, so
+ * parallel chunks run their queries in parallel on the database instead of waiting on one shared
+ * connection. The pool never holds more connections than its size, idle connections are validated before
+ * they are handed out. PostgreSQL connections are opened outside autocommit, so its driver streams the
+ * chunks through a cursor instead of reading them whole.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datacompare.util.JdbcUtil;
+
+public class ConnectionPool {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("ConnectionPoolLog");
+
+	/** Seconds to wait for the database when an idle connection is validated */
+	private static final int VALIDATION_TIMEOUT = 5;
+
+	/**
+	 * Opens a new connection to the database of the pool.
+	 */
+	public interface ConnectionFactory {
+
+		Connection create() throws Exception;
+	}
+
+	private String name;
+
+	private int size;
+
+	private ConnectionFactory factory;
+
+	private Semaphore permits;
+
+	private ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<Connection>();
+
+	/**
+	 *
+	 * @param name used in the log
+	 * @param size maximum number of connections
+	 * @param factory
+	 */
+	public ConnectionPool(String name, int size, ConnectionFactory factory) {
+
+		this.name = name;
+		this.size = Math.max(1, size);
+		this.factory = factory;
+		this.permits = new Semaphore(this.size, true);
+	}
+
+	/**
+	 * Opens the connections up front, so the first chunks do not wait for the logins.
+	 *
+	 * @param count
+	 * @throws Exception
+	 */
+	public void warmUp(int count) throws Exception {
+
+		int connections = Math.min(count, size);
+
+		for (int i = idle.size(); i < connections; i++) {
+
+			idle.push(create());
+		}
+
+		logger.info(name + " connection pool warmed up with " + idle.size() + " of " + size + " connections");
+	}
+
+	/**
+	 * Waits until a connection is free. A connection that is no longer valid is replaced by a new one.
+	 *
+	 * @return connection to give back with {@link #release(Connection)}
+	 * @throws Exception
+	 */
+	public Connection borrow() throws Exception {
+
+		permits.acquire();
+
+		try {
+
+			Connection connection;
+
+			while ((connection = idle.poll()) != null) {
+
+				if (isValid(connection)) {
+					return connection;
+				}
+
+				logger.info(name + " connection no longer valid, opening a new one");
+
+				new JdbcUtil().closeConnection(connection);
+			}
+
+			return create();
+
+		} catch (Exception e) {
+
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 *
+	 * @param connection borrowed connection
+	 */
+	public void release(Connection connection) {
+
+		if (connection == null) {
+			return;
+		}
+
+		try {
+
+			if (!connection.isClosed()) {
+
+				// Ends the read transaction, an idle connection holds no snapshot
+				if (!connection.getAutoCommit()) {
+					connection.rollback();
+				}
+
+				idle.push(connection);
+			}
+
+		} catch (SQLException e) {
+
+			logger.error(e.getMessage(), e);
+
+			new JdbcUtil().closeConnection(connection);
+
+		} finally {
+
+			permits.release();
+		}
+	}
+
+	/**
+	 * Closes the idle connections.
+	 */
+	public void close() {
+
+		JdbcUtil jdbcUtil = new JdbcUtil();
+
+		Connection connection;
+
+		while ((connection = idle.poll()) != null) {
+
+			jdbcUtil.closeConnection(connection);
+		}
+	}
+
+	private Connection create() throws Exception {
+
+		Connection connection = factory.create();
+
+		if ("PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+
+			connection.setAutoCommit(false);
+		}
+
+		return connection;
+	}
+
+	private boolean isValid(Connection connection) {
+
+		try {
+
+			return connection.isValid(VALIDATION_TIMEOUT);
+
+		} catch (SQLException e) {
+
+			return false;
+		}
+	}
+
+	/**
+	 * @return the size
+	 */
+	public int getSize() {
+		return size;
+	}
+}
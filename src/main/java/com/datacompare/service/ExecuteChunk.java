@@ -11,22 +11,36 @@
 package com.datacompare.service;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datacompare.model.AppProperties;
+import com.datacompare.model.ChunkOutcome;
+import com.datacompare.model.ChunkRange;
 import com.datacompare.model.TableColumnMetadata;
+import com.datacompare.util.JdbcUtil;
 import com.datacompare.util.MemoryUtil;
+import com.datacompare.util.Murmur3Hasher;
 
 public class ExecuteChunk implements Runnable {
 
 	/** */
 	public Logger logger = LoggerFactory.getLogger("ExecuteChunkLog");
+	
+	/** Milliseconds to wait before the first retry of a chunk, doubled for each further retry */
+	private static final long RETRY_BACKOFF = 1000;
+	
+	/** Longest wait before a retry in milliseconds */
+	private static final long MAX_RETRY_BACKOFF = 60000;
 
 	private int chunkNo;
 	private List<String> failTuple;
@@ -47,6 +61,39 @@ public class ExecuteChunk implements Runnable {
 	private String targetDBType;
 	private String targetSql;
 	
+	private String sourceHashSql;
+	private String targetHashSql;
+	
+	private ChunkRange chunkRange;
+	private ChunkChecksum chunkChecksum;
+	private boolean mergeJoin;
+	private boolean pipeline;
+	private boolean physicalChunks;
+	
+	private ConnectionPool sourcePool;
+	private ConnectionPool targetPool;
+	
+	private Executor fetchExecutor;
+	private Executor compareExecutor;
+	
+	private ChunkAdmission chunkAdmission;
+	private ChunkAdmission.RowSize rowSize;
+	
+	private Semaphore sourceFetchPermits;
+	private Semaphore targetFetchPermits;
+	private LoadGovernor sourceLoadGovernor;
+	private LoadGovernor targetLoadGovernor;
+	
+	private ChunkCheckpoint checkpoint;
+	private ChunkOutcome outcome;
+	
+	private ChunkWatchdog watchdog;
+	private ChunkWatchdog.Latency latency;
+	private List<FetchData> fetches = new CopyOnWriteArrayList<FetchData>();
+	private volatile RunningQueries queries;
+	private volatile boolean stuck;
+	private volatile boolean rescheduled;
+	
 	private Map<String, String> sourceData;
 	private Map<String, String> targetData;
 	
@@ -57,6 +104,9 @@ public class ExecuteChunk implements Runnable {
 	private List<Long> targetTimeTaken;
 	
 	private AppProperties appProperties;
+	
+	/** Heap bytes of a left over row kept as its key and fingerprint */
+	private static final long LEFTOVER_ROW_BYTES = 200;
 
 	/**
 	 * 
@@ -394,6 +444,286 @@ public class ExecuteChunk implements Runnable {
 		this.targetTimeTaken = targetTimeTaken;
 	}
 
+	/**
+	 * @return the sourceHashSql
+	 */
+	public String getSourceHashSql() {
+		return sourceHashSql;
+	}
+
+	/**
+	 * @param sourceHashSql the sourceHashSql to set
+	 */
+	public void setSourceHashSql(String sourceHashSql) {
+		this.sourceHashSql = sourceHashSql;
+	}
+
+	/**
+	 * @return the targetHashSql
+	 */
+	public String getTargetHashSql() {
+		return targetHashSql;
+	}
+
+	/**
+	 * @param targetHashSql the targetHashSql to set
+	 */
+	public void setTargetHashSql(String targetHashSql) {
+		this.targetHashSql = targetHashSql;
+	}
+
+	/**
+	 * @return the chunkRange
+	 */
+	public ChunkRange getChunkRange() {
+		return chunkRange;
+	}
+
+	/**
+	 * @param chunkRange the chunkRange to set
+	 */
+	public void setChunkRange(ChunkRange chunkRange) {
+		this.chunkRange = chunkRange;
+	}
+
+	/**
+	 * @return the chunkChecksum
+	 */
+	public ChunkChecksum getChunkChecksum() {
+		return chunkChecksum;
+	}
+
+	/**
+	 * @param chunkChecksum the chunkChecksum to set
+	 */
+	public void setChunkChecksum(ChunkChecksum chunkChecksum) {
+		this.chunkChecksum = chunkChecksum;
+	}
+
+	/**
+	 * @return true if the chunk is compared by reading both sides in key order
+	 */
+	public boolean isMergeJoin() {
+		return mergeJoin;
+	}
+
+	/**
+	 * @param mergeJoin the mergeJoin to set
+	 */
+	public void setMergeJoin(boolean mergeJoin) {
+		this.mergeJoin = mergeJoin;
+	}
+
+	/**
+	 * @return true if the chunk is compared while it is fetched
+	 */
+	public boolean isPipeline() {
+		return pipeline;
+	}
+
+	/**
+	 * @param pipeline the pipeline to set
+	 */
+	public void setPipeline(boolean pipeline) {
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * @return true if the chunk is a ROWID or ctid range whose left over rows are matched over the table
+	 */
+	public boolean isPhysicalChunks() {
+		return physicalChunks;
+	}
+
+	/**
+	 * @param physicalChunks the physicalChunks to set
+	 */
+	public void setPhysicalChunks(boolean physicalChunks) {
+		this.physicalChunks = physicalChunks;
+	}
+
+	/**
+	 * @return the sourcePool
+	 */
+	public ConnectionPool getSourcePool() {
+		return sourcePool;
+	}
+
+	/**
+	 * @param sourcePool the sourcePool to set
+	 */
+	public void setSourcePool(ConnectionPool sourcePool) {
+		this.sourcePool = sourcePool;
+	}
+
+	/**
+	 * @return the targetPool
+	 */
+	public ConnectionPool getTargetPool() {
+		return targetPool;
+	}
+
+	/**
+	 * @param targetPool the targetPool to set
+	 */
+	public void setTargetPool(ConnectionPool targetPool) {
+		this.targetPool = targetPool;
+	}
+
+	/**
+	 * @return the fetchExecutor
+	 */
+	public Executor getFetchExecutor() {
+		return fetchExecutor;
+	}
+
+	/**
+	 * @param fetchExecutor the fetchExecutor to set
+	 */
+	public void setFetchExecutor(Executor fetchExecutor) {
+		this.fetchExecutor = fetchExecutor;
+	}
+
+	/**
+	 * @return the compareExecutor
+	 */
+	public Executor getCompareExecutor() {
+		return compareExecutor;
+	}
+
+	/**
+	 * @param compareExecutor the compareExecutor to set
+	 */
+	public void setCompareExecutor(Executor compareExecutor) {
+		this.compareExecutor = compareExecutor;
+	}
+
+	/**
+	 * @return the chunkAdmission
+	 */
+	public ChunkAdmission getChunkAdmission() {
+		return chunkAdmission;
+	}
+
+	/**
+	 * @param chunkAdmission the chunkAdmission to set
+	 */
+	public void setChunkAdmission(ChunkAdmission chunkAdmission) {
+		this.chunkAdmission = chunkAdmission;
+	}
+
+	/**
+	 * @return the rowSize
+	 */
+	public ChunkAdmission.RowSize getRowSize() {
+		return rowSize;
+	}
+
+	/**
+	 * @param rowSize the rowSize to set
+	 */
+	public void setRowSize(ChunkAdmission.RowSize rowSize) {
+		this.rowSize = rowSize;
+	}
+
+	/**
+	 * @return the sourceFetchPermits
+	 */
+	public Semaphore getSourceFetchPermits() {
+		return sourceFetchPermits;
+	}
+
+	/**
+	 * @param sourceFetchPermits the sourceFetchPermits to set
+	 */
+	public void setSourceFetchPermits(Semaphore sourceFetchPermits) {
+		this.sourceFetchPermits = sourceFetchPermits;
+	}
+
+	/**
+	 * @return the targetFetchPermits
+	 */
+	public Semaphore getTargetFetchPermits() {
+		return targetFetchPermits;
+	}
+
+	/**
+	 * @param targetFetchPermits the targetFetchPermits to set
+	 */
+	public void setTargetFetchPermits(Semaphore targetFetchPermits) {
+		this.targetFetchPermits = targetFetchPermits;
+	}
+
+	/**
+	 * @return the sourceLoadGovernor
+	 */
+	public LoadGovernor getSourceLoadGovernor() {
+		return sourceLoadGovernor;
+	}
+
+	/**
+	 * @param sourceLoadGovernor the sourceLoadGovernor to set
+	 */
+	public void setSourceLoadGovernor(LoadGovernor sourceLoadGovernor) {
+		this.sourceLoadGovernor = sourceLoadGovernor;
+	}
+
+	/**
+	 * @return the targetLoadGovernor
+	 */
+	public LoadGovernor getTargetLoadGovernor() {
+		return targetLoadGovernor;
+	}
+
+	/**
+	 * @param targetLoadGovernor the targetLoadGovernor to set
+	 */
+	public void setTargetLoadGovernor(LoadGovernor targetLoadGovernor) {
+		this.targetLoadGovernor = targetLoadGovernor;
+	}
+
+	/**
+	 * @return the checkpoint
+	 */
+	public ChunkCheckpoint getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * @param checkpoint records the outcome of the chunk once it completes, null for none
+	 */
+	public void setCheckpoint(ChunkCheckpoint checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * @return the watchdog
+	 */
+	public ChunkWatchdog getWatchdog() {
+		return watchdog;
+	}
+
+	/**
+	 * @param watchdog the watchdog to set
+	 */
+	public void setWatchdog(ChunkWatchdog watchdog) {
+		this.watchdog = watchdog;
+	}
+
+	/**
+	 * @return the latency
+	 */
+	public ChunkWatchdog.Latency getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @param latency times of the completed chunks of the table
+	 */
+	public void setLatency(ChunkWatchdog.Latency latency) {
+		this.latency = latency;
+	}
+
 	/**
 	 * @return the appProperties
 	 */
@@ -411,74 +741,560 @@ public class ExecuteChunk implements Runnable {
 	@Override
 	public void run() {
 		
+		long admittedBytes = -1;
+		
 		try {
 
 			new MemoryUtil().displayMemoryInfo();
 			
 			Thread.currentThread().setName("Executing Chunk No " + getChunkNo()+1); 
 			
-			FetchData fetchSourceData = new FetchData(getSourceDBType(), null, getSourceSql(), getSourceChunk(),
-					getSourceConnection(), getSourceTableMetadata(), null, getAppProperties());
-			fetchSourceData.setTimeTaken(getSourceTimeTaken());
+			// Both sides of the chunk are held in memory at the same time
+			if (getChunkAdmission() != null && getRowSize() != null) {
+				
+				admittedBytes = getChunkAdmission().admit(getRowSize().estimate(2L * getAppProperties().getFetchSize()));
+			}
 			
-			FetchData fetchTargetData = new FetchData(getTargetDBType(), getSourceDBType(), getTargetSql(),
-					getTargetChunk(), getTargetConnection(), getTargetTableMetadata(), getSourceTableMetadata(),
-					getAppProperties());
-			fetchTargetData.setTimeTaken(getTargetTimeTaken()); 
+			JdbcUtil jdbcUtil = new JdbcUtil();
 			
-			ExecutorService executor = Executors.newFixedThreadPool(2);
+			for (int attempt = 1; ; attempt++) {
+				
+				try {
+					
+					compareAttempt();
+					break;
+					
+				} catch (Exception e) {
+					
+					if (getWatchdog() != null && getWatchdog().isCancelled()) {
+						throw e;
+					}
+					
+					// A stuck chunk runs once more right away, the attempt does not count as a retry
+					if (stuck) {
+						
+						stuck = false;
+						attempt--;
+						
+						logger.info("Chunk No " + (getChunkNo()+1) + " rescheduled after it was stuck");
+						continue;
+					}
+					
+					if (attempt > getAppProperties().getFetchRetries() || !jdbcUtil.isTransient(e)) {
+						throw e;
+					}
+					
+					long backoff = Math.min(MAX_RETRY_BACKOFF, RETRY_BACKOFF << (attempt - 1));
+					
+					logger.info("Chunk No " + (getChunkNo()+1) + " attempt " + attempt + " failed: " + e.getMessage()
+							+ ", retrying in " + backoff + " ms");
+					
+					Thread.sleep(backoff);
+				}
+			}
 			
-			executor.execute(fetchSourceData); 
-			executor.execute(fetchTargetData);
+			if (getCheckpoint() != null) {
+				getCheckpoint().record(outcome);
+			}
 			
-			executor.shutdown();
+			publish(outcome);
+
+		} catch (Exception e) {
+
+			logger.error(e.getMessage(), e);
 			
-			while (!executor.isTerminated()) {
-	        }
+			// Fails the future of the chunk, so the table is not reported as compared
+			throw new IllegalStateException("Chunk No " + (getChunkNo()+1) + " failed: " + e.getMessage(), e);
 			
-			Long srcCnt = Long.valueOf(fetchSourceData.getHashMap().size());
-			getSourceCount().add(srcCnt);
+		} finally {
 			
-			Long tarCnt = Long.valueOf(fetchTargetData.getHashMap().size());
-			getTargetCount().add(tarCnt);
-
-			CompareData compareData = new CompareData(fetchSourceData.getHashMap(), fetchTargetData.getHashMap(),
+			if (admittedBytes >= 0) {
+				getChunkAdmission().release(admittedBytes);
+			}
+		}
+	}
+	
+	/**
+	 * Compares the chunk into a new outcome, a failed attempt leaves nothing behind in the table results.
+	 * 
+	 * @throws Exception
+	 */
+	private void compareAttempt() throws Exception {
+		
+		Connection sourcePooled = null;
+		Connection targetPooled = null;
+		
+		outcome = new ChunkOutcome(getChunkNo());
+		fetches.clear();
+		queries = new RunningQueries(getAppProperties().getQueryTimeout());
+		
+		boolean completed = false;
+		
+		if (getWatchdog() != null) {
+			
+			if (getWatchdog().isCancelled()) {
+				throw new IllegalStateException("Comparison cancelled");
+			}
+			
+			getWatchdog().started(this, getLatency());
+		}
+		
+		try {
+			
+			// The chunk runs its queries on its own connections when the connections are pooled
+			if (getSourcePool() != null && getTargetPool() != null) {
+				
+				sourcePooled = getSourcePool().borrow();
+				setSourceConnection(sourcePooled);
+				
+				targetPooled = getTargetPool().borrow();
+				setTargetConnection(targetPooled);
+			}
+			
+			if (getChunkChecksum() != null && getChunkRange() != null) {
+				
+				compareByChecksum();
+				
+			} else {
+				
+				compareChunk(getSourceChunk(), getTargetChunk(), true);
+			}
+			
+			completed = true;
+			
+		} finally {
+			
+			if (getWatchdog() != null) {
+				getWatchdog().finished(this, completed && !rescheduled);
+			}
+			
+			// A broken connection is replaced when it is borrowed again
+			if (sourcePooled != null) {
+				getSourcePool().release(sourcePooled);
+			}
+			
+			if (targetPooled != null) {
+				getTargetPool().release(targetPooled);
+			}
+		}
+	}
+	
+	/**
+	 * Cancels the queries of the running attempt.
+	 */
+	public void cancel() {
+		
+		for (FetchData fetch : fetches) {
+			
+			fetch.cancel();
+		}
+		
+		RunningQueries attemptQueries = queries;
+		
+		if (attemptQueries != null) {
+			attemptQueries.cancel();
+		}
+	}
+	
+	/**
+	 * Cancels the queries of the running attempt to run the chunk once more, a chunk is only rescheduled
+	 * once. A chunk that runs no query is left alone, the cancel would only fail its next query and that
+	 * failure would be taken for the stuck query.
+	 * 
+	 * @return false if the chunk was rescheduled before or runs no query
+	 */
+	public synchronized boolean cancelStuck() {
+		
+		if (rescheduled || !isQueryRunning()) {
+			return false;
+		}
+		
+		rescheduled = true;
+		stuck = true;
+		
+		cancel();
+		
+		return true;
+	}
+	
+	/**
+	 * @return true while a fetch or a checksum query of the running attempt runs
+	 */
+	private boolean isQueryRunning() {
+		
+		for (FetchData fetch : fetches) {
+			
+			if (fetch.isRunning()) {
+				return true;
+			}
+		}
+		
+		RunningQueries attemptQueries = queries;
+		
+		return attemptQueries != null && attemptQueries.isRunning();
+	}
+	
+	/**
+	 * Adds the outcome of the chunk to the table results.
+	 * 
+	 * @param chunkOutcome compared or read from the checkpoint
+	 */
+	public void publish(ChunkOutcome chunkOutcome) {
+		
+		if(!"Completed".equals(chunkOutcome.getResult())) {
+			setResult(chunkOutcome.getResult());
+		}
+		
+		getSourceCount().add(Long.valueOf(chunkOutcome.getSourceCount()));
+		getTargetCount().add(Long.valueOf(chunkOutcome.getTargetCount()));
+		getSourceTimeTaken().addAll(chunkOutcome.getSourceTimeTaken());
+		getTargetTimeTaken().addAll(chunkOutcome.getTargetTimeTaken());
+		getFailTuple().addAll(chunkOutcome.getFailTuple());
+		getSourceData().putAll(chunkOutcome.getSourceData());
+		getTargetData().putAll(chunkOutcome.getTargetData());
+		
+		long leftoverRows = getSourceData().size() + getTargetData().size();
+		
+		if (isPhysicalChunks() && leftoverRows > maxLeftoverRows()) {
+			
+			throw new IllegalStateException("Rows left over by the physical chunks exceed " + maxLeftoverRows()
+					+ " fingerprints, half of the memory budget. Compare the table with keylessStrategy RowNumber "
+					+ "or a larger heap");
+		}
+	}
+	
+	/**
+	 * @return left over rows of the physical chunks that fit into half of the memory budget
+	 */
+	private long maxLeftoverRows() {
+		
+		return Runtime.getRuntime().maxMemory() / 100
+				* Math.max(1, Math.min(getAppProperties().getMemoryBudgetPercent(), 100)) / 2 / LEFTOVER_ROW_BYTES;
+	}
+	
+	/**
+	 * Compares the checksums of the chunk range and fetches only the key ranges that differ.
+	 * 
+	 * @throws Exception
+	 */
+	private void compareByChecksum() throws Exception {
+		
+		List<ChunkRange> differingRanges = new ArrayList<ChunkRange>();
+		
+		long[] counts = getChunkChecksum().compare(getSourceConnection(), getTargetConnection(), getChunkRange(),
+				differingRanges, queries);
+		
+		addCounts(counts[0], counts[1]);
+		
+		StringBuilder info = new StringBuilder();
+		
+		info.append("Chunk No ");
+		info.append(getChunkNo()+1);
+		info.append(differingRanges.isEmpty() ? " checksums match" : " checksums differ, ranges to fetch: ");
+		info.append(differingRanges.isEmpty() ? "" : String.valueOf(differingRanges.size()));
+		
+		logger.info(info.toString());
+		
+		for (ChunkRange range : differingRanges) {
+			
+			compareChunk(range.getChunk(), range.getChunk(), false);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param sourceChunk
+	 * @param targetChunk
+	 * @param countRows add the fetched row counts to the source and target counts
+	 * @throws Exception
+	 */
+	private void compareChunk(String sourceChunk, String targetChunk, boolean countRows) throws Exception {
+		
+		if (isPipeline()) {
+			
+			comparePipeline(sourceChunk, targetChunk, countRows);
+			return;
+		}
+		
+		if (isMergeJoin()) {
+			
+			if (compareMerge(sourceChunk, targetChunk, countRows)) {
+				return;
+			}
+			
+			logger.info("Chunk No " + (getChunkNo()+1) + " compared by hash");
+		}
+		
+		FetchData fetchSourceData = newSourceFetch(sourceChunk);
+		FetchData fetchTargetData = newTargetFetch(targetChunk);
+		
+		// Both sides are fetched at the same time, the rows are compared on the compare threads once the
+		// slower fetch completes
+		CompareData compareData = CompletableFuture
+				.allOf(CompletableFuture.runAsync(fetchSourceData, getFetchExecutor()),
+						CompletableFuture.runAsync(fetchTargetData, getFetchExecutor()))
+				.thenApplyAsync(fetched -> (fetchSourceData.getFailure() == null
+						&& fetchTargetData.getFailure() == null) ? compare(fetchSourceData, fetchTargetData, countRows)
+								: null, getCompareExecutor())
+				.join();
+		
+		if (compareData == null) {
+			throw (fetchSourceData.getFailure() != null) ? fetchSourceData.getFailure() : fetchTargetData.getFailure();
+		}
+		
+		if (getAppProperties().isRowFingerprint()) {
+			
+			fetchSourceData.getFingerprints().clear();
+			fetchTargetData.getFingerprints().clear();
+		}
+		
+		addResults(compareData.getResult(), compareData.getFailTuple(), compareData.getSourceData(),
+				compareData.getTargetData(), fetchSourceData, fetchTargetData);
+		
+		fetchSourceData.getHashMap().clear();
+		fetchTargetData.getHashMap().clear();
+	}
+	
+	/**
+	 * Compares the fetched rows of both sides.
+	 * 
+	 * @param fetchSourceData
+	 * @param fetchTargetData
+	 * @param countRows add the fetched row counts to the source and target counts
+	 * @return the completed comparison
+	 */
+	private CompareData compare(FetchData fetchSourceData, FetchData fetchTargetData, boolean countRows) {
+		
+		if (getRowSize() != null) {
+			
+			long rows = getAppProperties().isRowFingerprint()
+					? fetchSourceData.getFingerprints().size() + fetchTargetData.getFingerprints().size()
+					: fetchSourceData.getHashMap().size() + fetchTargetData.getHashMap().size();
+			
+			getRowSize().record(rows, fetchSourceData.getRowChars() + fetchTargetData.getRowChars());
+		}
+		
+		CompareData compareData = null;
+		
+		if (getAppProperties().isRowFingerprint()) {
+			
+			if (countRows) {
+				
+				addCounts(fetchSourceData.getFingerprints().size(), fetchTargetData.getFingerprints().size());
+			}
+			
+			compareData = new CompareData(fetchSourceData.getFingerprints(), fetchTargetData.getFingerprints(),
 					getChunkNo(), getNumberOfChunks());
 			
-			executor = Executors.newFixedThreadPool(1);
+		} else {
 			
-			executor.execute(compareData); 
+			if (countRows) {
+				
+				addCounts(fetchSourceData.getHashMap().size(), fetchTargetData.getHashMap().size());
+			}
+	
+			compareData = new CompareData(fetchSourceData.getHashMap(), fetchTargetData.getHashMap(),
+					getChunkNo(), getNumberOfChunks());
+		}
+		
+		compareData.run();
+		
+		return compareData;
+	}
+	
+	/**
+	 * Compares the chunk by reading both sides in key order.
+	 * 
+	 * @param sourceChunk
+	 * @param targetChunk
+	 * @param countRows add the fetched row counts to the source and target counts
+	 * @return false if the keys were not ordered the same way and the chunk has to be compared by hash
+	 * @throws Exception
+	 */
+	private boolean compareMerge(String sourceChunk, String targetChunk, boolean countRows) throws Exception {
+		
+		FetchData fetchSourceData = newSourceFetch(sourceChunk);
+		FetchData fetchTargetData = newTargetFetch(targetChunk);
+		
+		MergeCompareData compareData = new MergeCompareData(fetchSourceData, fetchTargetData,
+				getAppProperties().isRowFingerprint(), getChunkNo(), getNumberOfChunks());
+		
+		compareData.run();
+		
+		if (compareData.getFailure() != null) {
+			throw compareData.getFailure();
+		}
+		
+		if (compareData.isOrderViolation()) {
 			
-			executor.shutdown();
-
-			while (!executor.isTerminated()) {
-	        }
+			return false;
+		}
+		
+		if (countRows) {
+			
+			addCounts(compareData.getSourceCount(), compareData.getTargetCount());
+		}
+		
+		addResults(compareData.getResult(), compareData.getFailTuple(), compareData.getSourceData(),
+				compareData.getTargetData(), fetchSourceData, fetchTargetData);
+		
+		return true;
+	}
+	
+	/**
+	 * Compares the chunk while both sides are fetched.
+	 * 
+	 * @param sourceChunk
+	 * @param targetChunk
+	 * @param countRows add the fetched row counts to the source and target counts
+	 * @throws Exception
+	 */
+	private void comparePipeline(String sourceChunk, String targetChunk, boolean countRows) throws Exception {
+		
+		FetchData fetchSourceData = newSourceFetch(sourceChunk);
+		FetchData fetchTargetData = newTargetFetch(targetChunk);
+		
+		PipelineCompareData compareData = new PipelineCompareData(fetchSourceData, fetchTargetData,
+				getFetchExecutor(), getAppProperties().isRowFingerprint(), getChunkNo(), getNumberOfChunks());
+		
+		compareData.run();
+		
+		if (compareData.getFailure() != null) {
+			throw compareData.getFailure();
+		}
+		
+		if (countRows) {
+			
+			addCounts(compareData.getSourceCount(), compareData.getTargetCount());
+		}
+		
+		addResults(compareData.getResult(), compareData.getFailTuple(), compareData.getSourceData(),
+				compareData.getTargetData(), fetchSourceData, fetchTargetData);
+	}
+	
+	/**
+	 * 
+	 * @param sourceChunk
+	 * @return fetch of the source side of the chunk
+	 * @throws Exception
+	 */
+	private FetchData newSourceFetch(String sourceChunk) throws Exception {
+		
+		FetchData fetchSourceData = new FetchData(getSourceDBType(), null, getSourceSql(), sourceChunk,
+				getSourceConnection(), getSourceTableMetadata(), null, getAppProperties());
+		fetchSourceData.setTimeTaken(outcome.getSourceTimeTaken());
+		fetchSourceData.setHashSql(getSourceHashSql());
+		fetchSourceData.setFetchPermits(getSourceFetchPermits());
+		fetchSourceData.setLoadGovernor(getSourceLoadGovernor());
+		
+		fetches.add(fetchSourceData);
+		
+		return fetchSourceData;
+	}
+	
+	/**
+	 * 
+	 * @param targetChunk
+	 * @return fetch of the target side of the chunk
+	 * @throws Exception
+	 */
+	private FetchData newTargetFetch(String targetChunk) throws Exception {
+		
+		FetchData fetchTargetData = new FetchData(getTargetDBType(), getSourceDBType(), getTargetSql(),
+				targetChunk, getTargetConnection(), getTargetTableMetadata(), getSourceTableMetadata(),
+				getAppProperties());
+		fetchTargetData.setTimeTaken(outcome.getTargetTimeTaken());
+		fetchTargetData.setHashSql(getTargetHashSql());
+		fetchTargetData.setFetchPermits(getTargetFetchPermits());
+		fetchTargetData.setLoadGovernor(getTargetLoadGovernor());
+		
+		fetches.add(fetchTargetData);
+		
+		return fetchTargetData;
+	}
+	
+	/**
+	 * 
+	 * @param sourceRows
+	 * @param targetRows
+	 */
+	private void addCounts(long sourceRows, long targetRows) {
+		
+		outcome.setSourceCount(outcome.getSourceCount() + sourceRows);
+		outcome.setTargetCount(outcome.getTargetCount() + targetRows);
+	}
+	
+	/**
+	 * Adds the mismatched rows of a compared chunk to the outcome of the chunk.
+	 * 
+	 * @param result
+	 * @param failTuple
+	 * @param sourceData
+	 * @param targetData
+	 * @param fetchSourceData
+	 * @param fetchTargetData
+	 * @throws SQLException if the rows fetched again were cancelled
+	 */
+	private void addResults(String result, List<String> failTuple, Map<String, String> sourceData,
+			Map<String, String> targetData, FetchData fetchSourceData, FetchData fetchTargetData) throws SQLException {
+		
+		if(!"Completed".equals(result)) {
+			outcome.setResult(result);
+		}
 
-			String result = compareData.getResult();
+		outcome.getFailTuple().addAll(failTuple); 
+		
+		// Physical chunks leave most rows over, only their fingerprints are kept until the table is matched
+		if (isPhysicalChunks()) {
 			
-			if(!"Completed".equals(result)) {
-				setResult(result);
+			outcome.getSourceData().putAll(fingerprints(sourceData));
+			outcome.getTargetData().putAll(fingerprints(targetData));
+			return;
+		}
+		
+		// Only hashes of the rows were kept, fetch the row data of the mismatches for the report
+		if ((getAppProperties().isRowFingerprint() || getSourceHashSql() != null)
+				&& getAppProperties().isDisplayCompleteData()) {
+			
+			if (!sourceData.isEmpty()) {
+				sourceData.putAll(fetchSourceData.fetchRows(sourceData.keySet()));
 			}
-
-			List<String> failTuple = compareData.getFailTuple();
-			getFailTuple().addAll(failTuple); 
 			
-			Map<String, String> sourceData = compareData.getSourceData();
-			getSourceData().putAll(sourceData);
+			if (!targetData.isEmpty()) {
+				targetData.putAll(fetchTargetData.fetchRows(targetData.keySet()));
+			}
+		}
+		
+		outcome.getSourceData().putAll(sourceData);
+		outcome.getTargetData().putAll(targetData);  
+	}
+	
+	/**
+	 * 
+	 * @param rows mismatched rows
+	 * @return the rows with the 128 bit fingerprint of their value as hex, row hashes are kept as they are
+	 */
+	private Map<String, String> fingerprints(Map<String, String> rows) {
+		
+		if (getAppProperties().isRowFingerprint() || getSourceHashSql() != null) {
+			return rows;
+		}
+		
+		Murmur3Hasher hasher = new Murmur3Hasher();
+		
+		for (Map.Entry<String, String> row : rows.entrySet()) {
 			
-			Map<String, String> targetData = compareData.getTargetData();
-			getTargetData().putAll(targetData);  
+			if (row.getValue() == null) {
+				continue;
+			}
 			
-			fetchSourceData.getHashMap().clear();
-			fetchTargetData.getHashMap().clear();
+			hasher.reset();
+			hasher.putUtf8(row.getValue());
+			hasher.finish();
 			
-			fetchSourceData = null;
-			fetchTargetData = null;
-			executor = null;
-
-		} catch (Exception e) {
-
-			logger.error(e.getMessage(), e);
+			row.setValue(hasher.toHex());
 		}
+		
+		return rows;
 	}
-}
\ No newline at end of file
+}
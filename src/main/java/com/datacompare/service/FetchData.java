@@ -16,24 +16,25 @@ import com.datacompare.model.TableColumnMetadata;
 import com.datacompare.util.DateUtil;
 import com.datacompare.util.JdbcUtil;
 import com.datacompare.util.MemoryUtil;
+import com.datacompare.util.RowEncoder;
 import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.postgresql.largeobject.LargeObject;
 import org.postgresql.largeobject.LargeObjectManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.util.DigestUtils;
 
 import java.io.*;
-import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.sql.*;
-import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.zip.GZIPInputStream;
 
 public class FetchData implements Runnable {
@@ -45,24 +46,59 @@ public class FetchData implements Runnable {
 
     private String PIPE_SEPARATOR = " || ";
 
+    /** Rows read between two calls of the load governor */
+    private static final int GOVERNED_BATCH = 256;
+
     private String chunk = null;
     private String dbType = null;
     private String sourceDBType = null;
     private String sortKey = null;
     private String sql = null;
+    private String hashSql = null;
 
     private Connection connection = null;
 
     private int fetchSize;
+    private int queryTimeout;
     private long rowCount;
+    private long rowChars;
     private boolean compareOnlyDate;
+    private boolean rowFingerprint;
+    private String lobHashAlgorithm;
 
     private Map<String, String> hashMap = null;
+    private RowFingerprints fingerprints = null;
     private Map<String, TableColumnMetadata> tableMetadataMap = null;
     private Map<String, TableColumnMetadata> sourceTableMetadataMap = null;
 
     private List<Long> timeTaken;
 
+    private volatile Statement cursorStatement = null;
+    private volatile Statement rowsStatement = null;
+    private RunningQueries queries = null;
+    private volatile boolean cancelled;
+    private ResultSet cursorResultSet = null;
+    private ColumnExtractor[] columnPlan = null;
+    private RowEncoder encoder = null;
+    private StringBuilder rowBuffer = null;
+    private boolean hashPushdown;
+    private int keyIndex;
+    private int hashIndex;
+    private long cursorStart;
+    private Semaphore fetchPermits = null;
+    private boolean permitHeld;
+    private LoadGovernor loadGovernor = null;
+    private long governedRows;
+    private long governedBytes;
+    private long sampledRows;
+    private long sampledNanos;
+    private SQLException failure = null;
+
+    private String currentKey;
+    private String currentValue;
+    private long currentHigh;
+    private long currentLow;
+
     /**
      * @param dbType
      * @param sourceDBType
@@ -87,7 +123,10 @@ public class FetchData implements Runnable {
         setSql(sql);
         setChunk(chunk);
         setFetchSize(appProperties.getFetchSize());
+        setQueryTimeout(appProperties.getQueryTimeout());
         setCompareOnlyDate(appProperties.isCompareOnlyDate());
+        setRowFingerprint(appProperties.isRowFingerprint());
+        setLobHashAlgorithm(appProperties.getLobHashAlgorithm());
         setTableMetadataMap(tableMetadata);
         setSourceTableMetadataMap(sourceTableMetadata);
         setHashMap(new ConcurrentHashMap<String, String>());
@@ -102,6 +141,72 @@ public class FetchData implements Runnable {
 
         Thread.currentThread().setName(getDbType() + " " + chunk);
 
+        try {
+
+            getHashMap().clear();
+
+            if (isRowFingerprint()) {
+
+                setFingerprints(new RowFingerprints(getFetchSize()));
+            }
+
+            long keySize = 0;
+            long valSize = 0;
+
+            open();
+
+            while (next()) {
+
+                String key = getCurrentKey();
+
+                if (isRowFingerprint()) {
+
+                    getFingerprints().put(key, getCurrentHigh(), getCurrentLow());
+
+                    valSize = valSize + 16;
+                    keySize = keySize + key.length();
+
+                } else {
+
+                    String val = getCurrentValue();
+
+                    if (val != null && val.trim().length() > 0) {
+
+                        valSize = valSize + val.length();
+                        keySize = keySize + key.length();
+                    }
+
+                    getHashMap().put(key, val);
+                }
+            }
+
+            rowChars = keySize + valSize;
+
+            logger.debug(getDbType() + " Map Size in bytes " + (keySize + valSize) + " ,Value Size in Bytes "
+                    + valSize + " , Key Size in Bytes " + keySize);
+            new MemoryUtil().displayMemoryInfo();
+
+        } catch (SQLException ex) {
+
+            logger.error(getDbType(), ex);
+
+            // The rows read so far are incomplete, the chunk has to fail instead of comparing them
+            failure = ex;
+
+        } finally {
+
+            close();
+        }
+    }
+
+    /**
+     * Executes the chunk query to read it row by row with {@link #next()}. Both chunk queries order by the
+     * key, so two opened chunks can be compared in key order.
+     *
+     * @throws SQLException
+     */
+    public void open() throws SQLException {
+
         StringBuilder info = new StringBuilder();
 
         info.append("Started executing chunk for DB: ");
@@ -113,295 +218,446 @@ public class FetchData implements Runnable {
 
         logger.info(info.toString());
 
-        Statement stmt = null;
-        ResultSet rs = null;
+        // Limits the queries running at the same time on this database
+        if (getFetchPermits() != null) {
 
-        try {
+            try {
 
-            SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            SimpleDateFormat dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+                getFetchPermits().acquire();
+                permitHeld = true;
 
-            getHashMap().clear();
+            } catch (InterruptedException e) {
 
-            stmt = getConnection().createStatement();
-            long start = System.currentTimeMillis();
-            long keySize = 0;
-            long valSize = 0;
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting to fetch from " + getDbType(), e);
+            }
+        }
 
-            String query = getSql() + " " + getChunk();
+        checkCancelled();
 
-            //logger.debug(query);
+        cursorStart = System.currentTimeMillis();
 
-            rs = stmt.executeQuery(query);
+        // In the hash pushdown mode the databases return the key and a hash of the row
+        hashPushdown = getHashSql() != null;
 
-            rs.setFetchSize(getFetchSize());
+        String query = (hashPushdown ? getHashSql() : getSql()) + " " + getChunk();
 
-            while (rs.next()) {
+        cursorStatement = getConnection().createStatement();
 
-                try {
+        // Set before the query runs, PostgreSQL streams with a cursor only then and outside autocommit
+        cursorStatement.setFetchSize(getFetchSize());
 
-                    String key = rs.getString("key1");
-                    StringBuilder value = new StringBuilder();
+        if (getQueryTimeout() > 0) {
+            cursorStatement.setQueryTimeout(getQueryTimeout());
+        }
 
-                    List<String> colNames = new ArrayList<String>(
-                            getSourceTableMetadataMap() != null && !getSourceTableMetadataMap().isEmpty()
-                                    ? getSourceTableMetadataMap().keySet() : getTableMetadataMap().keySet());
+        // A cancel between the check and the statement would not reach the database
+        checkCancelled();
 
-                    for (String colName : colNames) {
+        cursorResultSet = cursorStatement.executeQuery(query);
 
-                        colName = "POSTGRESQL".equals(getDbType()) ? colName.toLowerCase() : colName.toUpperCase();
+        columnPlan = hashPushdown ? null : compileColumnPlan(cursorResultSet);
+        keyIndex = cursorResultSet.findColumn("key1");
+        hashIndex = hashPushdown ? cursorResultSet.findColumn(FetchMetadata.ROW_HASH_COLUMN) : 0;
+        rowBuffer = new StringBuilder();
+        encoder = new RowEncoder();
+    }
 
-                        TableColumnMetadata metadata = getTableMetadataMap().get(colName);
-                        TableColumnMetadata sourceMetadata = null;
-                        String columnType = metadata.getColumnType();
-                        String columnName=metadata.getColumnName();
-                        int noOfDecimals = metadata.getNoOfDecimals();
-                        int sourceNoOfDecimals = 0;
+    /**
+     * Reads the next row of the opened chunk. The key and the row text, or in fingerprint mode the row
+     * fingerprint, are available from the current row getters. Rows that cannot be read are logged and
+     * skipped.
+     *
+     * @return false at the end of the chunk
+     * @throws SQLException
+     */
+    public boolean next() throws SQLException {
 
-                        if ("POSTGRESQL".equals(getDbType())) {
+        checkCancelled();
 
-                            sourceMetadata = getSourceTableMetadataMap().get(metadata.getColumnName().toUpperCase());
+        long readStart = (getLoadGovernor() != null) ? System.nanoTime() : 0;
 
-                            if (sourceMetadata != null) {
+        while (cursorResultSet.next()) {
 
-                                sourceNoOfDecimals = sourceMetadata.getNoOfDecimals();
-                            }
-                            // To handle the column names with #
-                            if(columnName.contains("#")) {
-                                if(!columnName.contains("#\"")) {
-                                //    columnName = "\"" + columnName + "\"";
-                                }
-                            }
-                        }
-                        if (columnType.contains("int") || columnType.contains("INT")) {
+            try {
 
-                            long rValue = rs.getLong(columnName);
-                            value.append(PIPE_SEPARATOR);
-                            value.append(rValue);
+                currentKey = cursorResultSet.getString(keyIndex).trim();
 
-                        } else if (columnType.contains("boolean") || columnType.contains("BOOLEAN")) {
+                if (isRowFingerprint() && hashPushdown) {
 
-                            boolean bValue = rs.getBoolean(columnName);
-                            value.append(PIPE_SEPARATOR);
-                            value.append(bValue);
+                    String hash = cursorResultSet.getString(hashIndex);
 
-                        } else if (columnType.compareTo("DECIMAL") == 0 || columnType.compareTo("NUMBER") == 0
-                                || columnType.compareTo("numeric") == 0) {
+                    currentHigh = Long.parseUnsignedLong(hash.substring(0, 16), 16);
+                    currentLow = Long.parseUnsignedLong(hash.substring(16, 32), 16);
 
-                            noOfDecimals = (sourceNoOfDecimals > 0) ? sourceNoOfDecimals : noOfDecimals;
+                } else if (isRowFingerprint()) {
 
-                            if (noOfDecimals > 0) {
+                    encoder.startRow();
 
-                                String decimalFormat = (sourceMetadata != null) ? sourceMetadata.getDecimalFormat()
-                                        : metadata.getDecimalFormat();
+                    for (ColumnExtractor extractor : columnPlan) {
 
-                                DecimalFormat df2 = new DecimalFormat(decimalFormat);
-                                df2.setGroupingUsed(false);
-                                double doub = 0;
+                        extractor.encode(cursorResultSet, encoder);
+                    }
 
-                                if (getDbType().equals("ORACLE") && columnType.compareTo("NUMBER") == 0) {
+                    encoder.finishRow();
 
-                                    doub = rs.getDouble(columnName);
+                    currentHigh = encoder.getHasher().getHigh();
+                    currentLow = encoder.getHasher().getLow();
 
-                                } else {
+                } else {
 
-                                    BigDecimal bValue = rs.getBigDecimal(columnName);
-                                    doub = (bValue != null) ? bValue.doubleValue() : 0;
-                                }
+                    currentValue = hashPushdown ? cursorResultSet.getString(hashIndex)
+                            : buildRowValue(columnPlan, cursorResultSet, rowBuffer);
+                }
 
-                                value.append(PIPE_SEPARATOR);
-                                value.append(df2.format(doub));
+            } catch (Exception e) {
 
-                            } else {
+                logger.error(getDbType(), e);
+                continue;
+            }
 
-                                if (getDbType().equals("ORACLE") && columnType.compareTo("NUMBER") == 0) {
+            // Outside the row try, a failed throttle fails the chunk instead of skipping the row
+            if (getLoadGovernor() != null) {
 
-                                    long lValue = rs.getLong(columnName);
-                                    value.append(PIPE_SEPARATOR);
-                                    value.append(Long.valueOf(lValue).toString());
+                govern(System.nanoTime() - readStart);
+            }
 
-                                } else {
+            return true;
+        }
 
-                                    String dValue = rs.getString(columnName);
-                                    String nValue = (dValue != null && !dValue.equals("null")
-                                            && dValue.trim().length() > 0) ? dValue : "0";
-                                    value.append(PIPE_SEPARATOR);
-                                    value.append(nValue);
-                                }
-                            }
+        return false;
+    }
 
-                        } else if (columnType.contains("float") || columnType.contains("FLOAT") || columnType.compareTo("DOUBLE") == 0) {
+    /**
+     * Cancels the query of the opened chunk or of the rows fetched again from another thread, the fetching
+     * thread gets an SQLException.
+     */
+    public void cancel() {
 
-                            noOfDecimals = (sourceNoOfDecimals > 0) ? sourceNoOfDecimals : noOfDecimals;
+        cancelled = true;
 
-                            if (noOfDecimals > 0) {
+        for (Statement statement : new Statement[] { cursorStatement, rowsStatement }) {
 
-                                String decimalFormat = (sourceMetadata != null) ? sourceMetadata.getDecimalFormat()
-                                        : metadata.getDecimalFormat();
+            if (statement != null) {
 
-                                DecimalFormat df2 = new DecimalFormat(decimalFormat);
-                                df2.setGroupingUsed(false);
-                                double doub = rs.getDouble(columnName);
-                                value.append(PIPE_SEPARATOR);
-                                value.append(df2.format(doub));
+                try {
 
-                            } else {
+                    statement.cancel();
 
-                                String dValue = rs.getString(columnName);
-                                String fValue = (dValue != null && !dValue.equals("null") && dValue.trim().length() > 0)
-                                        ? dValue
-                                        : "0";
-                                value.append(PIPE_SEPARATOR);
-                                value.append(fValue);
-                            }
+                } catch (SQLException e) {
 
-                        } else if (columnType.contains("char") || columnType.contains("CHAR")) {
+                    logger.error(getDbType(), e);
+                }
+            }
+        }
+    }
 
-                            String cValue = rs.getString(columnName);
-                            String cVal = (cValue != null && !cValue.equals("null") && cValue.trim().length() > 0)
-                                    ? cValue
-                                    : "";
-                            value.append(PIPE_SEPARATOR);
-                            value.append(cVal);
+    /**
+     * @return true while a query of the fetch runs
+     */
+    public boolean isRunning() {
 
-                        } else if (columnType.contains("timestamp") || columnType.contains("TIMESTAMP")) {
+        return cursorStatement != null || rowsStatement != null;
+    }
 
-                            try {
+    /**
+     * @throws SQLException if the fetch was cancelled
+     */
+    private void checkCancelled() throws SQLException {
 
-                                Timestamp timestamp = rs.getTimestamp(columnName);
+        if (cancelled) {
+            throw new SQLException("Fetch from " + getDbType() + " cancelled");
+        }
+    }
 
-                                String dtStr = (timestamp != null) ? ((isCompareOnlyDate())
-                                        ? dateFormat.format(timestamp) : dateTimeFormat.format(timestamp)) : "";
+    /**
+     * Hands the rows read to the load governor in batches, it waits when the caps of the database are
+     * reached. The read time is handed over per fetch size rows, so every sample holds a round trip.
+     *
+     * @param readNanos time taken to read the current row
+     * @throws SQLException
+     */
+    private void govern(long readNanos) throws SQLException {
 
-                                value.append(PIPE_SEPARATOR);
-                                value.append(dtStr);
+        long rowBytes;
 
-                            } catch (Exception e) {
+        if (isRowFingerprint() && hashPushdown) {
+            rowBytes = currentKey.length() + 32;
+        } else if (isRowFingerprint()) {
+            rowBytes = currentKey.length() + encoder.getHasher().getLength();
+        } else {
+            rowBytes = currentKey.length() + (currentValue != null ? currentValue.length() : 0);
+        }
 
-                                logger.error(getDbType(), e);
-                                value.append(PIPE_SEPARATOR);
-                                value.append("");
-                            }
+        governedRows++;
+        governedBytes += rowBytes;
+        sampledRows++;
+        sampledNanos += readNanos;
 
-                        } else if (columnType.contains("DATE") || columnType.contains("date")) {
+        if (sampledRows >= Math.max(GOVERNED_BATCH, getFetchSize())) {
 
-                            try {
+            getLoadGovernor().observe(sampledRows, sampledNanos);
 
-                                java.sql.Timestamp date = rs.getTimestamp(columnName);
+            sampledRows = 0;
+            sampledNanos = 0;
+        }
 
-                                String dtStr = (date != null) ? ((isCompareOnlyDate())
-                                        ? dateFormat.format(date) : dateTimeFormat.format(date)) : "";
+        if (governedRows < GOVERNED_BATCH) {
+            return;
+        }
 
-                                value.append(PIPE_SEPARATOR);
-                                value.append(dtStr);
+        try {
 
-                            } catch (Exception e) {
+            getLoadGovernor().acquire(governedRows, governedBytes);
 
-                                logger.error(getDbType(), e);
+        } catch (InterruptedException e) {
 
-                                value.append(PIPE_SEPARATOR);
-                                value.append("");
-                            }
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while throttling the fetch from " + getDbType(), e);
 
-                        } else if (
-                                   columnType.equalsIgnoreCase("TEXT")
-                                           || columnType.equalsIgnoreCase("BYTEA")
-                                           || columnType.equalsIgnoreCase("BLOB")){
+        } finally {
 
-                            // Binary data as MD5 hash value
-                            byte blobVal[] = rs.getBytes(columnName);
-                            String hValue = (blobVal != null && !blobVal.equals("null") && blobVal.length > 0)
-                                    ? getHash(blobVal)
-                                    : "";
-                            value.append(PIPE_SEPARATOR);
-                            value.append(hValue);
+            governedRows = 0;
+            governedBytes = 0;
+        }
+    }
 
-                        } else if (columnType.equalsIgnoreCase("CLOB")) {
-                            // Clob data
-							Clob clob  = rs.getClob(columnName);
-                            String cValue = (clob != null && !clob.equals("null"))
-                                    ? getHash(clob.getSubString(1,(int)clob.length()).getBytes())
-                                    : "";
-                            value.append(PIPE_SEPARATOR);
-                            value.append(cValue);
+    /**
+     * Closes the opened chunk and records the time taken.
+     */
+    public void close() {
 
-                        } else {
+        if (permitHeld) {
 
-                            String oValue = rs.getString(columnName);
-                            String oVal = (oValue != null && !oValue.equals("null") && oValue.trim().length() > 0)
-                                    ? oValue
-                                    : "";
-                            value.append(PIPE_SEPARATOR);
-                            value.append(oVal);
-                        }
-                    }
+            getFetchPermits().release();
+            permitHeld = false;
+        }
 
-                    value.append(PIPE_SEPARATOR);
+        if (cursorStatement == null) {
+            return;
+        }
 
-                    String val = StringUtils.normalizeSpace(value.toString()).trim();
+        JdbcUtil jdbcUtil = new JdbcUtil();
 
-                    if (val != null && val.trim().length() > 0) {
+        jdbcUtil.closeResultSet(cursorResultSet);
+        jdbcUtil.closeStatement(cursorStatement);
 
-                        valSize = valSize + val.getBytes().length;
-                        keySize = keySize + key.getBytes().length;
-                    }
+        cursorResultSet = null;
+        cursorStatement = null;
 
-                    getHashMap().put(key.trim(), val);
+        long end = System.currentTimeMillis();
 
-                } catch (Exception e) {
+        long diffInSeconds = (end - cursorStart) / 1000;
 
-                    logger.error(getDbType(), e);
-                }
+        getTimeTaken().add(Long.valueOf(diffInSeconds));
+
+        String timeTaken = new DateUtil().timeDiffFormatted(diffInSeconds);
+
+        StringBuilder info = new StringBuilder();
+
+        info.append(getDbType());
+        info.append(" CHUNK: ");
+        //info.append(getSql());
+        //info.append(" ");
+        info.append(getChunk());
+        info.append("\n");
+        info.append("Time Taken to fetch this chunk = ");
+        info.append(timeTaken);
+
+        logger.info(info.toString());
+    }
+
+    /**
+     * @return true if the key of the opened chunk is a numeric column
+     * @throws SQLException
+     */
+    public boolean isNumericKey() throws SQLException {
+
+        switch (cursorResultSet.getMetaData().getColumnType(keyIndex)) {
+
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return key of the current row
+     */
+    public String getCurrentKey() {
+        return currentKey;
+    }
+
+    /**
+     * @return row text of the current row, or the row hash in the hash pushdown mode
+     */
+    public String getCurrentValue() {
+        return currentValue;
+    }
+
+    /**
+     * @return first 64 bits of the current row fingerprint
+     */
+    public long getCurrentHigh() {
+        return currentHigh;
+    }
+
+    /**
+     * @return second 64 bits of the current row fingerprint
+     */
+    public long getCurrentLow() {
+        return currentLow;
+    }
+
+    /**
+     * Fetches the chunk again and builds the full row text only for the given keys. In fingerprint mode this
+     * is used to report the complete data of the mismatched rows.
+     *
+     * @param keys
+     * @return
+     * @throws SQLException if the fetch was cancelled
+     */
+    public Map<String, String> fetchRows(Set<String> keys) throws SQLException {
+
+        Map<String, String> rows = new HashMap<String, String>();
+
+        Statement stmt = null;
+        ResultSet rs = null;
+
+        try {
+
+            stmt = (getQueries() != null) ? getQueries().createStatement(getConnection())
+                    : getConnection().createStatement();
+
+            rowsStatement = stmt;
+
+            stmt.setFetchSize(getFetchSize());
+
+            if (getQueryTimeout() > 0) {
+                stmt.setQueryTimeout(getQueryTimeout());
             }
 
-            logger.debug(getDbType() + " Map Size in bytes " + (keySize + valSize) + " ,Value Size in Bytes "
-                    + valSize + " , Key Size in Bytes " + keySize);
-            new MemoryUtil().displayMemoryInfo();
+            // A cancel before the statement was known would not reach the database
+            checkCancelled();
 
-            long end = System.currentTimeMillis();
+            rs = stmt.executeQuery(getSql() + " " + getChunk());
 
-            long diffInSeconds = (end - start) / 1000;
+            ColumnExtractor[] columnPlan = compileColumnPlan(rs);
+            int keyIndex = rs.findColumn("key1");
+            StringBuilder value = new StringBuilder();
 
-            getTimeTaken().add(Long.valueOf(diffInSeconds));
+            while (rs.next() && rows.size() < keys.size()) {
 
-            String timeTaken = new DateUtil().timeDiffFormatted(diffInSeconds);
+                try {
 
-            info = new StringBuilder();
+                    String key = rs.getString(keyIndex).trim();
 
-            info.append(getDbType());
-            info.append(" CHUNK: ");
-            //info.append(getSql());
-            //info.append(" ");
-            info.append(getChunk());
-            info.append("\n");
-            info.append("Time Taken to fetch this chunk = ");
-            info.append(timeTaken);
+                    if (keys.contains(key)) {
 
-            logger.info(info.toString());
+                        rows.put(key, buildRowValue(columnPlan, rs, value));
+                    }
+
+                } catch (Exception e) {
+
+                    logger.error(getDbType(), e);
+                }
+            }
 
         } catch (SQLException ex) {
 
-            ex.printStackTrace();
+            if (cancelled) {
+                throw ex;
+            }
+
             logger.error(getDbType(), ex);
 
         } finally {
 
+            rowsStatement = null;
+
             JdbcUtil jdbcUtil = new JdbcUtil();
 
             jdbcUtil.closeResultSet(rs);
             jdbcUtil.closeStatement(stmt);
         }
+
+        return rows;
+    }
+
+    /**
+     * Builds the pipe separated, space normalized text of the current row.
+     *
+     * @param columnPlan
+     * @param rs
+     * @param value
+     * @return
+     * @throws SQLException
+     */
+    private String buildRowValue(ColumnExtractor[] columnPlan, ResultSet rs, StringBuilder value) throws SQLException {
+
+        value.setLength(0);
+
+        for (ColumnExtractor extractor : columnPlan) {
+
+            extractor.append(rs, value);
+        }
+
+        value.append(PIPE_SEPARATOR);
+
+        return StringUtils.normalizeSpace(value.toString()).trim();
     }
+
     /**
-     * @return MD5 hash to compare the large objects
+     * Resolves the column extractors once per chunk. Columns are taken in source table order so that the
+     * source and target rows are built the same way.
+     *
+     * @param rs
+     * @return
+     * @throws SQLException
      */
-    public String getHash(byte[] data) {
-        String hashString = null;
-        byte[] md5Hex = DigestUtils.md5Digest(data);
-        if (md5Hex != null && md5Hex.length > 0)
-            hashString = new String(md5Hex);
-        return hashString;
+    private ColumnExtractor[] compileColumnPlan(ResultSet rs) throws SQLException {
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat(isCompareOnlyDate() ? "yyyy-MM-dd" : "yyyy-MM-dd HH:mm:ss");
+
+        List<String> colNames = new ArrayList<String>(
+                getSourceTableMetadataMap() != null && !getSourceTableMetadataMap().isEmpty()
+                        ? getSourceTableMetadataMap().keySet() : getTableMetadataMap().keySet());
+
+        ColumnExtractor[] columnPlan = new ColumnExtractor[colNames.size()];
+
+        for (int i = 0; i < colNames.size(); i++) {
+
+            String colName = "POSTGRESQL".equals(getDbType()) ? colNames.get(i).toLowerCase()
+                    : colNames.get(i).toUpperCase();
+
+            TableColumnMetadata metadata = getTableMetadataMap().get(colName);
+
+            if (metadata == null) {
+
+                throw new SQLException(getDbType() + " column " + colName + " not found in table metadata.");
+            }
+
+            TableColumnMetadata sourceMetadata = null;
+
+            if ("POSTGRESQL".equals(getDbType())) {
+
+                sourceMetadata = getSourceTableMetadataMap().get(metadata.getColumnName().toUpperCase());
+            }
+
+            columnPlan[i] = ColumnExtractor.compile(getDbType(), rs, metadata, sourceMetadata, dateFormat,
+                    getLobHashAlgorithm());
+        }
+
+        return columnPlan;
     }
+
     /**
      * @return the chunk
      */
@@ -437,6 +693,34 @@ public class FetchData implements Runnable {
         return fetchSize;
     }
 
+    /**
+     * @return the queryTimeout
+     */
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * @param queryTimeout seconds a chunk query may run, 0 for no limit
+     */
+    public void setQueryTimeout(int queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * @return the queries the rows fetched again are registered with, or null
+     */
+    public RunningQueries getQueries() {
+        return queries;
+    }
+
+    /**
+     * @param queries queries of the table the rows fetched again are cancelled with, null for none
+     */
+    public void setQueries(RunningQueries queries) {
+        this.queries = queries;
+    }
+
     /**
      * @return
      */
@@ -458,6 +742,41 @@ public class FetchData implements Runnable {
         return compareOnlyDate;
     }
 
+    /**
+     * @return the rowFingerprint
+     */
+    public boolean isRowFingerprint() {
+        return rowFingerprint;
+    }
+
+    /**
+     * @return the row hash query of the hash pushdown mode, null when the rows are fetched
+     */
+    public String getHashSql() {
+        return hashSql;
+    }
+
+    /**
+     * @param hashSql the hashSql to set
+     */
+    public void setHashSql(String hashSql) {
+        this.hashSql = hashSql;
+    }
+
+    /**
+     * @return the lobHashAlgorithm
+     */
+    public String getLobHashAlgorithm() {
+        return lobHashAlgorithm;
+    }
+
+    /**
+     * @return the fingerprints, only filled when rowFingerprint is set
+     */
+    public RowFingerprints getFingerprints() {
+        return fingerprints;
+    }
+
     /**
      * @return
      */
@@ -542,6 +861,27 @@ public class FetchData implements Runnable {
         this.compareOnlyDate = compareOnlyDate;
     }
 
+    /**
+     * @param rowFingerprint the rowFingerprint to set
+     */
+    public void setRowFingerprint(boolean rowFingerprint) {
+        this.rowFingerprint = rowFingerprint;
+    }
+
+    /**
+     * @param lobHashAlgorithm the lobHashAlgorithm to set
+     */
+    public void setLobHashAlgorithm(String lobHashAlgorithm) {
+        this.lobHashAlgorithm = lobHashAlgorithm;
+    }
+
+    /**
+     * @param fingerprints the fingerprints to set
+     */
+    public void setFingerprints(RowFingerprints fingerprints) {
+        this.fingerprints = fingerprints;
+    }
+
     /**
      * @param sortKey
      */
@@ -570,6 +910,48 @@ public class FetchData implements Runnable {
         this.sourceTableMetadataMap = sourceTableMetadataMap;
     }
 
+    /**
+     * @return the fetchPermits
+     */
+    public Semaphore getFetchPermits() {
+        return fetchPermits;
+    }
+
+    /**
+     * @param fetchPermits permits shared by the fetches of one database, null for no limit
+     */
+    public void setFetchPermits(Semaphore fetchPermits) {
+        this.fetchPermits = fetchPermits;
+    }
+
+    /**
+     * @return the exception that stopped {@link #run()}, or null if all rows were fetched
+     */
+    public SQLException getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return the loadGovernor
+     */
+    public LoadGovernor getLoadGovernor() {
+        return loadGovernor;
+    }
+
+    /**
+     * @param loadGovernor governor shared by the fetches of one database, null for no cap
+     */
+    public void setLoadGovernor(LoadGovernor loadGovernor) {
+        this.loadGovernor = loadGovernor;
+    }
+
+    /**
+     * @return key and value characters of the rows fetched by {@link #run()}
+     */
+    public long getRowChars() {
+        return rowChars;
+    }
+
     /**
      * @return the timeTaken
      */
@@ -16,9 +16,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.apache.commons.lang3.EnumUtils;
@@ -27,7 +29,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datacompare.model.AppProperties;
+import com.datacompare.model.ChunkRange;
 import com.datacompare.model.DatabaseInfo;
+import com.datacompare.model.KeyRange;
 import com.datacompare.model.TableColumnMetadata;
 import com.datacompare.util.JdbcUtil;
 
@@ -38,6 +42,10 @@ public class FetchMetadata {
 
 	private List<String> chunks = new ArrayList<String>();
 
+	private List<ChunkRange> chunkRanges = new ArrayList<ChunkRange>();
+
+	private List<KeyRange> keyRanges = new ArrayList<KeyRange>();
+
 	public List<String> sortColumns = new ArrayList<String>();
 
 	public List<String> columns = new ArrayList<String>();
@@ -59,6 +67,31 @@ public class FetchMetadata {
 	private String primaryKey;
 
 	private String sql = null;
+	
+	private String hashSql = null;
+	
+	private boolean hashPushdown;
+	
+	private boolean chunkChecksum;
+	
+	private boolean compareOnlyDate;
+	
+	private String chunkPlanner;
+	
+	private boolean physicalChunks;
+	
+	private boolean bucketChunks;
+	
+	private boolean textToUtf8 = true;
+	
+	private Set<String> binaryColumns = new HashSet<String>();
+	
+	private boolean utf8Database;
+	
+	private RunningQueries queries;
+	
+	/** Column of the row hash in the hash pushdown query */
+	public static final String ROW_HASH_COLUMN = "row_hash";
 
 	private Map<String, TableColumnMetadata> tableMetadataMap = new LinkedHashMap<String, TableColumnMetadata>();
 
@@ -83,6 +116,35 @@ public class FetchMetadata {
 			Map<String, TableColumnMetadata> sourceTableMetadataMap, List<String> columnList,
 			AppProperties appProperties) throws Exception {
 		
+		this(dbType, sourceDBType, connection, schemaName, tableName, rowCount, sourceSortKey, sourcePrimaryKey,
+				sourceHasNoUniqueKey, sourceTableMetadataMap, columnList, appProperties, null);
+	}
+	
+	/**
+	 * Function reading the table meta data checking the each columns value, the queries that plan the chunks
+	 * are created with the given queries, so cancelling the run cancels them.
+	 * 
+	 * @param dbType
+	 * @param sourceDBType
+	 * @param connection
+	 * @param schemaName
+	 * @param tableName
+	 * @param rowCount
+	 * @param sourceSortKey
+	 * @param sourcePrimaryKey
+	 * @param sourceTableMetadataMap
+	 * @param columnList
+	 * @param appProperties
+	 * @param queries queries of the table, null for queries of their own with the query timeout
+	 * @throws Exception
+	 */
+	public FetchMetadata(String dbType, String sourceDBType, Connection connection, String schemaName, String tableName,
+			long rowCount, String sourceSortKey, String sourcePrimaryKey, boolean sourceHasNoUniqueKey,
+			Map<String, TableColumnMetadata> sourceTableMetadataMap, List<String> columnList,
+			AppProperties appProperties, RunningQueries queries) throws Exception {
+		
+		this.queries = (queries != null) ? queries : new RunningQueries(appProperties.getQueryTimeout());
+		
 		if (!EnumUtils.isValidEnum(DatabaseInfo.dbType.class, dbType)) throw new Exception(dbType + " not supported.");
 		
 		if("Detail".equals(appProperties.getReportType())) {
@@ -125,16 +187,81 @@ public class FetchMetadata {
 		setFetchSize(appProperties.getFetchSize());
 		setMaxDecimals(appProperties.getMaxDecimals());
 		setMaxTextSize(appProperties.getMaxTextSize()); 
+		setHashPushdown(appProperties.isHashPushdown());
+		setChunkChecksum(appProperties.isChunkChecksum());
+		setCompareOnlyDate(appProperties.isCompareOnlyDate());
+		setChunkPlanner(appProperties.getChunkPlanner());
+		
+		if (isHashPushdown() || isChunkChecksum() || "Bucket".equals(appProperties.getChunkStrategy())) {
+			
+			fetchTextEncoding(connection);
+		}
+		
+		// Rows of a keyless table are located by ROWID on Oracle and by ctid on PostgreSQL
+		setPhysicalChunks("Physical".equals(appProperties.getKeylessStrategy())
+				&& "ORACLE".equals((sourceDBType != null) ? sourceDBType : dbType));
 
 		Map<Integer, String> primaryKeyMap = new TreeMap<Integer, String>();
 
 		fetchTableColumns(sourceDBType, connection, schemaName, tableName, columnList, appProperties.isIgnoreColumns()); 
 		fetchPrimaryColumns(connection, schemaName, tableName, primaryKeyMap, sourceSortKey, sourcePrimaryKey,
 				sourceHasNoUniqueKey, sortKey, primaryKey, uniqueKeyCol);
+		
+		// Buckets hash the key, a keyless table keeps its ROWID or row number chunks
+		setBucketChunks("Bucket".equals(appProperties.getChunkStrategy()) && !isHasNoUniqueKey());
+		
+		if ("Bucket".equals(appProperties.getChunkStrategy()) && isHasNoUniqueKey()) {
+			
+			logger.info(schemaName + "." + tableName + " has no primary key, chunked by "
+					+ (isPhysicalChunks() ? "ROWID and ctid ranges" : "row numbers") + " instead of buckets");
+		}
 		prepareQuery(connection, schemaName, tableName, sortKey.toString(), primaryKey.toString(),
 				uniqueKeyCol.toString(), appProperties.getFilter(), appProperties.getFilterType(), rowCount, sourceTableMetadataMap);
 	}
 	
+	/**
+	 * Reads how the text of the row hash is turned into UTF-8. SQL Server converts text to UTF-8 from 2019
+	 * on, the text of an AL32UTF8 Oracle database is UTF-8 already.
+	 * 
+	 * @param connection
+	 */
+	private void fetchTextEncoding(Connection connection) {
+		
+		Statement stmt = null;
+		ResultSet rs = null;
+		
+		try {
+			
+			switch (getDbType()) {
+			
+			case "ORACLE":
+				
+				stmt = queries.createStatement(connection);
+				rs = stmt.executeQuery("SELECT value FROM nls_database_parameters WHERE parameter = 'NLS_CHARACTERSET'");
+				
+				setUtf8Database(rs.next() && "AL32UTF8".equals(rs.getString(1)));
+				break;
+				
+			case "SQLSERVER":
+				
+				// The UTF-8 collations came with SQL Server 2019
+				setTextToUtf8(connection.getMetaData().getDatabaseMajorVersion() >= 15);
+				break;
+			}
+			
+		} catch (SQLException e) {
+			
+			logger.error(getDbType(), e);
+			
+		} finally {
+			
+			JdbcUtil jdbcUtil = new JdbcUtil();
+			
+			jdbcUtil.closeResultSet(rs);
+			jdbcUtil.closeStatement(stmt);
+		}
+	}
+	
 	/**
 	 * 
 	 * @param connection
@@ -170,8 +297,10 @@ public class FetchMetadata {
 			Map<String, TableColumnMetadata> sourceTableMetadataMap) throws SQLException {
 		
 		String query = null;
+		String hashQuery = null;
 		String sortCols = null;
 		String cols = null;
+		String hashCols = null;
 		
 		switch (getDbType()) {
 
@@ -181,18 +310,19 @@ public class FetchMetadata {
 
 			cols = replaceColumnWithHash(getTargetColumns(sourceTableMetadataMap,false));
 			uniqueKeyCol=replaceColumnWithHash(uniqueKeyCol);
+			hashCols = (isHashPushdown() || isChunkChecksum()) ? getRowHashColumn(sourceTableMetadataMap, true) : null;
 			
-			query = "SELECT " + uniqueKeyCol + cols + " FROM " + schemaName + "." + tableName;
-
-
-			if(isHasNoUniqueKey()) {
-				
-				String subQuery = "SELECT " + uniqueKeyCol + cols + " FROM (" + "SELECT " + cols + " FROM " + schemaName + "." + tableName + " order by " + sortCols + ") t1";
+			generateChunksPostgresql(connection, schemaName, tableName, rowCount, filter, filterType);
+			
+			if (!isHasNoUniqueKey()) {
 				
-				query = "SELECT t2.* FROM (" + subQuery + ") t2";
+				setBinaryColumns(KeyRangePlanner.readBinaryColumns(connection, getDbType(), schemaName, tableName));
 			}
 			
-			generateChunksPostgresql(connection, schemaName, tableName, rowCount, filter);
+			if (isBucketChunks()) {
+				
+				generateBucketChunks(sortKey, filter, filterType, rowCount, sourceTableMetadataMap);
+			}
 
 			break;
 
@@ -200,14 +330,7 @@ public class FetchMetadata {
 
 			sortCols = getSourceColumns(true);
 			cols=getSourceColumns(false);
-			query = "SELECT " + uniqueKeyCol + cols + " FROM " + schemaName + "." + tableName;
-			
-			if(isHasNoUniqueKey()) {
-				
-				String subQuery = "SELECT " + uniqueKeyCol + cols + " FROM (" + "SELECT " + cols + " FROM " + schemaName + "." + tableName  + " order by " + sortCols + ")";
-				
-				query = "SELECT * FROM (" + subQuery +  ")";
-			}
+			hashCols = (isHashPushdown() || isChunkChecksum()) ? getRowHashColumn(getTableMetadataMap(), false) : null;
 			
 			generateSourceChunks(connection, schemaName, tableName, sortKey, primaryKey, filter, filterType, sortCols);
 
@@ -217,108 +340,458 @@ public class FetchMetadata {
 
 			cols = getSourceColumns(false);
 			sortCols=getSourceColumns(true);
-			query = "SELECT " + uniqueKeyCol + cols + " FROM " + schemaName + "." + tableName;
-			//TODO
-			if(isHasNoUniqueKey()) {
-				String subQuery = "SELECT " + uniqueKeyCol + cols + " FROM (" + "SELECT " +  cols + " FROM " + schemaName + "." + tableName + ") t1";
-				query = "SELECT t2.* FROM (" + subQuery + " order by " + sortCols + ") t2";
-			}
+			hashCols = (isHashPushdown() || isChunkChecksum()) ? getRowHashColumn(getTableMetadataMap(), false) : null;
+			
 			generateSourceChunks(connection, schemaName, tableName, sortKey, primaryKey, filter, filterType, sortCols);
 			break;
 		}
 		
+		query = selectQuery(schemaName, tableName, uniqueKeyCol, cols, cols, sortCols);
+		
+		if (hashCols != null) {
+			
+			hashQuery = selectQuery(schemaName, tableName, uniqueKeyCol, hashCols, cols, sortCols);
+			
+			logger.info("\n" + getDbType() + ": Row hash SQL Query without chunk: " + hashQuery);
+		}
+		
+		setHashSql(hashQuery);
 		setSql(query); 
 		
 		logger.info("\n" + getDbType() + ": SQL Query without chunk: " + getSql());
 	}
 
-	private String replaceColumnWithHash(String targetColumns) {
+	/**
+	 * 
+	 * @param schemaName
+	 * @param tableName
+	 * @param uniqueKeyCol
+	 * @param selectCols columns or row hash of the result
+	 * @param cols
+	 * @param sortCols
+	 * @return
+	 */
+	private String selectQuery(String schemaName, String tableName, String uniqueKeyCol, String selectCols,
+			String cols, String sortCols) {
+		
+		String query = "SELECT " + uniqueKeyCol + selectCols + " FROM " + schemaName + "." + tableName;
+		
+		if(isHasNoUniqueKey() && !isPhysicalChunks()) {
+			
+			switch (getDbType()) {
 
-		if(targetColumns!=null && !targetColumns.isEmpty()) {
-			String cols[] = targetColumns.split(",");
-			if (cols != null && cols.length > 0) {
-				for (int i = 0; i < cols.length; i++) {
-					if (cols[i].contains("#")) {
-						String replaceString = "\"" + cols[i] + "\"";
-						targetColumns=	targetColumns.replace(cols[i], replaceString);
-					}
-				}
+			case "POSTGRESQL":
+				
+				String subQuery = "SELECT " + uniqueKeyCol + selectCols + " FROM (" + "SELECT " + cols + " FROM " + schemaName + "." + tableName + " order by " + sortCols + ") t1";
+				
+				query = "SELECT t2.* FROM (" + subQuery + ") t2";
+				break;
+				
+			case "ORACLE":
+				
+				subQuery = "SELECT " + uniqueKeyCol + selectCols + " FROM (" + "SELECT " + cols + " FROM " + schemaName + "." + tableName  + " order by " + sortCols + ")";
+				
+				query = "SELECT * FROM (" + subQuery +  ")";
+				break;
+				
+			case "SQLSERVER":
+				
+				//TODO
+				subQuery = "SELECT " + uniqueKeyCol + selectCols + " FROM (" + "SELECT " +  cols + " FROM " + schemaName + "." + tableName + ") t1";
+				query = "SELECT t2.* FROM (" + subQuery + " order by " + sortCols + ") t2";
+				break;
 			}
 		}
-		return targetColumns;
+		
+		return query;
 	}
 
 	/**
+	 * Builds the expression for the hash pushdown mode that computes the MD5 hex of a canonical row text
+	 * inside the database. Every column is rendered the same way on Oracle, SQL Server and PostgreSQL:
+	 * numbers rounded to the compared decimals, dates as YYYY-MM-DD HH24:MI:SS, text trimmed and NULL as an
+	 * empty value, each followed by a '|'. Large varchar columns are hashed on their own first to keep the
+	 * row text short. The text is hashed as UTF-8 on every database.
 	 * 
-	 * @return
+	 * @param sourceTableMetadataMap
+	 * @param isTarget
+	 * @return the expression, or null if the table has LOB columns, text columns on SQL Server before 2019, or
+	 *         an Oracle row text that may not fit a VARCHAR2, and has to be compared on the client
 	 */
-	private String getSourceColumns(boolean isSortColumn) {
+	String getRowHashColumn(Map<String, TableColumnMetadata> sourceTableMetadataMap, boolean isTarget) {
 		
-		return getColumns(getTableMetadataMap(), getTableMetadataMap(), false, isSortColumn);
+		List<String> values = new ArrayList<String>();
+		long rowBytes = 0;
+		
+		for (String colName : sourceTableMetadataMap.keySet()) {
+			
+			TableColumnMetadata sourceMetadata = sourceTableMetadataMap.get(colName);
+			
+			colName = isTarget ? colName.toLowerCase() : colName.toUpperCase();
+			
+			TableColumnMetadata metadata = getTableMetadataMap().get(colName);
+			
+			if (metadata == null) {
+				
+				logger.info(getDbType() + ": " + colName + " has no metadata, row hash pushdown not used");
+				
+				return null;
+			}
+			
+			String columnType = metadata.getColumnType();
+			
+			if (binaryColumnType(columnType)) {
+				
+				logger.info(getDbType() + ": " + colName + " is a LOB column, row hash pushdown not used");
+				
+				return null;
+			}
+			
+			if (!isTextToUtf8() && isText(metadata)) {
+				
+				logger.info(getDbType() + ": " + colName + " is text, hashed as UTF-8 from SQL Server 2019 on, row hash pushdown not used");
+				
+				return null;
+			}
+			
+			String column = isTarget ? replaceColumnWithHash(colName) : colName;
+			
+			String value = canonicalValue(column, metadata, isTarget ? sourceMetadata : null);
+			
+			if (varcharLargeSize(columnType, metadata.getColSize())) {
+				
+				// Oracle has no empty strings, hash them as NULL everywhere
+				value = md5Hex("ORACLE".equals(getDbType()) ? value : "NULLIF(" + value + ", '')");
+			}
+			
+			values.add("ORACLE".equals(getDbType()) ? value : "COALESCE(" + value + ", '')");
+			
+			rowBytes += (varcharLargeSize(columnType, metadata.getColSize()) ? 32 : renderedBytes(metadata)) + 1;
+		}
+		
+		if (values.isEmpty()) {
+			
+			return null;
+		}
+		
+		// Oracle concatenates into a VARCHAR2, and UTL_I18N converts into a RAW
+		int maxRowBytes = isUtf8Database() ? 4000 : 2000;
+		
+		if ("ORACLE".equals(getDbType()) && rowBytes > maxRowBytes) {
+			
+			logger.info(getDbType() + ": row text may take " + rowBytes + " bytes, more than " + maxRowBytes
+					+ ", row hash pushdown not used");
+			
+			return null;
+		}
+		
+		StringBuilder row = new StringBuilder();
+		
+		for (String value : values) {
+			
+			if ("SQLSERVER".equals(getDbType())) {
+				
+				row.append((row.length() == 0) ? "CONCAT(" : ", ").append(value).append(", '|'");
+				
+			} else {
+				
+				row.append((row.length() == 0) ? "" : " || ").append(value).append(" || '|'");
+			}
+		}
+		
+		if ("SQLSERVER".equals(getDbType())) {
+			
+			row.append(")");
+		}
+		
+		return md5Hex(row.toString()) + " AS " + ROW_HASH_COLUMN;
 	}
 	
 	/**
 	 * 
-	 * @param sourceTableMetadataMap
-	 * @return
+	 * @param column
+	 * @param metadata
+	 * @param sourceMetadata
+	 * @return canonical text of the column, NULL for NULL values
 	 */
-	private String getTargetColumns(Map<String, TableColumnMetadata> sourceTableMetadataMap, boolean isSortColumn) {
+	private String canonicalValue(String column, TableColumnMetadata metadata, TableColumnMetadata sourceMetadata) {
 		
-		return getColumns(sourceTableMetadataMap, getTableMetadataMap(), true,isSortColumn);
+		String value = null;
+		
+		switch (ColumnExtractor.resolveKind(metadata.getColumnType())) {
+		
+		case INTEGER:
+			
+			value = "SQLSERVER".equals(getDbType()) ? "CAST(" + column + " AS VARCHAR(40))"
+					: "ORACLE".equals(getDbType()) ? "TO_CHAR(" + column + ")" : column + "::text";
+			break;
+			
+		case BOOLEAN:
+			
+			value = "CASE WHEN " + column + " THEN '1' WHEN NOT " + column + " THEN '0' END";
+			break;
+			
+		case NUMBER:
+		case FLOAT:
+			
+			int decimals = getDecimals(metadata);
+			int sourceDecimals = (sourceMetadata != null) ? getDecimals(sourceMetadata) : 0;
+			
+			value = canonicalNumber(column, (sourceDecimals > 0) ? sourceDecimals : decimals);
+			break;
+			
+		case DATETIME:
+			
+			if ("SQLSERVER".equals(getDbType())) {
+				
+				value = "CONVERT(VARCHAR(" + (isCompareOnlyDate() ? 10 : 19) + "), " + column + ", 120)";
+				
+			} else {
+				
+				value = "TO_CHAR(" + column + ", '" + (isCompareOnlyDate() ? "YYYY-MM-DD" : "YYYY-MM-DD HH24:MI:SS") + "')";
+			}
+			break;
+			
+		default:
+			
+			value = "SQLSERVER".equals(getDbType()) ? "LTRIM(RTRIM(" + column + "))" : "TRIM(" + column + ")";
+			break;
+		}
+		
+		return value;
 	}
-
+	
 	/**
+	 * Number rounded half away from zero to the decimals and always printed with them, without grouping.
+	 * Columns without decimals are truncated like the client side comparison reads them.
 	 * 
-	 * @param sourceTableMetadataMap
-	 * @param targetTableMetadataMap
-	 * @param isTarget
+	 * @param column
+	 * @param decimals
 	 * @return
 	 */
-	private String getColumns(Map<String, TableColumnMetadata> sourceTableMetadataMap,
-			Map<String, TableColumnMetadata> targetTableMetadataMap, boolean isTarget, boolean isSortColumn) {
+	private String canonicalNumber(String column, int decimals) {
 		
-		StringBuilder cols = new StringBuilder();
-		List<String> colNames = new ArrayList<String>(sourceTableMetadataMap.keySet());
+		if ("SQLSERVER".equals(getDbType())) {
+			
+			return "CONVERT(VARCHAR(60), CAST(ROUND(" + column + ", " + decimals + (decimals == 0 ? ", 1" : "")
+					+ ") AS DECIMAL(38, " + decimals + ")))";
+		}
 		
-		for (String colName : colNames) {
+		StringBuilder format = new StringBuilder("FM");
 		
-			colName = isTarget ? colName.toLowerCase() : colName.toUpperCase();
+		for (int i = 0; i < 37 - decimals; i++) {
 			
-			String colAs = targetTableMetadataMap.get(colName) !=null ? targetTableMetadataMap.get(colName).getColumnAs():"";
-			String columnType = targetTableMetadataMap.get(colName)!=null ?targetTableMetadataMap.get(colName).getColumnType():"";
-			int colSize = targetTableMetadataMap.get(colName)!=null ? targetTableMetadataMap.get(colName).getColSize():0;
-             /** seperating the sorting columns from select column to avoid sql issues for CLOB/BLOB
-             * 1. Created two set of columns
-			  * 2. Excluing from the columns for sorting
-             * */
-			if(isSortColumn && (binaryColumnType(columnType) || varcharLargeSize(columnType, colSize))) {
-				columns.add(colName);
-			}else {
-				sortColumns.add(colName);
-				columns.add(colName);
-				cols.append(colAs + ",");
-			}
+			format.append("9");
 		}
-		if (!cols.toString().isEmpty()) {
-
-			cols.deleteCharAt(cols.length() - 1);
+		
+		format.append("0");
+		
+		if (decimals > 0) {
+			
+			format.append(".");
+			
+			for (int i = 0; i < decimals; i++) {
+				
+				format.append("0");
+			}
 		}
 		
-		return cols.toString();
+		String number = "POSTGRESQL".equals(getDbType()) ? column + "::numeric" : column;
+		String rounded = (decimals > 0) ? "ROUND(" + number + ", " + decimals + ")" : "TRUNC(" + number + ")";
+		
+		return "TO_CHAR(" + rounded + ", '" + format + "')";
 	}
 	
 	/**
 	 * 
-	 * @param connection
-	 * @param schemaName
-	 * @param tableName
-	 * @param primaryKeyMap
-	 * @param sourceSortKey
-	 * @param sourcePrimaryKey
-	 * @param sourceHasNoUniqueKey
-	 * @param sortKey
-	 * @param primaryKey
-	 * @param uniqueKeyCol
+	 * @param metadata
+	 * @return decimals of the decimal format used to compare the column
+	 */
+	private int getDecimals(TableColumnMetadata metadata) {
+		
+		String decimalFormat = metadata.getDecimalFormat();
+		int index = (decimalFormat != null) ? decimalFormat.indexOf('.') : -1;
+		
+		return (index < 0) ? 0 : decimalFormat.length() - index - 1;
+	}
+	
+	/**
+	 * 
+	 * @param metadata
+	 * @return worst case bytes of the canonical value of the column, text counted as 4 bytes per character
+	 */
+	private long renderedBytes(TableColumnMetadata metadata) {
+		
+		switch (ColumnExtractor.resolveKind(metadata.getColumnType())) {
+		
+		case INTEGER:
+			
+			return 40;
+			
+		case BOOLEAN:
+			
+			return 1;
+			
+		case NUMBER:
+		case FLOAT:
+			
+			return 40 + getDecimals(metadata);
+			
+		case DATETIME:
+			
+			return 19;
+			
+		default:
+			
+			return 4L * Math.max(metadata.getColSize(), 0);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param metadata
+	 * @return true if the canonical value of the column is text that may not be ASCII
+	 */
+	private boolean isText(TableColumnMetadata metadata) {
+		
+		switch (ColumnExtractor.resolveKind(metadata.getColumnType())) {
+		
+		case INTEGER:
+		case BOOLEAN:
+		case NUMBER:
+		case FLOAT:
+		case DATETIME:
+			
+			return false;
+			
+		default:
+			
+			return true;
+		}
+	}
+	
+	/**
+	 * The databases hash the bytes of the value itself, NVARCHAR text as UTF-16 and VARCHAR text in the
+	 * character set of the database. The text is converted to UTF-8 first, so every database hashes the same
+	 * bytes. SQL Server before 2019 cannot convert, its row text has to be ASCII.
+	 * 
+	 * @param value
+	 * @return lower case MD5 hex of the UTF-8 text in the dialect of the database
+	 */
+	private String md5Hex(String value) {
+		
+		switch (getDbType()) {
+		
+		case "ORACLE":
+			
+			// TO_CHAR turns NVARCHAR2 text into the character set of the database
+			String bytes = isUtf8Database() ? "TO_CHAR(" + value + ")"
+					: "UTL_I18N.STRING_TO_RAW(" + value + ", 'AL32UTF8')";
+			
+			return "LOWER(RAWTOHEX(STANDARD_HASH(" + bytes + ", 'MD5')))";
+			
+		case "SQLSERVER":
+			
+			// NVARCHAR converted to VARCHAR takes the code page of its collation
+			String text = isTextToUtf8()
+					? "CAST(CAST(" + value + " AS NVARCHAR(MAX)) COLLATE Latin1_General_100_BIN2_UTF8 AS VARCHAR(MAX))"
+					: value;
+			
+			return "LOWER(CONVERT(VARCHAR(32), HASHBYTES('MD5', " + text + "), 2))";
+			
+		default:
+			
+			return "md5(convert_to(" + value + ", 'UTF8'))";
+		}
+	}
+
+	private String replaceColumnWithHash(String targetColumns) {
+
+		if(targetColumns!=null && !targetColumns.isEmpty()) {
+			String cols[] = targetColumns.split(",");
+			if (cols != null && cols.length > 0) {
+				for (int i = 0; i < cols.length; i++) {
+					if (cols[i].contains("#")) {
+						String replaceString = "\"" + cols[i] + "\"";
+						targetColumns=	targetColumns.replace(cols[i], replaceString);
+					}
+				}
+			}
+		}
+		return targetColumns;
+	}
+
+	/**
+	 * 
+	 * @return
+	 */
+	private String getSourceColumns(boolean isSortColumn) {
+		
+		return getColumns(getTableMetadataMap(), getTableMetadataMap(), false, isSortColumn);
+	}
+	
+	/**
+	 * 
+	 * @param sourceTableMetadataMap
+	 * @return
+	 */
+	private String getTargetColumns(Map<String, TableColumnMetadata> sourceTableMetadataMap, boolean isSortColumn) {
+		
+		return getColumns(sourceTableMetadataMap, getTableMetadataMap(), true,isSortColumn);
+	}
+
+	/**
+	 * 
+	 * @param sourceTableMetadataMap
+	 * @param targetTableMetadataMap
+	 * @param isTarget
+	 * @return
+	 */
+	private String getColumns(Map<String, TableColumnMetadata> sourceTableMetadataMap,
+			Map<String, TableColumnMetadata> targetTableMetadataMap, boolean isTarget, boolean isSortColumn) {
+		
+		StringBuilder cols = new StringBuilder();
+		List<String> colNames = new ArrayList<String>(sourceTableMetadataMap.keySet());
+		
+		for (String colName : colNames) {
+		
+			colName = isTarget ? colName.toLowerCase() : colName.toUpperCase();
+			
+			String colAs = targetTableMetadataMap.get(colName) !=null ? targetTableMetadataMap.get(colName).getColumnAs():"";
+			String columnType = targetTableMetadataMap.get(colName)!=null ?targetTableMetadataMap.get(colName).getColumnType():"";
+			int colSize = targetTableMetadataMap.get(colName)!=null ? targetTableMetadataMap.get(colName).getColSize():0;
+             /** seperating the sorting columns from select column to avoid sql issues for CLOB/BLOB
+             * 1. Created two set of columns
+			  * 2. Excluing from the columns for sorting
+             * */
+			if(isSortColumn && (binaryColumnType(columnType) || varcharLargeSize(columnType, colSize))) {
+				columns.add(colName);
+			}else {
+				sortColumns.add(colName);
+				columns.add(colName);
+				cols.append(colAs + ",");
+			}
+		}
+		if (!cols.toString().isEmpty()) {
+
+			cols.deleteCharAt(cols.length() - 1);
+		}
+		
+		return cols.toString();
+	}
+	
+	/**
+	 * 
+	 * @param connection
+	 * @param schemaName
+	 * @param tableName
+	 * @param primaryKeyMap
+	 * @param sourceSortKey
+	 * @param sourcePrimaryKey
+	 * @param sourceHasNoUniqueKey
+	 * @param sortKey
+	 * @param primaryKey
+	 * @param uniqueKeyCol
 	 * @throws Exception
 	 */
 	private void fetchPrimaryColumns(Connection connection, String schemaName, String tableName,
@@ -387,6 +860,10 @@ public class FetchMetadata {
 
 			uniqueKeyCol.append(primaryKey + " AS key1 ,");
 			
+		} else if(isPhysicalChunks()) {
+			
+			uniqueKeyCol.append("ORACLE".equals(getDbType()) ? "ROWIDTOCHAR(ROWID) AS key1," : "ctid::text AS key1,");
+			
 		} else if(isHasNoUniqueKey()) {
 			
 			if("ORACLE".equals(getDbType())) {
@@ -547,157 +1024,627 @@ public class FetchMetadata {
 
 				throw new Exception(getDbType() + " Database Table " + schemaName + "." + tableName + " has no columns.");
 			}
-
-		} catch (Exception e) {
-
-			logger.error(getDbType(), e);
-
-		} finally {
-
-			new JdbcUtil().closeResultSet(rs);
+
+		} catch (Exception e) {
+
+			logger.error(getDbType(), e);
+
+		} finally {
+
+			new JdbcUtil().closeResultSet(rs);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param connection
+	 * @param schemaName
+	 * @param tableName
+	 * @param sortKey
+	 * @param primaryKey
+	 * @param filter
+	 * @param filterType
+	 * @param cols
+	 * @throws SQLException
+	 */
+	private void generateSourceChunks(Connection connection, String schemaName, String tableName, String sortKey,
+			String primaryKey, String filter, String filterType, String cols) throws SQLException {
+
+		logger.info("Started preparing chunks");
+
+		chunks.clear();
+		chunkRanges.clear();
+		keyRanges.clear();
+		
+		if (isPhysicalChunks()) {
+			
+			generateRowidChunks(connection, schemaName, tableName, filter, filterType);
+			
+			logger.info("Completed preparing chunks");
+			return;
+		}
+		
+		if (isBucketChunks() && !isTextToUtf8() && hasTextKey(sortKey)) {
+			
+			logger.info(schemaName + "." + tableName + " has a text key, hashed as UTF-8 from SQL Server 2019 on, "
+					+ "chunked by key ranges instead of buckets");
+			
+			setBucketChunks(false);
+		}
+		
+		if (isBucketChunks()) {
+			
+			setRowCount(getTotalRecords(connection, schemaName, tableName, filter));
+			
+			generateBucketChunks(sortKey, filter, filterType, getRowCount(), getTableMetadataMap());
+			
+			logger.info("Completed preparing chunks");
+			return;
+		}
+		
+		if (!isHasNoUniqueKey()
+				&& generateKeyRangeChunks(connection, schemaName, tableName, sortKey, filter, filterType)) {
+			
+			logger.info("Completed preparing chunks");
+			return;
+		}
+		
+		if ("Sample".equals(getChunkPlanner()) && !isHasNoUniqueKey()
+				&& generateSampledChunks(connection, schemaName, tableName, sortKey, primaryKey, filter, filterType)) {
+			
+			logger.info("Completed preparing chunks");
+			return;
+		}
+		
+		Long totalRecords = getTotalRecords(connection, schemaName, tableName, filter); 
+
+		setRowCount(totalRecords);
+
+		long ntileSize = (long)Math.ceil(totalRecords / getFetchSize());
+		
+		ntileSize = (ntileSize <= 0) ? 1 : ntileSize;
+		
+		String chunkFilter = chunkFilter(filter, filterType);
+		
+		StringBuilder sql = new StringBuilder();
+		
+		if(isHasNoUniqueKey()) {
+			
+			sql.append("SELECT min(ROWNUM) AS startRange, max(ROWNUM) AS endRange,count(*) AS chunkSize, nt FROM (SELECT ROWNUM")
+			.append(" ,ntile(").append(ntileSize).append(") OVER (ORDER BY ").append(cols).append(" ) nt FROM ").append(schemaName)
+			.append(".").append(tableName);
+			
+		} else {
+
+			sql.append("SELECT min(").append(primaryKey).append(") AS startRange, max(").append(primaryKey)
+					.append(") AS endRange,count(*) AS chunkSize, nt FROM (SELECT ").append(primaryKey).append(" ,ntile(")
+					.append(ntileSize).append(") OVER (ORDER BY ").append(primaryKey).append(" ) nt FROM ").append(schemaName)
+					.append(".").append(tableName);
+		}
+		
+		// Key ranges are planned over the filtered rows only, keyless rows are numbered over the whole table
+		if (!isHasNoUniqueKey() && chunkFilter != null) {
+			
+			sql.append(" WHERE ").append(chunkFilter);
+		}
+
+		
+		if("ORACLE".equals(getDbType())) {
+			
+			sql.append(") GROUP BY nt ORDER BY nt");
+			
+		} else {
+			
+			sql.append(") as a GROUP BY nt ORDER BY nt");
+		}
+		
+		logger.info("Fetch Chunks SQL Query: " + sql.toString()); 
+
+		Statement stmt = queries.createStatement(connection);
+
+		ResultSet rs = stmt.executeQuery(sql.toString());
+        int count=0;
+		while (rs.next()) {
+
+			int columnType= rs.getMetaData().getColumnType(1);
+
+			long startRange=0;
+			long endRange=0;
+			if(!isNoNumericColumnType(columnType)){
+				 startRange = rs.getLong("startRange");
+				 endRange = rs.getLong("endRange");
+			}
+			long chunkSize = rs.getLong("chunkSize");
+
+			StringBuilder condition = new StringBuilder();
+            boolean whereapplied=false;
+			boolean filterapplied=false;
+
+			if(!isNoNumericColumnType(columnType)) {
+				condition.append("where ");
+				whereapplied=true;
+			}
+
+			if (chunkFilter != null) {
+			 if(!whereapplied) {
+				 condition.append("where ");
+				 whereapplied=true;
+			 }
+				condition.append(chunkFilter);
+				filterapplied=true;
+			}
+			if(isHasNoUniqueKey()) {
+
+				if (isNoNumericColumnType(columnType) ){
+					condition.append(" order by 1");
+				} else {
+
+					if(filterapplied)
+					condition.append(" and ");
+                    if(count==0) {
+						condition.append("key1").append(" >= ").append(startRange).append(" and ").append("key1")
+								.append(" <= ").append(endRange).append(" order by 1");
+					}
+					else{
+						condition.append("key1").append(" > ").append(startRange).append(" and ").append("key1")
+								.append(" <= ").append(endRange).append(" order by 1");
+
+					}
+				}
+			} else {
+
+				if (isNoNumericColumnType(columnType) ){
+					condition.append(" order by ").append(sortKey);
+				} else {
+
+					if(filterapplied)
+						condition.append(" and ");
+					if(count==0) {
+						condition.append(primaryKey).append(" >=").append(startRange).append(" and ").append(primaryKey)
+								.append(" <= ").append(endRange).append(" order by ").append(sortKey);
+					}else{
+						condition.append(primaryKey).append(" > ").append(startRange).append(" and ").append(primaryKey)
+								.append(" <= ").append(endRange).append(" order by ").append(sortKey);
+					}
+				}
+			}
+
+			logger.debug("Chunk Range, Min: " + startRange + ", Max: " + endRange + ", Size: " + chunkSize); 
+			
+			chunks.add(condition.toString());
+			
+			// Numeric key ranges can be checked by checksum and split
+			if (!isHasNoUniqueKey() && !isNoNumericColumnType(columnType)) {
+				
+				chunkRanges.add(new ChunkRange(chunkFilter, primaryKey, sortKey, startRange, endRange, count == 0));
+			} else {
+				
+				chunkRanges.add(null);
+			}
+			
+			count++;
+		}
+		
+		JdbcUtil jdbcUtil = new JdbcUtil();
+		
+		jdbcUtil.closeResultSet(rs);
+		jdbcUtil.closeStatement(stmt); 
+
+		logger.info("Completed preparing chunks");
+	}
+	
+	/**
+	 * 
+	 * @param filter
+	 * @param filterType
+	 * @return the Sql filter in parentheses, so an OR in it cannot widen the chunk range, null if the chunks
+	 *         are not filtered
+	 */
+	private String chunkFilter(String filter, String filterType) {
+		
+		return (filter != null && !filter.trim().isEmpty() && !"Sample".equals(filterType))
+				? "(" + filter.trim() + ")" : null;
+	}
+	
+	/**
+	 * Splits a keyless table into ROWID ranges, read without sorting the rows. The ranges are planned by
+	 * numbering the row ids once.
+	 * 
+	 * @param connection
+	 * @param schemaName
+	 * @param tableName
+	 * @param filter
+	 * @param filterType
+	 * @throws SQLException
+	 */
+	private void generateRowidChunks(Connection connection, String schemaName, String tableName, String filter,
+			String filterType) throws SQLException {
+		
+		long totalRecords = getTotalRecords(connection, schemaName, tableName, filter);
+		
+		setRowCount(totalRecords);
+		
+		long chunkCount = chunkCount(totalRecords);
+		
+		String chunkFilter = chunkFilter(filter, filterType);
+		
+		StringBuilder sql = new StringBuilder();
+		
+		sql.append("SELECT ROWIDTOCHAR(max(rid)) AS endRowid FROM (SELECT ROWID AS rid, ntile(").append(chunkCount)
+				.append(") OVER (ORDER BY ROWID) nt FROM ").append(schemaName).append(".").append(tableName);
+		
+		if (chunkFilter != null) {
+			
+			sql.append(" WHERE ").append(chunkFilter);
+		}
+		
+		sql.append(") GROUP BY nt ORDER BY nt");
+		
+		logger.info("Fetch Chunks SQL Query: " + sql.toString()); 
+		
+		List<String> endRowids = new ArrayList<String>();
+		
+		Statement stmt = queries.createStatement(connection);
+		ResultSet rs = stmt.executeQuery(sql.toString());
+		
+		while (rs.next()) {
+			
+			endRowids.add(rs.getString("endRowid"));
+		}
+		
+		JdbcUtil jdbcUtil = new JdbcUtil();
+		
+		jdbcUtil.closeResultSet(rs);
+		jdbcUtil.closeStatement(stmt); 
+		
+		// The first chunk is open below and the last open above, so rows added since are read as well
+		for (int i = 0; i < Math.max(1, endRowids.size()); i++) {
+			
+			List<String> conditions = new ArrayList<String>();
+			
+			if (chunkFilter != null) {
+				conditions.add(chunkFilter);
+			}
+			
+			if (i > 0) {
+				conditions.add("ROWID > CHARTOROWID('" + endRowids.get(i - 1) + "')");
+			}
+			
+			if (i < endRowids.size() - 1) {
+				conditions.add("ROWID <= CHARTOROWID('" + endRowids.get(i) + "')");
+			}
+			
+			chunks.add(conditions.isEmpty() ? "" : "where " + StringUtils.join(conditions, " and "));
+			chunkRanges.add(null);
+		}
+		
+		logger.info("No of ROWID chunks: " + chunks.size());
+	}
+	
+	/**
+	 * Splits a keyless table into ctid page ranges, one per ROWID range of the source. The pages of a range
+	 * are read without sorting, by a TID range scan from PostgreSQL 14 on.
+	 * 
+	 * @param connection
+	 * @param schemaName
+	 * @param tableName
+	 * @param rowCount source rows
+	 * @param filter
+	 * @param filterType
+	 * @throws SQLException
+	 */
+	private void generateCtidChunks(Connection connection, String schemaName, String tableName, long rowCount,
+			String filter, String filterType) throws SQLException {
+		
+		long chunkCount = chunkCount(rowCount);
+		
+		String sql = "SELECT pg_relation_size('" + schemaName + "." + tableName
+				+ "'::regclass) / current_setting('block_size')::int AS pages";
+		
+		long pages = 0;
+		
+		Statement stmt = queries.createStatement(connection);
+		ResultSet rs = stmt.executeQuery(sql);
+		
+		if (rs.next()) {
+			
+			pages = rs.getLong("pages");
+		}
+		
+		JdbcUtil jdbcUtil = new JdbcUtil();
+		
+		jdbcUtil.closeResultSet(rs);
+		jdbcUtil.closeStatement(stmt); 
+		
+		String chunkFilter = chunkFilter(filter, filterType);
+		
+		for (long i = 0; i < chunkCount; i++) {
+			
+			List<String> conditions = new ArrayList<String>();
+			
+			if (chunkFilter != null) {
+				conditions.add(chunkFilter);
+			}
+			
+			if (i > 0) {
+				conditions.add("ctid >= '(" + (pages * i / chunkCount) + ",0)'::tid");
+			}
+			
+			if (i < chunkCount - 1) {
+				conditions.add("ctid < '(" + (pages * (i + 1) / chunkCount) + ",0)'::tid");
+			}
+			
+			chunks.add(conditions.isEmpty() ? "" : "where " + StringUtils.join(conditions, " and "));
+		}
+		
+		logger.info("No of ctid chunks: " + chunks.size() + " over " + pages + " pages");
+	}
+	
+	/**
+	 * 
+	 * @param rowCount source rows
+	 * @return chunks planned from the row count alone, the same on the source and the target
+	 */
+	private long chunkCount(long rowCount) {
+		
+		return Math.max(1, (rowCount + getFetchSize() - 1) / getFetchSize());
+	}
+	
+	/**
+	 * Splits the table into buckets of a hash of the key, read without sorting. The bucket of a key is
+	 * computed the same way on every database, so the buckets of the source and the target hold the same
+	 * keys. Each bucket query scans the table, the scan replaces the sort of the ranges.
+	 * 
+	 * @param sortKey
+	 * @param filter
+	 * @param filterType
+	 * @param rowCount source rows
+	 * @param sourceTableMetadataMap
+	 */
+	private void generateBucketChunks(String sortKey, String filter, String filterType, long rowCount,
+			Map<String, TableColumnMetadata> sourceTableMetadataMap) {
+		
+		chunks.clear();
+		chunkRanges.clear();
+		
+		long chunkCount = chunkCount(rowCount);
+		
+		String bucket = bucketExpression(sortKey.split(","), chunkCount, sourceTableMetadataMap);
+		
+		String chunkFilter = chunkFilter(filter, filterType);
+		
+		for (long i = 0; i < chunkCount; i++) {
+			
+			chunks.add("where " + ((chunkFilter != null) ? chunkFilter + " and " : "") + bucket + " = " + i);
+			chunkRanges.add(null);
+		}
+		
+		logger.info("No of bucket chunks: " + chunks.size() + ", bucket: " + bucket);
+	}
+	
+	/**
+	 * A single numeric key is bucketed by its remainder. Other keys by the first 28 bits of the MD5 of
+	 * their canonical text, the text the row hash pushdown renders for the key columns.
+	 * 
+	 * @param keyColumns
+	 * @param chunkCount
+	 * @param sourceTableMetadataMap
+	 * @return bucket of the key, 0 up to chunkCount - 1
+	 */
+	private String bucketExpression(String[] keyColumns, long chunkCount,
+			Map<String, TableColumnMetadata> sourceTableMetadataMap) {
+		
+		boolean isTarget = "POSTGRESQL".equals(getDbType());
+		
+		// Decided on the source metadata, so both databases take the same expression
+		TableColumnMetadata firstSourceMetadata = columnMetadata(sourceTableMetadataMap, keyColumns[0]);
+		
+		ColumnExtractor.ColumnKind firstKind = (firstSourceMetadata != null)
+				? ColumnExtractor.resolveKind(firstSourceMetadata.getColumnType()) : null;
+		
+		if (keyColumns.length == 1
+				&& (firstKind == ColumnExtractor.ColumnKind.INTEGER || firstKind == ColumnExtractor.ColumnKind.NUMBER)) {
+			
+			// floor of a PostgreSQL bigint would round through double precision
+			String column = isTarget ? replaceColumnWithHash(keyColumns[0]) + "::numeric" : keyColumns[0];
+			
+			return "SQLSERVER".equals(getDbType()) ? "ABS(FLOOR(" + column + ") % " + chunkCount + ")"
+					: "ABS(MOD(FLOOR(" + column + "), " + chunkCount + "))";
+		}
+		
+		List<String> values = new ArrayList<String>();
+		
+		for (String keyColumn : keyColumns) {
+			
+			TableColumnMetadata metadata = columnMetadata(getTableMetadataMap(), keyColumn);
+			TableColumnMetadata sourceMetadata = columnMetadata(sourceTableMetadataMap, keyColumn);
+			
+			String column = isTarget ? replaceColumnWithHash(keyColumn) : keyColumn;
+			
+			values.add((metadata != null) ? canonicalValue(column, metadata, isTarget ? sourceMetadata : null)
+					: column);
+		}
+		
+		String keyText = "SQLSERVER".equals(getDbType()) ? "CONCAT(" + StringUtils.join(values, ", '|', ") + ")"
+				: StringUtils.join(values, " || '|' || ");
+		
+		String hash = md5Hex(keyText);
+		
+		switch (getDbType()) {
+		
+		case "ORACLE":
+			
+			return "MOD(TO_NUMBER(SUBSTR(" + hash + ", 1, 7), 'XXXXXXX'), " + chunkCount + ")";
+			
+		case "SQLSERVER":
+			
+			return "CONVERT(INT, CONVERT(VARBINARY(4), '0' + SUBSTRING(" + hash + ", 1, 7), 2)) % " + chunkCount;
+			
+		default:
+			
+			return "mod(('x' || substr(" + hash + ", 1, 7))::bit(28)::int, " + chunkCount + ")";
+		}
+	}
+	
+	/**
+	 * 
+	 * @param sortKey
+	 * @return true if a key column is text, bucketed by the MD5 of its text
+	 */
+	private boolean hasTextKey(String sortKey) {
+		
+		for (String keyColumn : sortKey.split(",")) {
+			
+			TableColumnMetadata metadata = columnMetadata(getTableMetadataMap(), keyColumn);
+			
+			if (metadata == null || isText(metadata)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * 
+	 * @param tableMetadataMap
+	 * @param column
+	 * @return metadata of the column in any case, null if the column is not compared
+	 */
+	private TableColumnMetadata columnMetadata(Map<String, TableColumnMetadata> tableMetadataMap, String column) {
+		
+		for (Map.Entry<String, TableColumnMetadata> entry : tableMetadataMap.entrySet()) {
+			
+			if (entry.getKey().equalsIgnoreCase(column.trim())) {
+				return entry.getValue();
+			}
 		}
+		
+		return null;
 	}
 	
 	/**
+	 * Plans key ranges over all key columns for string, date and composite keys. A key of one numeric column
+	 * is left to the numeric ranges.
 	 * 
 	 * @param connection
 	 * @param schemaName
 	 * @param tableName
 	 * @param sortKey
-	 * @param primaryKey
 	 * @param filter
 	 * @param filterType
-	 * @param cols
+	 * @return false if the key is one numeric column
 	 * @throws SQLException
 	 */
-	private void generateSourceChunks(Connection connection, String schemaName, String tableName, String sortKey,
-			String primaryKey, String filter, String filterType, String cols) throws SQLException {
-
-		logger.info("Started preparing chunks");
-
-		chunks.clear();
+	private boolean generateKeyRangeChunks(Connection connection, String schemaName, String tableName,
+			String sortKey, String filter, String filterType) throws SQLException {
 		
-		Long totalRecords = getTotalRecords(connection, schemaName, tableName, filter); 
-
-		setRowCount(totalRecords);
-
-		long ntileSize = (long)Math.ceil(totalRecords / getFetchSize());
+		String[] keyColumns = sortKey.split(",");
 		
-		ntileSize = (ntileSize <= 0) ? 1 : ntileSize;
+		KeyRangePlanner planner = new KeyRangePlanner(connection, getDbType(), schemaName, tableName, keyColumns, queries);
 		
-		StringBuilder sql = new StringBuilder();
+		boolean supported = planner.describe();
 		
-		if(isHasNoUniqueKey()) {
+		if (supported && planner.isNumericKey()) {
+			return false;
+		}
+		
+		String chunkFilter = chunkFilter(filter, filterType);
+		
+		planner.setFilter(chunkFilter);
+		
+		List<Object[]> boundaries = new ArrayList<Object[]>();
+		
+		if (supported) {
 			
-			sql.append("SELECT min(ROWNUM) AS startRange, max(ROWNUM) AS endRange,count(*) AS chunkSize, nt FROM (SELECT ROWNUM")
-			.append(" ,ntile(").append(ntileSize).append(") OVER (ORDER BY ").append(cols).append(" ) nt FROM ").append(schemaName)
-			.append(".").append(tableName);
+			boolean sample = "Sample".equals(getChunkPlanner());
+			
+			if (!sample) {
+				setRowCount(getTotalRecords(connection, schemaName, tableName, filter));
+			}
+			
+			planner.plan(getFetchSize(), sample);
+			
+			if (sample) {
+				setRowCount(planner.getRowCount());
+			}
+			
+			boundaries = planner.getBoundaries();
 			
 		} else {
-
-			sql.append("SELECT min(").append(primaryKey).append(") AS startRange, max(").append(primaryKey)
-					.append(") AS endRange,count(*) AS chunkSize, nt FROM (SELECT ").append(primaryKey).append(" ,ntile(")
-					.append(ntileSize).append(") OVER (ORDER BY ").append(primaryKey).append(" ) nt FROM ").append(schemaName)
-					.append(".").append(tableName);
+			
+			// Without a common key order the table is compared in one chunk
+			setRowCount(getTotalRecords(connection, schemaName, tableName, filter));
 		}
-			/*if(filter != null && !filter.isEmpty()) {
-				
-				sql.append(" WHERE ").append(filter);
-			}*/
-
 		
-		if("ORACLE".equals(getDbType())) {
+		if (!planner.getCollateColumns().isEmpty()) {
 			
-			sql.append(") GROUP BY nt ORDER BY nt");
+			logger.info("Key columns " + planner.getCollateColumns() + " of " + schemaName + "." + tableName
+					+ " are not in a BIN2 collation, the chunks compare them with COLLATE and read without the key index");
+		}
+		
+		for (int i = 0; i <= boundaries.size(); i++) {
 			
-		} else {
+			KeyRange range = new KeyRange(chunkFilter, sortKey, keyColumns,
+					planner.getColumnTypes(), (i > 0) ? boundaries.get(i - 1) : null,
+					(i < boundaries.size()) ? boundaries.get(i) : null);
 			
-			sql.append(") as a GROUP BY nt ORDER BY nt");
+			chunks.add(range.getChunk(getDbType(), planner.getCollateColumns()));
+			chunkRanges.add(null);
+			keyRanges.add(range);
 		}
 		
-		logger.info("Fetch Chunks SQL Query: " + sql.toString()); 
-
-		Statement stmt = connection.createStatement();
-
-		ResultSet rs = stmt.executeQuery(sql.toString());
-        int count=0;
-		while (rs.next()) {
-
-			int columnType= rs.getMetaData().getColumnType(1);
-
-			long startRange=0;
-			long endRange=0;
-			if(!isNoNumericColumnType(columnType)){
-				 startRange = rs.getLong("startRange");
-				 endRange = rs.getLong("endRange");
-			}
-			long chunkSize = rs.getLong("chunkSize");
-
-			StringBuilder condition = new StringBuilder();
-            boolean whereapplied=false;
-			boolean filterapplied=false;
-
-			if(!isNoNumericColumnType(columnType)) {
-				condition.append("where ");
-				whereapplied=true;
-			}
-
-			if (filter != null && !filter.isEmpty() && !"Sample".equals(filterType)) {
-			 if(!whereapplied) {
-				 condition.append("where ");
-				 whereapplied=true;
-			 }
-				condition.append(filter);
-				filterapplied=true;
-			}
-			if(isHasNoUniqueKey()) {
-
-				if (isNoNumericColumnType(columnType) ){
-					condition.append(" order by 1");
-				} else {
-
-					if(filterapplied)
-					condition.append(" and ");
-                    if(count==0) {
-						condition.append("key1").append(" >= ").append(startRange).append(" and ").append("key1")
-								.append(" <= ").append(endRange).append(" order by 1");
-					}
-					else{
-						condition.append("key1").append(" > ").append(startRange).append(" and ").append("key1")
-								.append(" <= ").append(endRange).append(" order by 1");
-
-					}
-				}
-			} else {
-
-				if (isNoNumericColumnType(columnType) ){
-					condition.append(" order by ").append(sortKey);
-				} else {
-
-					if(filterapplied)
-						condition.append(" and ");
-					if(count==0) {
-						condition.append(primaryKey).append(" >=").append(startRange).append(" and ").append(primaryKey)
-								.append(" <= ").append(endRange).append(" order by ").append(sortKey);
-					}else{
-						condition.append(primaryKey).append(" > ").append(startRange).append(" and ").append(primaryKey)
-								.append(" <= ").append(endRange).append(" order by ").append(sortKey);
-					}
-				}
-			}
-
-			logger.debug("Chunk Range, Min: " + startRange + ", Max: " + endRange + ", Size: " + chunkSize); 
+		logger.info("No of key range chunks: " + chunks.size());
+		
+		return true;
+	}
+	
+	/**
+	 * Plans the chunks from the statistics or a sample of the key instead of numbering all rows.
+	 * 
+	 * @param connection
+	 * @param schemaName
+	 * @param tableName
+	 * @param sortKey
+	 * @param primaryKey
+	 * @param filter
+	 * @param filterType
+	 * @return false if the key cannot be sampled and the chunks have to be planned with ntile
+	 * @throws SQLException
+	 */
+	private boolean generateSampledChunks(Connection connection, String schemaName, String tableName, String sortKey,
+			String primaryKey, String filter, String filterType) throws SQLException {
+		
+		String chunkFilter = chunkFilter(filter, filterType);
+		
+		SampleChunkPlanner planner = new SampleChunkPlanner(connection, getDbType(), schemaName, tableName, primaryKey, queries);
+		
+		planner.setFilter(chunkFilter);
+		
+		if (!planner.plan(getFetchSize())) {
 			
-			chunks.add(condition.toString());
-			count++;
+			logger.info("Key of " + schemaName + "." + tableName + " cannot be sampled, planning the chunks with ntile");
+			return false;
 		}
 		
-		JdbcUtil jdbcUtil = new JdbcUtil();
+		setRowCount(planner.getRowCount());
 		
-		jdbcUtil.closeResultSet(rs);
-		jdbcUtil.closeStatement(stmt); 
-
-		logger.info("Completed preparing chunks");
+		long[] boundaries = planner.getBoundaries();
+		
+		for (int i = 0; i + 1 < boundaries.length; i++) {
+			
+			ChunkRange range = new ChunkRange(chunkFilter, primaryKey, sortKey, boundaries[i],
+					boundaries[i + 1], i == 0);
+			
+			logger.debug("Chunk Range, Min: " + boundaries[i] + ", Max: " + boundaries[i + 1]); 
+			
+			chunks.add(range.getChunk());
+			chunkRanges.add(range);
+		}
+		
+		logger.info("No of sampled chunks: " + chunks.size() + ", estimated rows: " + getRowCount());
+		
+		return true;
 	}
 	
 	/**
@@ -724,7 +1671,7 @@ public class FetchMetadata {
 			sql.append(" WHERE ").append(filter);
 		}
 
-		Statement stmt = connection.createStatement();
+		Statement stmt = queries.createStatement(connection);
 		ResultSet rs = stmt.executeQuery(sql.toString());
 
 		if (rs.next()) {
@@ -748,10 +1695,11 @@ public class FetchMetadata {
 	 * @param tableName
 	 * @param rowCount
 	 * @param filter
+	 * @param filterType
 	 * @throws SQLException
 	 */
 	private void generateChunksPostgresql(Connection connection, String schemaName, String tableName, long rowCount,
-			String filter) throws SQLException {
+			String filter, String filterType) throws SQLException {
 
 		logger.info("Started preparing chunks for Postgresql");
 
@@ -771,6 +1719,11 @@ public class FetchMetadata {
 
 //		setRowCount(totalRecords);
 		setRowCount(0);
+		
+		if (isPhysicalChunks()) {
+			
+			generateCtidChunks(connection, schemaName, tableName, rowCount, filter, filterType);
+		}
 
 		logger.info("Completed preparing chunks for Postgresql");
 	}
@@ -829,6 +1782,23 @@ public class FetchMetadata {
 		return chunks;
 	}
 
+	/**
+	 * 
+	 * @return key range of each chunk, null for chunks without a numeric key range
+	 */
+	public List<ChunkRange> getChunkRanges() {
+		return chunkRanges;
+	}
+
+	/**
+	 * 
+	 * @param chunkNo
+	 * @return key range of a chunk on a string, date or composite key, null for other chunks
+	 */
+	public KeyRange getKeyRange(int chunkNo) {
+		return (chunkNo < keyRanges.size()) ? keyRanges.get(chunkNo) : null;
+	}
+
 	/**
 	 * 
 	 * @return
@@ -968,4 +1938,144 @@ public class FetchMetadata {
 	public void setMaxTextSize(int maxTextSize) {
 		this.maxTextSize = maxTextSize;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @return the row hash query of the hash pushdown and chunk checksum modes, null when not used
+	 */
+	public String getHashSql() {
+		return hashSql;
+	}
+
+	/**
+	 * @param hashSql the hashSql to set
+	 */
+	public void setHashSql(String hashSql) {
+		this.hashSql = hashSql;
+	}
+
+	/**
+	 * @return the hashPushdown
+	 */
+	public boolean isHashPushdown() {
+		return hashPushdown;
+	}
+
+	/**
+	 * @param hashPushdown the hashPushdown to set
+	 */
+	public void setHashPushdown(boolean hashPushdown) {
+		this.hashPushdown = hashPushdown;
+	}
+
+	/**
+	 * @return the chunkChecksum
+	 */
+	public boolean isChunkChecksum() {
+		return chunkChecksum;
+	}
+
+	/**
+	 * @param chunkChecksum the chunkChecksum to set
+	 */
+	public void setChunkChecksum(boolean chunkChecksum) {
+		this.chunkChecksum = chunkChecksum;
+	}
+
+	/**
+	 * @return the compareOnlyDate
+	 */
+	public boolean isCompareOnlyDate() {
+		return compareOnlyDate;
+	}
+
+	/**
+	 * @param compareOnlyDate the compareOnlyDate to set
+	 */
+	public void setCompareOnlyDate(boolean compareOnlyDate) {
+		this.compareOnlyDate = compareOnlyDate;
+	}
+
+	/**
+	 * @return true if the keyless table is chunked by ROWID and ctid ranges
+	 */
+	public boolean isPhysicalChunks() {
+		return physicalChunks && isHasNoUniqueKey();
+	}
+
+	/**
+	 * @param physicalChunks the physicalChunks to set
+	 */
+	public void setPhysicalChunks(boolean physicalChunks) {
+		this.physicalChunks = physicalChunks;
+	}
+
+	/**
+	 * @return true if the table is chunked by buckets of a hash of its key
+	 */
+	public boolean isBucketChunks() {
+		return bucketChunks;
+	}
+
+	/**
+	 * @param bucketChunks the bucketChunks to set
+	 */
+	public void setBucketChunks(boolean bucketChunks) {
+		this.bucketChunks = bucketChunks;
+	}
+
+	/**
+	 * @return lower case names of the string columns in a binary collation
+	 */
+	public Set<String> getBinaryColumns() {
+		return binaryColumns;
+	}
+
+	/**
+	 * @param binaryColumns the binaryColumns to set
+	 */
+	public void setBinaryColumns(Set<String> binaryColumns) {
+		this.binaryColumns = binaryColumns;
+	}
+
+	/**
+	 * @return false if text cannot be converted to UTF-8 for the row hash, SQL Server before 2019
+	 */
+	public boolean isTextToUtf8() {
+		return textToUtf8;
+	}
+
+	/**
+	 * @param textToUtf8 the textToUtf8 to set
+	 */
+	public void setTextToUtf8(boolean textToUtf8) {
+		this.textToUtf8 = textToUtf8;
+	}
+
+	/**
+	 * @return true if the text of the Oracle database is UTF-8 already
+	 */
+	public boolean isUtf8Database() {
+		return utf8Database;
+	}
+
+	/**
+	 * @param utf8Database the utf8Database to set
+	 */
+	public void setUtf8Database(boolean utf8Database) {
+		this.utf8Database = utf8Database;
+	}
+
+	/**
+	 * @return the chunkPlanner
+	 */
+	public String getChunkPlanner() {
+		return chunkPlanner;
+	}
+
+	/**
+	 * @param chunkPlanner Ntile or Sample
+	 */
+	public void setChunkPlanner(String chunkPlanner) {
+		this.chunkPlanner = chunkPlanner;
+	}
+}
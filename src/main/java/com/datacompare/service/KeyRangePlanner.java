@@ -0,0 +1,518 @@
+/**
+ * Service class to plan the chunk boundaries of a table with a string, date or composite key. Every
+ * boundary is a whole key with its typed column values, read in binary order either from the numbered rows
+ * or from a block sample of the keys. SQL Server uniqueidentifier keys are read in the byte group order of
+ * SQL Server. The chunks compare the key columns themselves, so the databases read
+ * each chunk through the key index.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datacompare.util.JdbcUtil;
+
+public class KeyRangePlanner {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("FetchMetadataLog");
+
+	private static final int STRING = 1;
+
+	private static final int NUMBER = 2;
+
+	private static final int TIME = 3;
+
+	private static final int GUID = 4;
+
+	private static final int RAW = 5;
+
+	private Connection connection;
+
+	private String dbType;
+
+	private String schemaName;
+
+	private String tableName;
+
+	private String[] keyColumns;
+
+	private String filter;
+
+	private String[] columnTypes;
+
+	private int[] kinds;
+
+	private Set<String> binaryColumns = new LinkedHashSet<String>();
+
+	private RunningQueries queries;
+
+	private long rowCount;
+
+	private List<Object[]> boundaries = new ArrayList<Object[]>();
+
+	/**
+	 *
+	 * @param connection
+	 * @param dbType ORACLE or SQLSERVER
+	 * @param schemaName
+	 * @param tableName
+	 * @param keyColumns primary key columns in key order
+	 * @param queries queries of the table the planning queries are created with
+	 */
+	public KeyRangePlanner(Connection connection, String dbType, String schemaName, String tableName,
+			String[] keyColumns, RunningQueries queries) {
+
+		this.connection = connection;
+		this.dbType = dbType;
+		this.schemaName = schemaName;
+		this.tableName = tableName;
+		this.keyColumns = keyColumns;
+		this.queries = queries;
+	}
+
+	/**
+	 * Reads the types of the key columns.
+	 *
+	 * @return false if a key column has a type without a common order on both databases
+	 * @throws SQLException
+	 */
+	public boolean describe() throws SQLException {
+
+		String sql = "SELECT " + String.join(", ", keyColumns) + " FROM " + schemaName + "." + tableName
+				+ " WHERE 1 = 0";
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		columnTypes = new String[keyColumns.length];
+		kinds = new int[keyColumns.length];
+
+		try {
+
+			stmt = queries.createStatement(connection);
+			rs = stmt.executeQuery(sql);
+
+			ResultSetMetaData metaData = rs.getMetaData();
+
+			boolean supported = true;
+
+			for (int i = 0; i < keyColumns.length; i++) {
+
+				columnTypes[i] = metaData.getColumnTypeName(i + 1);
+				kinds[i] = kind(metaData.getColumnType(i + 1), columnTypes[i]);
+
+				if (kinds[i] == 0) {
+
+					logger.info("Key column " + keyColumns[i] + " of " + schemaName + "." + tableName + " has type "
+							+ columnTypes[i] + ", no key ranges");
+					supported = false;
+				}
+			}
+
+			if ("SQLSERVER".equals(dbType)) {
+
+				binaryColumns = readBinaryColumns(connection, dbType, schemaName, tableName);
+			}
+
+			return supported;
+
+		} finally {
+
+			close(rs, stmt);
+		}
+	}
+
+	/**
+	 * Reads the string columns whose collation already compares in binary order, a BIN2 collation on SQL
+	 * Server and the C collation on PostgreSQL. Their chunk conditions need no COLLATE and use the key
+	 * index.
+	 *
+	 * @param connection
+	 * @param dbType SQLSERVER or POSTGRESQL
+	 * @param schemaName
+	 * @param tableName
+	 * @return lower case names of the columns, empty if the collations cannot be read
+	 */
+	public static Set<String> readBinaryColumns(Connection connection, String dbType, String schemaName,
+			String tableName) {
+
+		String sql;
+
+		if ("SQLSERVER".equals(dbType)) {
+
+			sql = "SELECT name FROM sys.columns WHERE object_id = OBJECT_ID('" + schemaName + "." + tableName
+					+ "') AND collation_name LIKE '%[_]BIN2%'";
+
+		} else {
+
+			// Columns in the default collation take the collation of the database
+			sql = "SELECT a.attname FROM pg_attribute a JOIN pg_collation c ON c.oid = a.attcollation "
+					+ "JOIN pg_database d ON d.datname = current_database() WHERE a.attrelid = '" + schemaName + "."
+					+ tableName + "'::regclass AND a.attnum > 0 AND (CASE WHEN c.collname = 'default' THEN "
+					+ "d.datcollate ELSE c.collname END) IN ('C', 'POSIX', 'ucs_basic', 'C.UTF-8', 'C.utf8')";
+		}
+
+		Set<String> binaryColumns = new LinkedHashSet<String>();
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+
+			stmt = connection.createStatement();
+			rs = stmt.executeQuery(sql);
+
+			while (rs.next()) {
+
+				binaryColumns.add(rs.getString(1).toLowerCase());
+			}
+
+		} catch (SQLException e) {
+
+			LoggerFactory.getLogger("FetchMetadataLog").error(dbType, e);
+
+		} finally {
+
+			close(rs, stmt);
+		}
+
+		return binaryColumns;
+	}
+
+	/**
+	 * @return true for a key of one numeric column, planned with the numeric ranges
+	 */
+	public boolean isNumericKey() {
+
+		return keyColumns.length == 1 && kinds[0] == NUMBER;
+	}
+
+	/**
+	 * Plans the boundaries of the chunks.
+	 *
+	 * @param fetchSize rows per chunk
+	 * @param sample true to read the boundaries from a block sample instead of numbering all rows
+	 * @throws SQLException
+	 */
+	public void plan(int fetchSize, boolean sample) throws SQLException {
+
+		boundaries.clear();
+
+		if (sample) {
+
+			planFromSample(fetchSize);
+
+		} else {
+
+			planFromRowNumbers(fetchSize);
+		}
+	}
+
+	/**
+	 * Takes the key of every fetch size row in key order.
+	 *
+	 * @param fetchSize
+	 * @throws SQLException
+	 */
+	private void planFromRowNumbers(int fetchSize) throws SQLException {
+
+		String keys = String.join(", ", keyColumns);
+
+		StringBuilder sql = new StringBuilder();
+
+		sql.append("SELECT ").append(keys).append(" FROM (SELECT ").append(keys)
+				.append(", ROW_NUMBER() OVER (ORDER BY ").append(orderBy()).append(") AS rn FROM ")
+				.append(schemaName).append(".").append(tableName).append(where()).append(") a WHERE ")
+				.append("ORACLE".equals(dbType) ? "MOD(rn, " + fetchSize + ") = 0" : "rn % " + fetchSize + " = 0")
+				.append(" ORDER BY rn");
+
+		logger.info("Fetch Chunk Keys SQL Query: " + sql);
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+
+			stmt = queries.createStatement(connection);
+			rs = stmt.executeQuery(sql.toString());
+
+			while (rs.next()) {
+
+				boundaries.add(key(rs));
+			}
+
+		} finally {
+
+			close(rs, stmt);
+		}
+	}
+
+	/**
+	 * Samples the keys by blocks in key order and takes the keys at equal shares of the sample.
+	 *
+	 * @param fetchSize
+	 * @throws SQLException
+	 */
+	private void planFromSample(int fetchSize) throws SQLException {
+
+		long estimatedRows = new SampleChunkPlanner(connection, dbType, schemaName, tableName, keyColumns[0], queries)
+				.estimatedRowCount();
+
+		long sampleKeys = Math.min(SampleChunkPlanner.MAX_SAMPLE_KEYS,
+				Math.max(1, estimatedRows / fetchSize) * SampleChunkPlanner.SAMPLE_KEYS_PER_CHUNK);
+
+		double percent = (estimatedRows > 0) ? 100.0 * sampleKeys / estimatedRows : 100;
+
+		StringBuilder sql = new StringBuilder();
+
+		sql.append("SELECT ").append(String.join(", ", keyColumns)).append(" FROM ").append(schemaName).append(".")
+				.append(tableName);
+
+		if (percent < 100) {
+
+			String samplePercent = String.format(Locale.ROOT, "%.6f", Math.max(0.000001, percent));
+
+			sql.append("ORACLE".equals(dbType) ? " SAMPLE BLOCK (" + samplePercent + ")"
+					: " TABLESAMPLE (" + samplePercent + " PERCENT)");
+		}
+
+		sql.append(where()).append(" ORDER BY ").append(orderBy());
+
+		logger.info("Sample chunk keys SQL Query: " + sql);
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		List<Object[]> keys = new ArrayList<Object[]>();
+
+		try {
+
+			stmt = queries.createStatement(connection);
+			stmt.setFetchSize(10000);
+
+			rs = stmt.executeQuery(sql.toString());
+
+			while (rs.next()) {
+
+				keys.add(key(rs));
+			}
+
+		} finally {
+
+			close(rs, stmt);
+		}
+
+		rowCount = (percent < 100) ? Math.round(keys.size() * 100.0 / percent) : keys.size();
+
+		int chunkCount = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (rowCount + fetchSize - 1) / fetchSize));
+
+		int last = -1;
+
+		for (int i = 1; i < chunkCount; i++) {
+
+			int index = (int) ((long) i * keys.size() / chunkCount) - 1;
+
+			if (index > last) {
+
+				boundaries.add(keys.get(index));
+				last = index;
+			}
+		}
+
+		logger.info("Chunks of " + schemaName + "." + tableName + " planned from " + keys.size() + " sampled keys");
+	}
+
+	/**
+	 * Orders strings by their binary value, the order the chunk conditions compare in.
+	 *
+	 * @return order by columns
+	 */
+	private String orderBy() {
+
+		List<String> columns = new ArrayList<String>();
+
+		for (int i = 0; i < keyColumns.length; i++) {
+
+			if (kinds[i] != STRING) {
+
+				columns.add(keyColumns[i]);
+
+			} else if ("ORACLE".equals(dbType)) {
+
+				columns.add("NLSSORT(" + keyColumns[i] + ", 'NLS_SORT = BINARY')");
+
+			} else if (binaryColumns.contains(keyColumns[i].toLowerCase())) {
+
+				columns.add(keyColumns[i]);
+
+			} else {
+
+				columns.add(keyColumns[i] + " COLLATE Latin1_General_BIN2");
+			}
+		}
+
+		return String.join(", ", columns);
+	}
+
+	/**
+	 * @return where clause of the filter, empty without a filter
+	 */
+	private String where() {
+
+		return (filter != null) ? " WHERE " + filter : "";
+	}
+
+	private Object[] key(ResultSet rs) throws SQLException {
+
+		Object[] key = new Object[keyColumns.length];
+
+		for (int i = 0; i < keyColumns.length; i++) {
+
+			switch (kinds[i]) {
+
+			case STRING:
+
+				key[i] = rs.getString(i + 1);
+				break;
+
+			case NUMBER:
+
+				key[i] = rs.getBigDecimal(i + 1);
+				break;
+
+			case GUID:
+
+				key[i] = rs.getString(i + 1);
+				break;
+
+			case RAW:
+
+				key[i] = rs.getBytes(i + 1);
+				break;
+
+			default:
+
+				key[i] = rs.getTimestamp(i + 1);
+			}
+		}
+
+		return key;
+	}
+
+	/**
+	 *
+	 * @param columnType
+	 * @param columnTypeName
+	 * @return kind of the key column, 0 if it cannot be ranged
+	 */
+	private static int kind(int columnType, String columnTypeName) {
+
+		switch (columnType) {
+
+		case Types.CHAR:
+		case Types.VARCHAR:
+		case Types.NCHAR:
+		case Types.NVARCHAR:
+
+			// SQL Server orders uniqueidentifier by its byte groups, the ranges are kept in that order
+			return "uniqueidentifier".equalsIgnoreCase(columnTypeName) ? GUID : STRING;
+
+		case Types.BINARY:
+		case Types.VARBINARY:
+
+			// Oracle RAW keys, such as RAW(16) GUIDs, compare byte by byte
+			return "RAW".equalsIgnoreCase(columnTypeName) ? RAW : 0;
+
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+
+			return NUMBER;
+
+		case Types.DATE:
+		case Types.TIMESTAMP:
+
+			return TIME;
+
+		default:
+
+			return 0;
+		}
+	}
+
+	private static void close(ResultSet rs, Statement stmt) {
+
+		JdbcUtil jdbcUtil = new JdbcUtil();
+
+		jdbcUtil.closeResultSet(rs);
+		jdbcUtil.closeStatement(stmt);
+	}
+
+	/**
+	 * @param filter Sql filter of the chunks, the boundaries are planned over its rows only
+	 */
+	public void setFilter(String filter) {
+		this.filter = filter;
+	}
+
+	/**
+	 * @return string key columns of SQL Server not in a binary collation, compared with COLLATE
+	 */
+	public Set<String> getCollateColumns() {
+
+		Set<String> collateColumns = new LinkedHashSet<String>();
+
+		for (int i = 0; "SQLSERVER".equals(dbType) && i < keyColumns.length; i++) {
+
+			if (kinds[i] == STRING && !binaryColumns.contains(keyColumns[i].toLowerCase())) {
+				collateColumns.add(keyColumns[i]);
+			}
+		}
+
+		return collateColumns;
+	}
+
+	/**
+	 * @return database type names of the key columns
+	 */
+	public String[] getColumnTypes() {
+		return columnTypes;
+	}
+
+	/**
+	 * @return the row count estimated from the sample, 0 when the rows were numbered
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return ascending boundary keys, chunk i holds the keys above boundary i - 1 up to boundary i, the last
+	 *         chunk the keys above the last boundary
+	 */
+	public List<Object[]> getBoundaries() {
+		return boundaries;
+	}
+}
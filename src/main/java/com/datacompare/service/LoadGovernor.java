@@ -0,0 +1,197 @@
+/**
+ * Service class to cap the read load on one database. The fetches of the side share a token bucket for
+ * rows per second and one for bytes per second. The rates back off when the database gets slower to
+ * deliver rows and recover step by step while it keeps up, so a run holds the highest load the database
+ * sustains without exceeding the configured caps.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class LoadGovernor {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("LoadGovernorLog");
+
+	/** Rate kept when backing off, as share of the cap */
+	private static final double MIN_RATE = 0.1;
+
+	/** Rate multiplier when the database gets slower */
+	private static final double DECREASE = 0.7;
+
+	/** Rate added per calm batch, as share of the cap */
+	private static final double INCREASE = 0.05;
+
+	/** Row latency over the best latency seen from which the database counts as slower */
+	private static final double SLOWDOWN = 2.0;
+
+	/** Weight of the latest batch in the smoothed row latency */
+	private static final double SMOOTHING = 0.2;
+
+	/** Share of the gap to the smoothed latency the best latency moves up per batch, an early best fades */
+	private static final double BASELINE_DECAY = 0.05;
+
+	private String name;
+
+	private Bucket rows;
+
+	private Bucket bytes;
+
+	private double latency = -1;
+
+	private double bestLatency = Double.MAX_VALUE;
+
+	/**
+	 *
+	 * @param name used in the log
+	 * @param maxRowsPerSecond 0 for no cap
+	 * @param maxBytesPerSecond 0 for no cap
+	 */
+	public LoadGovernor(String name, long maxRowsPerSecond, long maxBytesPerSecond) {
+
+		this.name = name;
+		this.rows = (maxRowsPerSecond > 0) ? new Bucket(maxRowsPerSecond) : null;
+		this.bytes = (maxBytesPerSecond > 0) ? new Bucket(maxBytesPerSecond) : null;
+	}
+
+	/**
+	 * Adjusts the rates to the time the database took to deliver a batch of rows. The batch has to span at
+	 * least one round trip, rows served from the buffer of the driver say nothing about the database.
+	 *
+	 * @param rowCount
+	 * @param readNanos time the database took to deliver the rows
+	 */
+	public synchronized void observe(long rowCount, long readNanos) {
+
+		adjust((double) readNanos / Math.max(1, rowCount));
+	}
+
+	/**
+	 * Takes the tokens of the rows just read and waits as long as the buckets are in debt.
+	 *
+	 * @param rowCount
+	 * @param byteCount
+	 * @throws InterruptedException
+	 */
+	public void acquire(long rowCount, long byteCount) throws InterruptedException {
+
+		long waitNanos;
+
+		synchronized (this) {
+
+			long now = System.nanoTime();
+
+			waitNanos = Math.max((rows != null) ? rows.take(rowCount, now) : 0,
+					(bytes != null) ? bytes.take(byteCount, now) : 0);
+		}
+
+		if (waitNanos > 0) {
+
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+		}
+	}
+
+	/**
+	 * Additive increase while the row latency stays near the best seen, multiplicative decrease when it
+	 * rises, like the database reporting more wait time. The best latency drifts towards the current one,
+	 * so a latency that stays higher, like a wider table or a busier database, becomes the new baseline.
+	 *
+	 * @param rowLatency
+	 */
+	private void adjust(double rowLatency) {
+
+		latency = (latency < 0) ? rowLatency : latency + SMOOTHING * (rowLatency - latency);
+		bestLatency = (latency < bestLatency) ? latency : bestLatency + BASELINE_DECAY * (latency - bestLatency);
+
+		boolean slower = latency > bestLatency * SLOWDOWN;
+
+		boolean changed = false;
+
+		for (Bucket bucket : new Bucket[] { rows, bytes }) {
+
+			if (bucket != null) {
+				changed |= slower ? bucket.decrease() : bucket.increase();
+			}
+		}
+
+		if (changed && slower) {
+
+			logger.info(name + " database slower, rates reduced to " + describe());
+		}
+	}
+
+	/**
+	 * @return current rows per second, 0 for no cap
+	 */
+	long getRowsPerSecond() {
+		return (rows != null) ? (long) rows.rate : 0;
+	}
+
+	private String describe() {
+
+		return ((rows != null) ? (long) rows.rate + " rows/s " : "")
+				+ ((bytes != null) ? (long) bytes.rate + " bytes/s" : "");
+	}
+
+	/**
+	 * Token bucket that holds up to one second of its rate. Takes may overdraw it, the taker then waits
+	 * until the debt is refilled.
+	 */
+	private static final class Bucket {
+
+		private final double cap;
+
+		private double rate;
+
+		private double tokens;
+
+		private long refilled;
+
+		Bucket(long cap) {
+
+			this.cap = cap;
+			this.rate = cap;
+			this.tokens = cap;
+			this.refilled = System.nanoTime();
+		}
+
+		long take(long count, long now) {
+
+			tokens = Math.min(rate, tokens + (now - refilled) * rate / 1e9);
+			refilled = now;
+
+			tokens -= count;
+
+			return (tokens >= 0) ? 0 : (long) (-tokens / rate * 1e9);
+		}
+
+		boolean decrease() {
+
+			double decreased = Math.max(cap * MIN_RATE, rate * DECREASE);
+			boolean changed = decreased < rate;
+
+			rate = decreased;
+
+			return changed;
+		}
+
+		boolean increase() {
+
+			double increased = Math.min(cap, rate + cap * INCREASE);
+			boolean changed = increased > rate;
+
+			rate = increased;
+
+			return changed;
+		}
+	}
+}
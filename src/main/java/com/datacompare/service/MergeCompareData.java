@@ -0,0 +1,286 @@
+/**
+ * Service class to compare a chunk by reading the source and target rows in key order at the same time.
+ * Matching rows are dropped as they are read, so only the mismatched rows are kept in memory. The
+ * mismatched rows are resolved by CompareData at the end of the chunk.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class MergeCompareData implements Runnable {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("CompareDataLog");
+
+	private FetchData source;
+
+	private FetchData target;
+
+	private int chunkNo;
+
+	private int numberOfChunks;
+
+	private boolean rowFingerprint;
+
+	private boolean orderViolation;
+
+	private SQLException failure;
+
+	private long sourceCount;
+
+	private long targetCount;
+
+	private String result = "Completed";
+
+	private List<String> failTuple = new ArrayList<String>();
+
+	private Map<String, String> sourceData = new LinkedHashMap<String, String>();
+
+	private Map<String, String> targetData = new LinkedHashMap<String, String>();
+
+	/**
+	 *
+	 * @param source
+	 * @param target
+	 * @param rowFingerprint
+	 * @param chunkNo
+	 * @param numberOfChunks
+	 */
+	public MergeCompareData(FetchData source, FetchData target, boolean rowFingerprint, int chunkNo,
+			int numberOfChunks) {
+
+		this.source = source;
+		this.target = target;
+		this.rowFingerprint = rowFingerprint;
+		this.chunkNo = chunkNo;
+		this.numberOfChunks = numberOfChunks;
+	}
+
+	public void run() {
+
+		Map<String, String> sourceLeft = new LinkedHashMap<String, String>();
+		Map<String, String> targetLeft = new LinkedHashMap<String, String>();
+
+		RowFingerprints sourceLeftFingerprints = new RowFingerprints(16);
+		RowFingerprints targetLeftFingerprints = new RowFingerprints(16);
+
+		try {
+
+			source.open();
+			target.open();
+
+			// Text keys sort by the collation of each database, which need not agree
+			if (!source.isNumericKey() || !target.isNumericKey()) {
+
+				logger.info("Chunk No " + (chunkNo + 1) + " keys are not numeric on both sides");
+
+				orderViolation = true;
+				return;
+			}
+
+			boolean hasSource = source.next();
+			boolean hasTarget = target.next();
+
+			while (hasSource || hasTarget) {
+
+				String sourceKey = hasSource ? source.getCurrentKey() : null;
+				String targetKey = hasTarget ? target.getCurrentKey() : null;
+
+				int cmp = !hasSource ? 1 : !hasTarget ? -1 : compareKeys(sourceKey, targetKey);
+
+				if (cmp != 0 || !sameValue()) {
+
+					if (cmp <= 0) {
+
+						keep(source, sourceLeft, sourceLeftFingerprints);
+					}
+
+					if (cmp >= 0) {
+
+						keep(target, targetLeft, targetLeftFingerprints);
+					}
+				}
+
+				if (cmp <= 0) {
+
+					sourceCount++;
+					hasSource = source.next();
+
+					if (hasSource && compareKeys(sourceKey, source.getCurrentKey()) >= 0) {
+
+						orderViolation = true;
+						break;
+					}
+				}
+
+				if (cmp >= 0) {
+
+					targetCount++;
+					hasTarget = target.next();
+
+					if (hasTarget && compareKeys(targetKey, target.getCurrentKey()) >= 0) {
+
+						orderViolation = true;
+						break;
+					}
+				}
+			}
+
+		} catch (SQLException e) {
+
+			logger.error(e.getMessage(), e);
+
+			failure = e;
+			return;
+
+		} catch (NumberFormatException e) {
+
+			orderViolation = true;
+
+		} finally {
+
+			source.close();
+			target.close();
+		}
+
+		if (orderViolation) {
+
+			logger.info("Chunk No " + (chunkNo + 1) + " keys are not in the same order on both sides");
+			return;
+		}
+
+		CompareData compareData = rowFingerprint
+				? new CompareData(sourceLeftFingerprints, targetLeftFingerprints, chunkNo, numberOfChunks)
+				: new CompareData(sourceLeft, targetLeft, chunkNo, numberOfChunks);
+
+		compareData.run();
+
+		result = compareData.getResult();
+		failTuple = compareData.getFailTuple();
+		sourceData = compareData.getSourceData();
+		targetData = compareData.getTargetData();
+	}
+
+	/**
+	 *
+	 * @param data
+	 * @param left
+	 * @param leftFingerprints
+	 */
+	private void keep(FetchData data, Map<String, String> left, RowFingerprints leftFingerprints) {
+
+		if (rowFingerprint) {
+
+			leftFingerprints.put(data.getCurrentKey(), data.getCurrentHigh(), data.getCurrentLow());
+
+		} else {
+
+			left.put(data.getCurrentKey(), data.getCurrentValue());
+		}
+	}
+
+	/**
+	 * @return true if the current source and target rows have the same value
+	 */
+	private boolean sameValue() {
+
+		if (rowFingerprint) {
+
+			return source.getCurrentHigh() == target.getCurrentHigh()
+					&& source.getCurrentLow() == target.getCurrentLow();
+		}
+
+		String value = source.getCurrentValue();
+
+		return value != null && value.equals(target.getCurrentValue());
+	}
+
+	/**
+	 * Keys are compared by their numeric value.
+	 *
+	 * @param key
+	 * @param otherKey
+	 * @return
+	 */
+	private int compareKeys(String key, String otherKey) {
+
+		try {
+
+			return Long.compare(Long.parseLong(key), Long.parseLong(otherKey));
+
+		} catch (NumberFormatException e) {
+
+			return new BigDecimal(key).compareTo(new BigDecimal(otherKey));
+		}
+	}
+
+	/**
+	 * @return true if a side was not ordered by the key and the chunk has to be compared by hash
+	 */
+	public boolean isOrderViolation() {
+		return orderViolation;
+	}
+
+	/**
+	 * @return the exception that stopped a fetch, or null if both sides were read
+	 */
+	public SQLException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return source rows read
+	 */
+	public long getSourceCount() {
+		return sourceCount;
+	}
+
+	/**
+	 * @return target rows read
+	 */
+	public long getTargetCount() {
+		return targetCount;
+	}
+
+	/**
+	 * @return result of the chunk compare
+	 */
+	public String getResult() {
+		return result;
+	}
+
+	/**
+	 * @return the failTuple
+	 */
+	public List<String> getFailTuple() {
+		return failTuple;
+	}
+
+	/**
+	 * @return source rows that did not match
+	 */
+	public Map<String, String> getSourceData() {
+		return sourceData;
+	}
+
+	/**
+	 * @return target rows that did not match
+	 */
+	public Map<String, String> getTargetData() {
+		return targetData;
+	}
+}
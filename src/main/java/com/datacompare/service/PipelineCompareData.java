@@ -0,0 +1,391 @@
+/**
+ * Service class to compare a chunk while it is fetched. The source and target rows are read on two threads
+ * and handed over in batches through a bounded queue to a symmetric hash join: each row probes the pending
+ * rows of the other side and a matching pair is dropped at once. Only the rows without a match so far are
+ * kept in memory, they are resolved by CompareData at the end of the chunk.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PipelineCompareData implements Runnable {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("CompareDataLog");
+
+	/** Rows handed over at once */
+	private static final int BATCH_SIZE = 1000;
+
+	/** Batches in flight, the fetching threads wait when the join falls behind */
+	private static final int QUEUE_BATCHES = 16;
+
+	/** Milliseconds a fetching thread waits for queue space before it checks for cancellation */
+	private static final long OFFER_TIMEOUT = 100;
+
+	private FetchData source;
+
+	private FetchData target;
+
+	private Executor fetchExecutor;
+
+	private volatile boolean cancelled;
+
+	private volatile SQLException failure;
+
+	private int chunkNo;
+
+	private int numberOfChunks;
+
+	private boolean rowFingerprint;
+
+	private long sourceCount;
+
+	private long targetCount;
+
+	private String result = "Completed";
+
+	private List<String> failTuple = new ArrayList<String>();
+
+	private Map<String, String> sourceData = new LinkedHashMap<String, String>();
+
+	private Map<String, String> targetData = new LinkedHashMap<String, String>();
+
+	private List<Map<String, String>> pending = new ArrayList<Map<String, String>>();
+
+	private List<RowFingerprints> pendingFingerprints = new ArrayList<RowFingerprints>();
+
+	/**
+	 *
+	 * @param source
+	 * @param target
+	 * @param fetchExecutor runs the two fetching threads
+	 * @param rowFingerprint
+	 * @param chunkNo
+	 * @param numberOfChunks
+	 */
+	public PipelineCompareData(FetchData source, FetchData target, Executor fetchExecutor, boolean rowFingerprint,
+			int chunkNo, int numberOfChunks) {
+
+		this.source = source;
+		this.target = target;
+		this.fetchExecutor = fetchExecutor;
+		this.rowFingerprint = rowFingerprint;
+		this.chunkNo = chunkNo;
+		this.numberOfChunks = numberOfChunks;
+	}
+
+	public void run() {
+
+		for (int side = 0; side < 2; side++) {
+
+			pending.add(new LinkedHashMap<String, String>());
+			pendingFingerprints.add(new RowFingerprints(16));
+		}
+
+		BlockingQueue<RowBatch> queue = new ArrayBlockingQueue<RowBatch>(QUEUE_BATCHES);
+
+		CompletableFuture.runAsync(new Producer(source, 0, queue), fetchExecutor);
+		CompletableFuture.runAsync(new Producer(target, 1, queue), fetchExecutor);
+
+		try {
+
+			int finished = 0;
+
+			while (finished < 2) {
+
+				RowBatch batch = queue.take();
+
+				if (batch.size < 0) {
+
+					finished++;
+
+				} else {
+
+					join(batch);
+				}
+			}
+
+		} catch (InterruptedException e) {
+
+			logger.error("Chunk No " + (chunkNo + 1) + " interrupted", e);
+
+			cancelled = true;
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		if (failure != null) {
+			return;
+		}
+
+		CompareData compareData = rowFingerprint
+				? new CompareData(pendingFingerprints.get(0), pendingFingerprints.get(1), chunkNo, numberOfChunks)
+				: new CompareData(pending.get(0), pending.get(1), chunkNo, numberOfChunks);
+
+		compareData.run();
+
+		result = compareData.getResult();
+		failTuple = compareData.getFailTuple();
+		sourceData = compareData.getSourceData();
+		targetData = compareData.getTargetData();
+	}
+
+	/**
+	 * Probes the pending rows of the other side with each row of the batch.
+	 *
+	 * @param batch
+	 */
+	private void join(RowBatch batch) {
+
+		int otherSide = 1 - batch.side;
+
+		if (rowFingerprint) {
+
+			RowFingerprints own = pendingFingerprints.get(batch.side);
+			RowFingerprints other = pendingFingerprints.get(otherSide);
+
+			for (int i = 0; i < batch.size; i++) {
+
+				int slot = other.indexOf(batch.keys[i]);
+
+				if (slot >= 0 && other.highAt(slot) == batch.highs[i] && other.lowAt(slot) == batch.lows[i]) {
+
+					other.remove(batch.keys[i]);
+
+				} else {
+
+					own.put(batch.keys[i], batch.highs[i], batch.lows[i]);
+				}
+			}
+
+		} else {
+
+			Map<String, String> own = pending.get(batch.side);
+			Map<String, String> other = pending.get(otherSide);
+
+			for (int i = 0; i < batch.size; i++) {
+
+				String value = batch.values[i];
+
+				if (value != null && value.equals(other.get(batch.keys[i]))) {
+
+					other.remove(batch.keys[i]);
+
+				} else {
+
+					own.put(batch.keys[i], value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the rows of one side into batches, the last batch has a negative size.
+	 */
+	private class Producer implements Runnable {
+
+		private final FetchData data;
+
+		private final int side;
+
+		private final BlockingQueue<RowBatch> queue;
+
+		Producer(FetchData data, int side, BlockingQueue<RowBatch> queue) {
+			this.data = data;
+			this.side = side;
+			this.queue = queue;
+		}
+
+		public void run() {
+
+			long count = 0;
+
+			try {
+
+				data.open();
+
+				RowBatch batch = new RowBatch(side);
+
+				while (data.next()) {
+
+					batch.add(data);
+					count++;
+
+					if (batch.size == BATCH_SIZE) {
+
+						hand(batch);
+						batch = new RowBatch(side);
+					}
+				}
+
+				if (batch.size > 0) {
+
+					hand(batch);
+				}
+
+			} catch (SQLException e) {
+
+				logger.error(e.getMessage(), e);
+
+				failure = e;
+
+			} catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+
+			} finally {
+
+				data.close();
+
+				if (side == 0) {
+					sourceCount = count;
+				} else {
+					targetCount = count;
+				}
+
+				try {
+
+					hand(new RowBatch(side, -1));
+
+				} catch (InterruptedException e) {
+
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		/**
+		 * Waits for queue space, unless the join was cancelled.
+		 *
+		 * @param batch
+		 * @throws InterruptedException
+		 */
+		private void hand(RowBatch batch) throws InterruptedException {
+
+			while (!cancelled && !queue.offer(batch, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+				// The join is behind, keep waiting
+			}
+		}
+	}
+
+	/**
+	 * Rows of one side, the row text or the fingerprint depending on the mode.
+	 */
+	private final class RowBatch {
+
+		private final int side;
+
+		private int size;
+
+		private final String[] keys;
+
+		private final String[] values;
+
+		private final long[] highs;
+
+		private final long[] lows;
+
+		RowBatch(int side) {
+
+			this.side = side;
+			this.keys = new String[BATCH_SIZE];
+			this.values = rowFingerprint ? null : new String[BATCH_SIZE];
+			this.highs = rowFingerprint ? new long[BATCH_SIZE] : null;
+			this.lows = rowFingerprint ? new long[BATCH_SIZE] : null;
+		}
+
+		private RowBatch(int side, int size) {
+
+			this.side = side;
+			this.size = size;
+			this.keys = null;
+			this.values = null;
+			this.highs = null;
+			this.lows = null;
+		}
+
+		void add(FetchData data) {
+
+			keys[size] = data.getCurrentKey();
+
+			if (rowFingerprint) {
+
+				highs[size] = data.getCurrentHigh();
+				lows[size] = data.getCurrentLow();
+
+			} else {
+
+				values[size] = data.getCurrentValue();
+			}
+
+			size++;
+		}
+	}
+
+	/**
+	 * @return the exception that stopped a fetch, or null if both sides were read
+	 */
+	public SQLException getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return source rows read
+	 */
+	public long getSourceCount() {
+		return sourceCount;
+	}
+
+	/**
+	 * @return target rows read
+	 */
+	public long getTargetCount() {
+		return targetCount;
+	}
+
+	/**
+	 * @return result of the chunk compare
+	 */
+	public String getResult() {
+		return result;
+	}
+
+	/**
+	 * @return the failTuple
+	 */
+	public List<String> getFailTuple() {
+		return failTuple;
+	}
+
+	/**
+	 * @return source rows that did not match
+	 */
+	public Map<String, String> getSourceData() {
+		return sourceData;
+	}
+
+	/**
+	 * @return target rows that did not match
+	 */
+	public Map<String, String> getTargetData() {
+		return targetData;
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * Compact chunk storage used when rows are compared by fingerprint. Each row is kept as its unique key
+ * and a 128 bit hash of the row value in primitive arrays (open addressing, linear probing) instead of
+ * the full row string.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.util.Arrays;
+
+import com.datacompare.util.Murmur3Hasher;
+
+public class RowFingerprints {
+
+	private static final float LOAD_FACTOR = 0.6f;
+
+	private String[] keys;
+
+	private long[] highs;
+
+	private long[] lows;
+
+	private int size;
+
+	private int mask;
+
+	/**
+	 *
+	 * @param expectedSize
+	 */
+	public RowFingerprints(int expectedSize) {
+
+		allocate(tableSizeFor(expectedSize));
+	}
+
+	/**
+	 * Adds the row, replacing the fingerprint of an existing key like {@link java.util.Map#put}.
+	 *
+	 * @param key
+	 * @param high
+	 * @param low
+	 */
+	public void put(String key, long high, long low) {
+
+		int slot = slotOf(key);
+
+		if (keys[slot] == null) {
+
+			keys[slot] = key;
+			size++;
+		}
+
+		highs[slot] = high;
+		lows[slot] = low;
+
+		if (size > keys.length * LOAD_FACTOR) {
+
+			resize();
+		}
+	}
+
+	/**
+	 * Removes the row. The following rows of the probe sequence are moved up, so no deleted markers are
+	 * left behind.
+	 *
+	 * @param key
+	 */
+	public void remove(String key) {
+
+		int slot = slotOf(key);
+
+		if (keys[slot] == null) {
+			return;
+		}
+
+		keys[slot] = null;
+		size--;
+
+		int next = (slot + 1) & mask;
+
+		while (keys[next] != null) {
+
+			int h = keys[next].hashCode();
+			int home = (h ^ (h >>> 16)) & mask;
+
+			// Move the row into the freed slot if the freed slot lies on its probe path
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+
+				keys[slot] = keys[next];
+				highs[slot] = highs[next];
+				lows[slot] = lows[next];
+				keys[next] = null;
+				slot = next;
+			}
+
+			next = (next + 1) & mask;
+		}
+	}
+
+	/**
+	 *
+	 * @param key
+	 * @return slot of the key or -1
+	 */
+	public int indexOf(String key) {
+
+		int slot = slotOf(key);
+
+		return (keys[slot] != null) ? slot : -1;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @param other
+	 * @param otherSlot
+	 * @return
+	 */
+	public boolean sameValue(int slot, RowFingerprints other, int otherSlot) {
+
+		return highs[slot] == other.highs[otherSlot] && lows[slot] == other.lows[otherSlot];
+	}
+
+	/**
+	 * @return number of slots, occupied slots have a non null {@link #keyAt(int)}
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return
+	 */
+	public String keyAt(int slot) {
+		return keys[slot];
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return
+	 */
+	public long highAt(int slot) {
+		return highs[slot];
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return
+	 */
+	public long lowAt(int slot) {
+		return lows[slot];
+	}
+
+	/**
+	 *
+	 * @param slot
+	 * @return
+	 */
+	public String hexAt(int slot) {
+		return Murmur3Hasher.toHex(highs[slot], lows[slot]);
+	}
+
+	/**
+	 * @return the size
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 */
+	public void clear() {
+
+		Arrays.fill(keys, null);
+		size = 0;
+	}
+
+	private int slotOf(String key) {
+
+		int h = key.hashCode();
+		int slot = (h ^ (h >>> 16)) & mask;
+
+		while (keys[slot] != null && !keys[slot].equals(key)) {
+
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private void resize() {
+
+		String[] oldKeys = keys;
+		long[] oldHighs = highs;
+		long[] oldLows = lows;
+
+		allocate(oldKeys.length * 2);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+
+			if (oldKeys[i] != null) {
+
+				int slot = slotOf(oldKeys[i]);
+
+				keys[slot] = oldKeys[i];
+				highs[slot] = oldHighs[i];
+				lows[slot] = oldLows[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+
+		keys = new String[capacity];
+		highs = new long[capacity];
+		lows = new long[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int tableSizeFor(int expectedSize) {
+
+		int capacity = 16;
+
+		while (capacity * LOAD_FACTOR < expectedSize && capacity < (1 << 30)) {
+
+			capacity <<= 1;
+		}
+
+		return capacity;
+	}
+}
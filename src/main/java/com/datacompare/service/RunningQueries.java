@@ -0,0 +1,127 @@
+/**
+ * Service class to keep the queries of a chunk attempt or of the planning of a table that run outside of
+ * FetchData, like the checksum queries and the chunk plan queries. The queries are created with the query
+ * timeout, and cancelling cancels the ones still open. A query created after the cancel fails right away.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class RunningQueries {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("RunningQueriesLog");
+
+	private int queryTimeout;
+
+	private volatile boolean cancelled;
+
+	private Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+	/**
+	 *
+	 * @param queryTimeout seconds, 0 for no timeout
+	 */
+	public RunningQueries(int queryTimeout) {
+
+		this.queryTimeout = queryTimeout;
+	}
+
+	/**
+	 *
+	 * @param connection
+	 * @return statement with the query timeout, cancelled with the others
+	 * @throws SQLException if the queries were cancelled
+	 */
+	public Statement createStatement(Connection connection) throws SQLException {
+
+		if (cancelled) {
+			throw new SQLException("Query cancelled");
+		}
+
+		Statement statement = connection.createStatement();
+
+		if (queryTimeout > 0) {
+			statement.setQueryTimeout(queryTimeout);
+		}
+
+		statements.add(statement);
+
+		// A cancel between the check and the add would not reach the statement
+		if (cancelled) {
+
+			statements.remove(statement);
+			statement.close();
+
+			throw new SQLException("Query cancelled");
+		}
+
+		return statement;
+	}
+
+	/**
+	 * Cancels the open statements, later statements fail when they are created.
+	 */
+	public void cancel() {
+
+		cancelled = true;
+
+		for (Statement statement : statements) {
+
+			statements.remove(statement);
+
+			try {
+
+				if (!statement.isClosed()) {
+					statement.cancel();
+				}
+
+			} catch (SQLException e) {
+
+				logger.error(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * @return true while a statement is open
+	 */
+	public boolean isRunning() {
+
+		for (Statement statement : statements) {
+
+			try {
+
+				if (!statement.isClosed()) {
+					return true;
+				}
+
+			} catch (SQLException e) {
+
+				logger.error(e.getMessage(), e);
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return true once the queries were cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
@@ -0,0 +1,569 @@
+/**
+ * Service class to plan the chunk boundaries of a table with a numeric key without sorting the whole
+ * table. The distribution of the key is taken from the optimizer statistics histogram when the statistics
+ * are fresh, otherwise from a block sample of the keys. The boundaries are interpolated from the
+ * distribution, so each chunk holds about the same number of rows.
+ *
+ *
+ * @author      Harnath Valeti
+ * @author      Madhu Athinarapu
+ * @version     1.0
+ * @since       1.0
+ */
+package com.datacompare.service;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datacompare.util.JdbcUtil;
+
+public class SampleChunkPlanner {
+
+	/** */
+	public Logger logger = LoggerFactory.getLogger("FetchMetadataLog");
+
+	/** Sampled keys per planned chunk */
+	static final long SAMPLE_KEYS_PER_CHUNK = 20;
+
+	/** Most keys sampled for one table */
+	static final long MAX_SAMPLE_KEYS = 1000000;
+
+	/** Histogram endpoints needed to plan from the statistics */
+	private static final int MIN_HISTOGRAM_POINTS = 10;
+
+	/** Share of modified rows from which SQL Server statistics are stale */
+	private static final double STALE_MODIFICATIONS = 0.1;
+
+	private Connection connection;
+
+	private String dbType;
+
+	private String schemaName;
+
+	private String tableName;
+
+	private String keyColumn;
+
+	private String filter;
+
+	private int statsId;
+
+	private RunningQueries queries;
+
+	private long rowCount;
+
+	private long[] boundaries = new long[0];
+
+	/**
+	 *
+	 * @param connection
+	 * @param dbType ORACLE or SQLSERVER
+	 * @param schemaName
+	 * @param tableName
+	 * @param keyColumn first column of the primary key
+	 * @param queries queries of the table the planning queries are created with
+	 */
+	public SampleChunkPlanner(Connection connection, String dbType, String schemaName, String tableName,
+			String keyColumn, RunningQueries queries) {
+
+		this.connection = connection;
+		this.dbType = dbType;
+		this.schemaName = schemaName;
+		this.tableName = tableName;
+		this.keyColumn = keyColumn;
+		this.queries = queries;
+	}
+
+	/**
+	 * Plans the boundaries of the chunks.
+	 *
+	 * @param fetchSize rows per chunk
+	 * @return false if the key is not an integer or the database has no sampling, plan with ntile then
+	 * @throws SQLException
+	 */
+	public boolean plan(int fetchSize) throws SQLException {
+
+		if (!"ORACLE".equals(dbType) && !"SQLSERVER".equals(dbType)) {
+			return false;
+		}
+
+		long[] range = keyRange();
+
+		if (range == null) {
+			return false;
+		}
+
+		if (range.length == 0) {
+
+			// Empty table
+			rowCount = 0;
+			boundaries = new long[0];
+
+			return true;
+		}
+
+		long minKey = range[0];
+		long maxKey = range[1];
+
+		List<double[]> distribution = null;
+
+		// The statistics describe the whole table, a filtered table is sampled
+		Long statisticsRows = (filter == null) ? statisticsRowCount() : null;
+
+		if (statisticsRows != null) {
+
+			distribution = histogram(minKey);
+		}
+
+		if (distribution != null) {
+
+			rowCount = statisticsRows.longValue();
+
+			logger.info("Chunks of " + schemaName + "." + tableName + " planned from the statistics histogram");
+
+		} else {
+
+			distribution = sample(minKey, fetchSize);
+
+			if (distribution == null) {
+				return false;
+			}
+
+			logger.info("Chunks of " + schemaName + "." + tableName + " planned from " + distribution.size()
+					+ " sampled keys");
+		}
+
+		int chunkCount = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (rowCount + fetchSize - 1) / fetchSize));
+
+		boundaries = interpolate(distribution, minKey, maxKey, chunkCount);
+
+		return true;
+	}
+
+	/**
+	 * @return min and max key, an empty array for an empty table, null if the key is not an integer
+	 * @throws SQLException
+	 */
+	private long[] keyRange() throws SQLException {
+
+		String sql = "SELECT min(" + keyColumn + ") AS min_key, max(" + keyColumn + ") AS max_key FROM "
+				+ schemaName + "." + tableName + where();
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+
+			stmt = queries.createStatement(connection);
+			rs = stmt.executeQuery(sql);
+
+			ResultSetMetaData metaData = rs.getMetaData();
+
+			if (!isIntegerType(metaData.getColumnType(1), metaData.getScale(1)) || !rs.next()) {
+				return null;
+			}
+
+			long minKey = rs.getLong("min_key");
+
+			if (rs.wasNull()) {
+				return new long[0];
+			}
+
+			return new long[] { minKey, rs.getLong("max_key") };
+
+		} finally {
+
+			close(rs, stmt);
+		}
+	}
+
+	/**
+	 * @return row count of the fresh statistics of the key, null if there are none
+	 */
+	private Long statisticsRowCount() {
+
+		String sql;
+
+		if ("ORACLE".equals(dbType)) {
+
+			sql = "SELECT num_rows AS stats_rows, 0 AS modified_rows, 0 AS stats_id FROM all_tab_statistics"
+					+ " WHERE owner = '" + literal(schemaName) + "' AND table_name = '" + literal(tableName)
+					+ "' AND object_type = 'TABLE' AND stale_stats = 'NO' AND num_rows IS NOT NULL";
+
+		} else {
+
+			sql = "SELECT TOP 1 p.rows AS stats_rows, p.modification_counter AS modified_rows, s.stats_id"
+					+ " FROM sys.stats s"
+					+ " JOIN sys.stats_columns sc ON sc.object_id = s.object_id AND sc.stats_id = s.stats_id"
+					+ " AND sc.stats_column_id = 1"
+					+ " JOIN sys.columns c ON c.object_id = sc.object_id AND c.column_id = sc.column_id"
+					+ " CROSS APPLY sys.dm_db_stats_properties(s.object_id, s.stats_id) p"
+					+ " WHERE s.object_id = OBJECT_ID('" + literal(schemaName + "." + tableName) + "')"
+					+ " AND c.name = '" + literal(keyColumn) + "' ORDER BY p.rows_sampled DESC";
+		}
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+
+			stmt = queries.createStatement(connection);
+			rs = stmt.executeQuery(sql);
+
+			if (rs.next()) {
+
+				long rows = rs.getLong("stats_rows");
+				long modifiedRows = rs.getLong("modified_rows");
+
+				if (rows > 0 && modifiedRows <= rows * STALE_MODIFICATIONS) {
+
+					statsId = rs.getInt("stats_id");
+					return Long.valueOf(rows);
+				}
+			}
+
+		} catch (SQLException e) {
+
+			logger.info("Statistics of " + schemaName + "." + tableName + " not readable: " + e.getMessage());
+
+		} finally {
+
+			close(rs, stmt);
+		}
+
+		return null;
+	}
+
+	/**
+	 *
+	 * @param minKey
+	 * @return keys with the share of the rows up to them, null if the key has no usable histogram
+	 */
+	private List<double[]> histogram(long minKey) {
+
+		String sql;
+
+		if ("ORACLE".equals(dbType)) {
+
+			sql = "SELECT endpoint_value AS high_key, endpoint_number AS cumulative_rows FROM all_tab_histograms"
+					+ " WHERE owner = '" + literal(schemaName) + "' AND table_name = '" + literal(tableName)
+					+ "' AND column_name = '" + literal(keyColumn) + "' ORDER BY endpoint_number";
+
+		} else {
+
+			sql = "SELECT CAST(range_high_key AS BIGINT) AS high_key, range_rows + equal_rows AS step_rows"
+					+ " FROM sys.dm_db_stats_histogram(OBJECT_ID('" + literal(schemaName + "." + tableName) + "'), "
+					+ statsId + ") ORDER BY step_number";
+		}
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		List<double[]> points = new ArrayList<double[]>();
+
+		try {
+
+			stmt = queries.createStatement(connection);
+			rs = stmt.executeQuery(sql);
+
+			double cumulative = 0;
+
+			while (rs.next()) {
+
+				double highKey = rs.getDouble("high_key");
+
+				// Oracle counts up to each endpoint, SQL Server per step
+				cumulative = "ORACLE".equals(dbType) ? rs.getDouble("cumulative_rows")
+						: cumulative + rs.getDouble("step_rows");
+
+				points.add(new double[] { highKey, cumulative });
+			}
+
+		} catch (SQLException e) {
+
+			logger.info("Histogram of " + schemaName + "." + tableName + " not readable: " + e.getMessage());
+			return null;
+
+		} finally {
+
+			close(rs, stmt);
+		}
+
+		if (points.size() < MIN_HISTOGRAM_POINTS || cumulative(points) <= 0) {
+			return null;
+		}
+
+		double total = cumulative(points);
+
+		List<double[]> distribution = new ArrayList<double[]>();
+
+		distribution.add(new double[] { minKey, 0 });
+
+		for (double[] point : points) {
+
+			distribution.add(new double[] { point[0], point[1] / total });
+		}
+
+		return distribution;
+	}
+
+	/**
+	 * Samples the keys by blocks and estimates the row count from the sample.
+	 *
+	 * @param minKey
+	 * @param fetchSize
+	 * @return sampled keys with the share of the rows up to them, null if nothing was sampled
+	 * @throws SQLException
+	 */
+	private List<double[]> sample(long minKey, int fetchSize) throws SQLException {
+
+		long estimatedRows = estimatedRowCount();
+
+		long sampleKeys = Math.min(MAX_SAMPLE_KEYS, Math.max(1, estimatedRows / fetchSize) * SAMPLE_KEYS_PER_CHUNK);
+
+		double percent = (estimatedRows > 0) ? 100.0 * sampleKeys / estimatedRows : 100;
+
+		StringBuilder sql = new StringBuilder();
+
+		sql.append("SELECT ").append(keyColumn).append(" AS sample_key FROM ").append(schemaName).append(".")
+				.append(tableName);
+
+		if (percent < 100) {
+
+			String samplePercent = String.format(Locale.ROOT, "%.6f", Math.max(0.000001, percent));
+
+			sql.append("ORACLE".equals(dbType) ? " SAMPLE BLOCK (" + samplePercent + ")"
+					: " TABLESAMPLE (" + samplePercent + " PERCENT)");
+		}
+
+		sql.append(where());
+
+		logger.info("Sample chunk keys SQL Query: " + sql);
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		long[] keys = new long[1024];
+		int size = 0;
+
+		try {
+
+			stmt = queries.createStatement(connection);
+			stmt.setFetchSize(10000);
+
+			rs = stmt.executeQuery(sql.toString());
+
+			while (rs.next()) {
+
+				if (size == keys.length) {
+					keys = Arrays.copyOf(keys, size * 2);
+				}
+
+				keys[size++] = rs.getLong(1);
+			}
+
+		} finally {
+
+			close(rs, stmt);
+		}
+
+		if (size == 0) {
+			return null;
+		}
+
+		rowCount = (percent < 100) ? Math.round(size * 100.0 / percent) : size;
+
+		Arrays.sort(keys, 0, size);
+
+		List<double[]> distribution = new ArrayList<double[]>();
+
+		distribution.add(new double[] { minKey, 0 });
+
+		for (int i = 0; i < size; i++) {
+
+			distribution.add(new double[] { keys[i], (i + 1.0) / size });
+		}
+
+		return distribution;
+	}
+
+	/**
+	 * @return row count known to the database without counting, possibly stale
+	 * @throws SQLException
+	 */
+	long estimatedRowCount() throws SQLException {
+
+		String sql = "ORACLE".equals(dbType)
+				? "SELECT num_rows AS table_rows FROM all_tables WHERE owner = '" + literal(schemaName)
+						+ "' AND table_name = '" + literal(tableName) + "'"
+				: "SELECT SUM(rows) AS table_rows FROM sys.partitions WHERE object_id = OBJECT_ID('"
+						+ literal(schemaName + "." + tableName) + "') AND index_id IN (0, 1)";
+
+		Statement stmt = null;
+		ResultSet rs = null;
+
+		try {
+
+			stmt = queries.createStatement(connection);
+			rs = stmt.executeQuery(sql);
+
+			if (rs.next()) {
+
+				long rows = rs.getLong("table_rows");
+
+				if (!rs.wasNull() && rows > 0) {
+					return rows;
+				}
+			}
+
+		} finally {
+
+			close(rs, stmt);
+		}
+
+		// Never analyzed, count the rows
+		String countSql = "SELECT count(*) AS table_rows FROM " + schemaName + "." + tableName;
+
+		try {
+
+			stmt = queries.createStatement(connection);
+			rs = stmt.executeQuery(countSql);
+
+			return rs.next() ? rs.getLong("table_rows") : 0;
+
+		} finally {
+
+			close(rs, stmt);
+		}
+	}
+
+	/**
+	 * Reads the boundaries of equal shares of the rows from the distribution, linear between its points.
+	 *
+	 * @param distribution keys with the share of the rows up to them, ordered
+	 * @param minKey
+	 * @param maxKey
+	 * @param chunkCount
+	 * @return ascending boundaries from the min to the max key
+	 */
+	static long[] interpolate(List<double[]> distribution, long minKey, long maxKey, int chunkCount) {
+
+		long[] planned = new long[chunkCount + 1];
+		int size = 0;
+
+		planned[size++] = minKey;
+
+		int point = 1;
+
+		for (int i = 1; i < chunkCount; i++) {
+
+			double share = (double) i / chunkCount;
+
+			while (point < distribution.size() - 1 && distribution.get(point)[1] < share) {
+				point++;
+			}
+
+			double[] low = distribution.get(point - 1);
+			double[] high = distribution.get(Math.min(point, distribution.size() - 1));
+
+			double key = (high[1] > low[1]) ? low[0] + (high[0] - low[0]) * (share - low[1]) / (high[1] - low[1])
+					: high[0];
+
+			long boundary = Math.min(maxKey, (long) Math.floor(key));
+
+			if (boundary > planned[size - 1] && boundary < maxKey) {
+				planned[size++] = boundary;
+			}
+		}
+
+		if (maxKey > planned[size - 1] || size == 1) {
+			planned[size++] = maxKey;
+		}
+
+		return Arrays.copyOf(planned, size);
+	}
+
+	/**
+	 * @return where clause of the filter, empty without a filter
+	 */
+	private String where() {
+
+		return (filter != null) ? " WHERE " + filter : "";
+	}
+
+	private static double cumulative(List<double[]> points) {
+
+		return points.get(points.size() - 1)[1];
+	}
+
+	private static boolean isIntegerType(int columnType, int scale) {
+
+		switch (columnType) {
+
+		case Types.TINYINT:
+		case Types.SMALLINT:
+		case Types.INTEGER:
+		case Types.BIGINT:
+
+			return true;
+
+		case Types.NUMERIC:
+		case Types.DECIMAL:
+
+			return scale <= 0;
+
+		default:
+
+			return false;
+		}
+	}
+
+	private static String literal(String value) {
+
+		return value.replace("'", "''");
+	}
+
+	private static void close(ResultSet rs, Statement stmt) {
+
+		JdbcUtil jdbcUtil = new JdbcUtil();
+
+		jdbcUtil.closeResultSet(rs);
+		jdbcUtil.closeStatement(stmt);
+	}
+
+	/**
+	 * The keys are planned over the rows of the filter only. The row count is then estimated from the share
+	 * of the sampled blocks, the rows of the filter in them are counted.
+	 *
+	 * @param filter Sql filter of the chunks, null for the whole table
+	 */
+	public void setFilter(String filter) {
+		this.filter = filter;
+	}
+
+	/**
+	 * @return the row count of the table, estimated unless it was counted
+	 */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @return ascending chunk boundaries, chunk i holds the keys above boundary i up to boundary i + 1, the
+	 *         first chunk includes the min key
+	 */
+	public long[] getBoundaries() {
+		return boundaries;
+	}
+}
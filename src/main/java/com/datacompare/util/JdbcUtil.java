@@ -3,6 +3,8 @@ package com.datacompare.util;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
 import java.sql.Statement;
 
 import org.slf4j.Logger;
@@ -91,4 +93,41 @@ public class JdbcUtil {
 			}
 		}
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * Connection losses, deadlocks, resource shortages and timeouts go away when the statement is run
+	 * again, unlike errors in the statement or the data.
+	 * 
+	 * @param e
+	 * @return true if an SQLException in the causes of the exception is transient
+	 */
+	public boolean isTransient(Throwable e) {
+		
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			
+			if (cause instanceof SQLTransientException || cause instanceof SQLRecoverableException) {
+				
+				return true;
+			}
+			
+			if (cause instanceof SQLException) {
+				
+				String state = ((SQLException) cause).getSQLState();
+				
+				// Connection exception, transaction rollback, insufficient resources, operator intervention,
+				// statement cancelled on timeout
+				if (state != null && (state.startsWith("08") || state.startsWith("40") || state.startsWith("53")
+						|| state.startsWith("57P") || "57014".equals(state) || "HYT00".equals(state))) {
+					
+					return true;
+				}
+			}
+			
+			if (cause.getCause() == cause) {
+				break;
+			}
+		}
+		
+		return false;
+	}
+}
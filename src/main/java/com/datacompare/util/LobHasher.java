@@ -0,0 +1,194 @@
+package com.datacompare.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes large objects from their streams through fixed size buffers, so a LOB is never loaded on the heap
+ * as a whole. Character LOBs are hashed as UTF-8. The hash is returned hex encoded. An instance reuses its
+ * buffers and is not thread safe.
+ */
+public class LobHasher {
+
+	public static final String MD5 = "MD5";
+
+	public static final String MURMUR3 = "MURMUR3";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final MessageDigest digest;
+
+	private final Murmur3Hasher murmur3;
+
+	private final byte[] bytes = new byte[BUFFER_SIZE];
+
+	private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+	private final ByteBuffer encoded = ByteBuffer.wrap(bytes);
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	/**
+	 *
+	 * @param algorithm MD5 or MURMUR3
+	 * @throws NoSuchAlgorithmException
+	 */
+	public LobHasher(String algorithm) throws NoSuchAlgorithmException {
+
+		if (MURMUR3.equalsIgnoreCase(algorithm)) {
+
+			this.digest = null;
+			this.murmur3 = new Murmur3Hasher();
+
+		} else if (algorithm == null || MD5.equalsIgnoreCase(algorithm)) {
+
+			this.digest = MessageDigest.getInstance(MD5);
+			this.murmur3 = null;
+
+		} else {
+
+			throw new NoSuchAlgorithmException(algorithm + " not supported for LOB hashing.");
+		}
+	}
+
+	/**
+	 *
+	 * @param in
+	 * @return hex hash, or null when the stream is null or empty
+	 * @throws IOException
+	 */
+	public String hash(InputStream in) throws IOException {
+
+		if (in == null) {
+			return null;
+		}
+
+		try {
+
+			reset();
+
+			long length = 0;
+			int read;
+
+			while ((read = in.read(bytes, 0, BUFFER_SIZE)) != -1) {
+
+				update(bytes, read);
+				length += read;
+			}
+
+			return (length > 0) ? finish() : null;
+
+		} finally {
+
+			in.close();
+		}
+	}
+
+	/**
+	 *
+	 * @param in
+	 * @return hex hash of the UTF-8 encoded characters, or null when the reader is null or empty
+	 * @throws IOException
+	 */
+	public String hash(Reader in) throws IOException {
+
+		if (in == null) {
+			return null;
+		}
+
+		try {
+
+			reset();
+			encoder.reset();
+			chars.clear();
+
+			long length = 0;
+			int read;
+
+			while ((read = in.read(chars)) != -1) {
+
+				length += read;
+
+				chars.flip();
+				encode(chars, false);
+				chars.compact();
+			}
+
+			chars.flip();
+			encode(chars, true);
+
+			encoded.clear();
+			encoder.flush(encoded);
+			update(bytes, encoded.position());
+
+			return (length > 0) ? finish() : null;
+
+		} finally {
+
+			in.close();
+		}
+	}
+
+	private void encode(CharBuffer input, boolean endOfInput) {
+
+		CoderResult result;
+
+		do {
+
+			encoded.clear();
+			result = encoder.encode(input, encoded, endOfInput);
+			update(bytes, encoded.position());
+
+		} while (result.isOverflow());
+	}
+
+	private void reset() {
+
+		if (digest != null) {
+			digest.reset();
+		} else {
+			murmur3.reset();
+		}
+	}
+
+	private void update(byte[] data, int length) {
+
+		if (digest != null) {
+			digest.update(data, 0, length);
+		} else {
+			murmur3.putBytes(data, 0, length);
+		}
+	}
+
+	private String finish() {
+
+		if (digest == null) {
+
+			murmur3.finish();
+			return murmur3.toHex();
+		}
+
+		byte[] hash = digest.digest();
+		char[] hex = new char[hash.length * 2];
+
+		for (int i = 0; i < hash.length; i++) {
+
+			hex[i * 2] = HEX[(hash[i] >> 4) & 0x0F];
+			hex[i * 2 + 1] = HEX[hash[i] & 0x0F];
+		}
+
+		return new String(hex);
+	}
+}
@@ -0,0 +1,291 @@
+package com.datacompare.util;
+
+/**
+ * Incremental MurmurHash3 x64 128 bit hasher. Input is consumed in 16 byte blocks so values can be fed
+ * one by one without building an intermediate buffer. An instance is reused through {@link #reset()} and
+ * is not thread safe.
+ */
+public class Murmur3Hasher {
+
+	private static final long C1 = 0x87c37b91114253d5L;
+
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private final byte[] block = new byte[16];
+
+	private int blockLength;
+
+	private long length;
+
+	private long h1;
+
+	private long h2;
+
+	/**
+	 *
+	 */
+	public Murmur3Hasher() {
+
+		reset();
+	}
+
+	/**
+	 * Starts a new hash.
+	 */
+	public void reset() {
+
+		h1 = 0;
+		h2 = 0;
+		blockLength = 0;
+		length = 0;
+	}
+
+	/**
+	 *
+	 * @param b
+	 */
+	public void putByte(int b) {
+
+		block[blockLength++] = (byte) b;
+		length++;
+
+		if (blockLength == 16) {
+
+			mixBlock(getLong(block, 0), getLong(block, 8));
+			blockLength = 0;
+		}
+	}
+
+	/**
+	 *
+	 * @param bytes
+	 * @param offset
+	 * @param len
+	 */
+	public void putBytes(byte[] bytes, int offset, int len) {
+
+		int i = offset;
+		int end = offset + len;
+
+		while (blockLength != 0 && i < end) {
+
+			putByte(bytes[i++]);
+		}
+
+		while (end - i >= 16) {
+
+			mixBlock(getLong(bytes, i), getLong(bytes, i + 8));
+			length += 16;
+			i += 16;
+		}
+
+		while (i < end) {
+
+			putByte(bytes[i++]);
+		}
+	}
+
+	/**
+	 * Little endian, the same byte order the blocks are read in.
+	 *
+	 * @param value
+	 */
+	public void putLong(long value) {
+
+		for (int i = 0; i < 8; i++) {
+
+			putByte((int) (value >>> (i * 8)));
+		}
+	}
+
+	/**
+	 * Feeds the UTF-8 encoding of the characters.
+	 *
+	 * @param chars
+	 */
+	public void putUtf8(CharSequence chars) {
+
+		int len = chars.length();
+
+		for (int i = 0; i < len; i++) {
+
+			char c = chars.charAt(i);
+
+			if (c < 0x80) {
+
+				putByte(c);
+
+			} else if (c < 0x800) {
+
+				putByte(0xC0 | (c >> 6));
+				putByte(0x80 | (c & 0x3F));
+
+			} else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(chars.charAt(i + 1))) {
+
+				int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+
+				putByte(0xF0 | (codePoint >> 18));
+				putByte(0x80 | ((codePoint >> 12) & 0x3F));
+				putByte(0x80 | ((codePoint >> 6) & 0x3F));
+				putByte(0x80 | (codePoint & 0x3F));
+
+			} else {
+
+				putByte(0xE0 | (c >> 12));
+				putByte(0x80 | ((c >> 6) & 0x3F));
+				putByte(0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	/**
+	 * Completes the hash, the result is available from {@link #getHigh()} and {@link #getLow()}.
+	 */
+	public void finish() {
+
+		long k1 = 0;
+		long k2 = 0;
+
+		for (int i = blockLength - 1; i >= 8; i--) {
+
+			k2 = (k2 << 8) | (block[i] & 0xFFL);
+		}
+
+		for (int i = Math.min(blockLength, 8) - 1; i >= 0; i--) {
+
+			k1 = (k1 << 8) | (block[i] & 0xFFL);
+		}
+
+		if (blockLength > 8) {
+
+			k2 *= C2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= C1;
+			h2 ^= k2;
+		}
+
+		if (blockLength > 0) {
+
+			k1 *= C1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= C2;
+			h1 ^= k1;
+		}
+
+		h1 ^= length;
+		h2 ^= length;
+
+		h1 += h2;
+		h2 += h1;
+
+		h1 = fmix(h1);
+		h2 = fmix(h2);
+
+		h1 += h2;
+		h2 += h1;
+
+		blockLength = 0;
+	}
+
+	/**
+	 * @return number of bytes put since the last reset
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the first 64 bits of the finished hash
+	 */
+	public long getHigh() {
+		return h1;
+	}
+
+	/**
+	 * @return the second 64 bits of the finished hash
+	 */
+	public long getLow() {
+		return h2;
+	}
+
+	/**
+	 * Hex string of the finished hash in the canonical little endian byte order.
+	 *
+	 * @return
+	 */
+	public String toHex() {
+
+		return toHex(h1, h2);
+	}
+
+	/**
+	 *
+	 * @param high
+	 * @param low
+	 * @return
+	 */
+	public static String toHex(long high, long low) {
+
+		char[] hex = new char[32];
+
+		appendHex(high, hex, 0);
+		appendHex(low, hex, 16);
+
+		return new String(hex);
+	}
+
+	private static void appendHex(long value, char[] hex, int offset) {
+
+		for (int i = 0; i < 8; i++) {
+
+			int b = (int) (value >>> (i * 8)) & 0xFF;
+
+			hex[offset + i * 2] = Character.forDigit(b >>> 4, 16);
+			hex[offset + i * 2 + 1] = Character.forDigit(b & 0x0F, 16);
+		}
+	}
+
+	private void mixBlock(long k1, long k2) {
+
+		k1 *= C1;
+		k1 = Long.rotateLeft(k1, 31);
+		k1 *= C2;
+		h1 ^= k1;
+
+		h1 = Long.rotateLeft(h1, 27);
+		h1 += h2;
+		h1 = h1 * 5 + 0x52dce729;
+
+		k2 *= C2;
+		k2 = Long.rotateLeft(k2, 33);
+		k2 *= C1;
+		h2 ^= k2;
+
+		h2 = Long.rotateLeft(h2, 31);
+		h2 += h1;
+		h2 = h2 * 5 + 0x38495ab5;
+	}
+
+	private static long getLong(byte[] bytes, int offset) {
+
+		return (bytes[offset] & 0xFFL)
+				| ((bytes[offset + 1] & 0xFFL) << 8)
+				| ((bytes[offset + 2] & 0xFFL) << 16)
+				| ((bytes[offset + 3] & 0xFFL) << 24)
+				| ((bytes[offset + 4] & 0xFFL) << 32)
+				| ((bytes[offset + 5] & 0xFFL) << 40)
+				| ((bytes[offset + 6] & 0xFFL) << 48)
+				| ((bytes[offset + 7] & 0xFFL) << 56);
+	}
+
+	private static long fmix(long k) {
+
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+
+		return k;
+	}
+}
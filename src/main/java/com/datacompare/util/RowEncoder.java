@@ -0,0 +1,457 @@
+package com.datacompare.util;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+/**
+ * Canonical binary row encoding fed straight into a {@link Murmur3Hasher}. Every column value is written as
+ * a tagged value (long, scaled decimal, boolean, epoch micros timestamp or UTF-8 text) using reusable
+ * buffers, so no row string is built.
+ *
+ * The encoding of a value is a function of the text the row string comparison would produce for it: text
+ * values are whitespace normalized the same way and text that reads as a long, decimal, boolean or date is
+ * written with the typed tag. Rows that compare equal as strings therefore get the same fingerprint on
+ * both databases, whichever JDBC getter produced the value. An instance is not thread safe.
+ */
+public class RowEncoder {
+
+	private static final int TAG_LONG = 1;
+
+	private static final int TAG_DECIMAL = 2;
+
+	private static final int TAG_BOOLEAN = 3;
+
+	private static final int TAG_TIMESTAMP = 4;
+
+	private static final int TAG_TEXT = 5;
+
+	/** Never part of UTF-8, ends a text value */
+	private static final int TEXT_END = 0xFF;
+
+	private static final int PRECISION_DAY = 1;
+
+	private static final int PRECISION_SECOND = 2;
+
+	private static final long MICROS_PER_SECOND = 1000000L;
+
+	private static final double MAX_FAST_DECIMAL = (double) (1L << 40);
+
+	private static final double TIE_MARGIN = 1e-3;
+
+	private static final double[] POWERS_OF_TEN = new double[19];
+
+	static {
+
+		POWERS_OF_TEN[0] = 1;
+
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final Murmur3Hasher hasher;
+
+	private final StringBuilder text = new StringBuilder();
+
+	/**
+	 *
+	 */
+	public RowEncoder() {
+
+		this(new Murmur3Hasher());
+	}
+
+	/**
+	 *
+	 * @param hasher
+	 */
+	public RowEncoder(Murmur3Hasher hasher) {
+
+		this.hasher = hasher;
+	}
+
+	/**
+	 * Starts a new row.
+	 */
+	public void startRow() {
+
+		hasher.reset();
+	}
+
+	/**
+	 * Completes the row, the fingerprint is available from {@link #getHasher()}.
+	 */
+	public void finishRow() {
+
+		hasher.finish();
+	}
+
+	/**
+	 * @return the hasher
+	 */
+	public Murmur3Hasher getHasher() {
+		return hasher;
+	}
+
+	/**
+	 *
+	 * @param value
+	 */
+	public void putLong(long value) {
+
+		hasher.putByte(TAG_LONG);
+		hasher.putLong(value);
+	}
+
+	/**
+	 *
+	 * @param value
+	 */
+	public void putBoolean(boolean value) {
+
+		hasher.putByte(TAG_BOOLEAN);
+		hasher.putByte(value ? 1 : 0);
+	}
+
+	/**
+	 * Encodes the value as formatted by the decimal format. Values well away from a rounding tie are scaled
+	 * directly, the others are formatted.
+	 *
+	 * @param value
+	 * @param decimalFormat
+	 * @param scale number of decimals from {@link #decimalScale(DecimalFormat)}, or -1 to always format
+	 */
+	public void putDecimal(double value, DecimalFormat decimalFormat, int scale) {
+
+		if (scale > 0 && scale < POWERS_OF_TEN.length - 1) {
+
+			double scaled = Math.abs(value) * POWERS_OF_TEN[scale];
+
+			if (scaled < MAX_FAST_DECIMAL) {
+
+				double rounded = Math.rint(scaled);
+
+				if (Math.abs(Math.abs(scaled - rounded) - 0.5) > TIE_MARGIN) {
+
+					// DecimalFormat keeps the sign of negative values rounding to zero, like -0.00
+					writeDecimal(scale, Double.doubleToRawLongBits(value) < 0, (long) rounded);
+					return;
+				}
+			}
+		}
+
+		putText(decimalFormat.format(value));
+	}
+
+	/**
+	 * Encodes a timestamp by the wall clock fields of the calendar, as the date format of the string
+	 * comparison would print them.
+	 *
+	 * @param calendar calendar of the date format set to the value
+	 * @param dateOnly
+	 * @return false if the fields have no canonical encoding and the formatted text has to be used
+	 */
+	public boolean putTimestamp(Calendar calendar, boolean dateOnly) {
+
+		if (!(calendar instanceof GregorianCalendar)) {
+			return false;
+		}
+
+		int precision = dateOnly ? PRECISION_DAY : PRECISION_SECOND;
+
+		return writeTimestamp(precision, calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1,
+				calendar.get(Calendar.DAY_OF_MONTH), dateOnly ? 0 : calendar.get(Calendar.HOUR_OF_DAY),
+				dateOnly ? 0 : calendar.get(Calendar.MINUTE), dateOnly ? 0 : calendar.get(Calendar.SECOND));
+	}
+
+	/**
+	 * Encodes the text, or the default value when it is null, "null" or blank.
+	 *
+	 * @param value
+	 * @param defaultValue
+	 */
+	public void putText(String value, String defaultValue) {
+
+		putText((value != null && !value.equals("null") && !isBlank(value)) ? value : defaultValue);
+	}
+
+	/**
+	 * Encodes the whitespace normalized text. Text that reads as a long, decimal, boolean or date gets the
+	 * typed encoding.
+	 *
+	 * @param value
+	 */
+	public void putText(CharSequence value) {
+
+		normalize(value);
+
+		if (!putTyped(text)) {
+
+			hasher.putByte(TAG_TEXT);
+			hasher.putUtf8(text);
+			hasher.putByte(TEXT_END);
+		}
+	}
+
+	/**
+	 * Number of decimals the decimal format always prints, or -1 if its output is not a plain
+	 * [-]digits.digits number.
+	 *
+	 * @param decimalFormat
+	 * @return
+	 */
+	public static int decimalScale(DecimalFormat decimalFormat) {
+
+		DecimalFormatSymbols symbols = decimalFormat.getDecimalFormatSymbols();
+
+		boolean plain = !decimalFormat.isGroupingUsed() && decimalFormat.getMinimumIntegerDigits() == 1
+				&& decimalFormat.getMinimumFractionDigits() == decimalFormat.getMaximumFractionDigits()
+				&& decimalFormat.getMultiplier() == 1 && "".equals(decimalFormat.getPositivePrefix())
+				&& "".equals(decimalFormat.getPositiveSuffix()) && "-".equals(decimalFormat.getNegativePrefix())
+				&& "".equals(decimalFormat.getNegativeSuffix()) && symbols.getDecimalSeparator() == '.'
+				&& symbols.getZeroDigit() == '0';
+
+		return plain ? decimalFormat.getMaximumFractionDigits() : -1;
+	}
+
+	/**
+	 * Same result as the row level StringUtils.normalizeSpace for a value between two separators: leading
+	 * and trailing whitespace is dropped, inner whitespace runs become one space and non breaking spaces
+	 * become a space.
+	 *
+	 * @param value
+	 */
+	private void normalize(CharSequence value) {
+
+		text.setLength(0);
+
+		boolean pendingSpace = false;
+		int len = value.length();
+
+		for (int i = 0; i < len; i++) {
+
+			char c = value.charAt(i);
+
+			if (Character.isWhitespace(c)) {
+
+				pendingSpace = text.length() > 0;
+
+			} else {
+
+				if (pendingSpace) {
+
+					text.append(' ');
+					pendingSpace = false;
+				}
+
+				text.append(c == 160 ? ' ' : c);
+			}
+		}
+	}
+
+	private boolean putTyped(CharSequence value) {
+
+		int len = value.length();
+
+		if (len == 0 || len > 20) {
+			return false;
+		}
+
+		char first = value.charAt(0);
+
+		if (first == 't' || first == 'f') {
+
+			if ("true".contentEquals(value) || "false".contentEquals(value)) {
+
+				putBoolean(first == 't');
+				return true;
+			}
+
+			return false;
+		}
+
+		if (len >= 10 && value.charAt(4) == '-' && value.charAt(7) == '-') {
+
+			return putDateText(value);
+		}
+
+		return putNumberText(value);
+	}
+
+	private boolean putNumberText(CharSequence value) {
+
+		int len = value.length();
+		boolean negative = value.charAt(0) == '-';
+		int start = negative ? 1 : 0;
+		int point = -1;
+
+		for (int i = start; i < len; i++) {
+
+			char c = value.charAt(i);
+
+			if (c == '.' && point < 0) {
+
+				point = i;
+
+			} else if (c < '0' || c > '9') {
+
+				return false;
+			}
+		}
+
+		int intEnd = (point < 0) ? len : point;
+		int intDigits = intEnd - start;
+
+		// Only the forms Long.toString and DecimalFormat produce: no leading zeros, no empty parts
+		if (intDigits == 0 || (intDigits > 1 && value.charAt(start) == '0') || point == len - 1) {
+			return false;
+		}
+
+		if (point < 0) {
+
+			if (negative && intDigits == 1 && value.charAt(start) == '0') {
+				return false;
+			}
+
+			if (intDigits < 19) {
+
+				long parsed = parseDigits(value, start, len);
+				putLong(negative ? -parsed : parsed);
+				return true;
+			}
+
+			try {
+
+				putLong(Long.parseLong(value.toString()));
+				return true;
+
+			} catch (NumberFormatException e) {
+
+				return false;
+			}
+		}
+
+		if (len - start - 1 > 18) {
+			return false;
+		}
+
+		long magnitude = parseDigits(value, start, point) * (long) POWERS_OF_TEN[len - point - 1]
+				+ parseDigits(value, point + 1, len);
+
+		writeDecimal(len - point - 1, negative, magnitude);
+		return true;
+	}
+
+	private boolean putDateText(CharSequence value) {
+
+		int len = value.length();
+		boolean dateOnly = len == 10;
+
+		if (!dateOnly && !(len == 19 && value.charAt(10) == ' ' && value.charAt(13) == ':'
+				&& value.charAt(16) == ':')) {
+			return false;
+		}
+
+		for (int i = 0; i < len; i++) {
+
+			if (i != 4 && i != 7 && i != 10 && i != 13 && i != 16) {
+
+				char c = value.charAt(i);
+
+				if (c < '0' || c > '9') {
+					return false;
+				}
+			}
+		}
+
+		int year = (int) parseDigits(value, 0, 4);
+		int month = (int) parseDigits(value, 5, 7);
+		int day = (int) parseDigits(value, 8, 10);
+
+		if (dateOnly) {
+
+			return writeTimestamp(PRECISION_DAY, year, month, day, 0, 0, 0);
+		}
+
+		return writeTimestamp(PRECISION_SECOND, year, month, day, (int) parseDigits(value, 11, 13),
+				(int) parseDigits(value, 14, 16), (int) parseDigits(value, 17, 19));
+	}
+
+	private void writeDecimal(int scale, boolean negative, long magnitude) {
+
+		hasher.putByte(TAG_DECIMAL);
+		hasher.putByte(scale);
+		hasher.putByte(negative ? 1 : 0);
+		hasher.putLong(magnitude);
+	}
+
+	private boolean writeTimestamp(int precision, int year, int month, int day, int hour, int minute,
+			int second) {
+
+		if (year < 1 || year > 9999 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+				|| hour > 23 || minute > 59 || second > 59) {
+			return false;
+		}
+
+		long seconds = daysFromCivil(year, month, day) * 86400L + hour * 3600L + minute * 60L + second;
+
+		hasher.putByte(TAG_TIMESTAMP);
+		hasher.putByte(precision);
+		hasher.putLong(seconds * MICROS_PER_SECOND);
+
+		return true;
+	}
+
+	private static long parseDigits(CharSequence value, int start, int end) {
+
+		long result = 0;
+
+		for (int i = start; i < end; i++) {
+
+			result = result * 10 + (value.charAt(i) - '0');
+		}
+
+		return result;
+	}
+
+	private static boolean isBlank(String value) {
+
+		for (int i = 0; i < value.length(); i++) {
+
+			if (value.charAt(i) > ' ') {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static int daysInMonth(int year, int month) {
+
+		if (month == 2) {
+
+			boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+
+			return leap ? 29 : 28;
+		}
+
+		return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+	}
+
+	/**
+	 * Days since 1970-01-01 in the proleptic Gregorian calendar.
+	 */
+	private static long daysFromCivil(int year, int month, int day) {
+
+		long y = (month <= 2) ? year - 1 : year;
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+		return era * 146097 + dayOfEra - 719468;
+	}
+}
@@ -0,0 +1,113 @@
+package com.datacompare.model;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for KeyRange.
+ */
+public class KeyRangeTest extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public KeyRangeTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return
+     */
+    public static Test suite()
+    {
+        return new TestSuite( KeyRangeTest.class );
+    }
+
+    /**
+     * A composite key compares lexicographically on Oracle and SQL Server and by row value on PostgreSQL.
+     */
+    public void testCompositeKey()
+    {
+        String[] columns = { "ACCOUNT_ID", "TXN_TS" };
+        Timestamp lower = Timestamp.valueOf( "2023-01-31 10:15:30.1234567" );
+        Timestamp upper = Timestamp.valueOf( "2023-02-01 00:00:00" );
+
+        KeyRange range = new KeyRange( null, "ACCOUNT_ID,TXN_TS", columns, new String[] { "NUMBER", "DATE" },
+                new Object[] { new BigDecimal( "7" ), lower }, new Object[] { new BigDecimal( "9" ), upper } );
+
+        assertEquals( "where ACCOUNT_ID >= 7 and (ACCOUNT_ID > 7 or (ACCOUNT_ID = 7 and TXN_TS > "
+                + "TO_DATE('2023-01-31 10:15:30', 'YYYY-MM-DD HH24:MI:SS'))) and ACCOUNT_ID <= 9 and "
+                + "(ACCOUNT_ID < 9 or (ACCOUNT_ID = 9 and TXN_TS <= "
+                + "TO_DATE('2023-02-01 00:00:00', 'YYYY-MM-DD HH24:MI:SS'))) order by ACCOUNT_ID,TXN_TS",
+                range.getChunk( "ORACLE", null ) );
+
+        assertEquals( "where (ACCOUNT_ID, TXN_TS) > (7, '2023-01-31 10:15:30.123457') and "
+                + "(ACCOUNT_ID, TXN_TS) <= (9, '2023-02-01 00:00:00.000000') order by ACCOUNT_ID,TXN_TS",
+                range.getChunk( "POSTGRESQL", null ) );
+    }
+
+    /**
+     * String keys are quoted and compared in binary collation, the first and last chunk are open.
+     */
+    public void testStringKey()
+    {
+        String[] columns = { "ID" };
+        Set<String> collateColumns = Collections.singleton( "ID" );
+
+        KeyRange first = new KeyRange( "STATUS = 'A'", "ID", columns, new String[] { "nvarchar" }, null,
+                new Object[] { "O'Brien" } );
+
+        assertEquals( "where STATUS = 'A' and ID COLLATE Latin1_General_BIN2 <= N'O''Brien' order by ID",
+                first.getChunk( "SQLSERVER", collateColumns ) );
+        assertEquals( "where STATUS = 'A' and ID COLLATE \"C\" <= 'O''Brien' order by ID",
+                first.getChunk( "POSTGRESQL", collateColumns ) );
+
+        KeyRange whole = new KeyRange( null, "ID", columns, new String[] { "varchar" }, null, null );
+
+        assertEquals( "order by ID", whole.getChunk( "SQLSERVER", collateColumns ) );
+    }
+
+    /**
+     * A uniqueidentifier is compared natively on SQL Server and by its SQL Server byte order on PostgreSQL.
+     */
+    public void testGuidKey()
+    {
+        KeyRange range = new KeyRange( null, "ID", new String[] { "ID" }, new String[] { "uniqueidentifier" },
+                new Object[] { "00112233-4455-6677-8899-AABBCCDDEEFF" }, null );
+
+        assertEquals( "where ID > '00112233-4455-6677-8899-AABBCCDDEEFF' order by ID",
+                range.getChunk( "SQLSERVER", null ) );
+
+        String hex = "replace(lower(ID::text), '-', '')";
+
+        assertEquals( "where (substr(" + hex + ", 21, 12) || substr(" + hex + ", 17, 4) || substr(" + hex
+                + ", 15, 2) || substr(" + hex + ", 13, 2) || substr(" + hex + ", 11, 2) || substr(" + hex
+                + ", 9, 2) || substr(" + hex + ", 7, 2) || substr(" + hex + ", 5, 2) || substr(" + hex
+                + ", 3, 2) || substr(" + hex + ", 1, 2)) COLLATE \"C\" > 'aabbccddeeff88997766554433221100' "
+                + "order by ID", range.getChunk( "POSTGRESQL", null, new String[] { "uuid" } ) );
+    }
+
+    /**
+     * A RAW key is compared byte by byte, as it is on uuid and bytea columns.
+     */
+    public void testRawKey()
+    {
+        KeyRange range = new KeyRange( null, "ID", new String[] { "ID" }, new String[] { "RAW" }, null,
+                new Object[] { new byte[] { 0x0a, (byte) 0xff } } );
+
+        assertEquals( "where ID <= HEXTORAW('0AFF') order by ID", range.getChunk( "ORACLE", null ) );
+        assertEquals( "where ID <= '0aff'::uuid order by ID",
+                range.getChunk( "POSTGRESQL", null, new String[] { "uuid" } ) );
+        assertEquals( "where ID <= '\\x0aff'::bytea order by ID",
+                range.getChunk( "POSTGRESQL", null, new String[] { "bytea" } ) );
+    }
+}
@@ -0,0 +1,126 @@
+package com.datacompare.service;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.datacompare.model.ChunkOutcome;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for ChunkCheckpoint.
+ */
+public class ChunkCheckpointTest extends TestCase
+{
+    private static final String OPTIONS = "{filter=id > 0, fetchSize=10000}";
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ChunkCheckpointTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ChunkCheckpointTest.class );
+    }
+
+    /**
+     * A resumed checkpoint returns the first plan and the completed chunks, also after an incomplete line.
+     */
+    public void testResume() throws IOException
+    {
+        File file = File.createTempFile( "chunks", ".checkpoint" );
+        file.deleteOnExit();
+
+        List<String> plan = Arrays.asList( "where key1 >= 1 and key1 <= 10 order by 1",
+                "where key1 > 10 and key1 <= 20 order by 1" );
+
+        List<String> targetPlan = Arrays.asList( "where key1 >= 1 and key1 <= 10 order by 1 /* target */",
+                "where key1 > 10 and key1 <= 20 order by 1 /* target */" );
+
+        ChunkCheckpoint checkpoint = new ChunkCheckpoint( file );
+        assertEquals( plan, checkpoint.start( plan, targetPlan, OPTIONS, false ) );
+
+        ChunkOutcome outcome = new ChunkOutcome( 1 );
+        outcome.setResult( "Failed" );
+        outcome.setSourceCount( 10 );
+        outcome.setTargetCount( 9 );
+        outcome.getSourceTimeTaken().add( Long.valueOf( 2 ) );
+        outcome.getFailTuple().add( "15" );
+        outcome.getSourceData().put( "15", "15 || abc" );
+        checkpoint.record( outcome );
+
+        FileWriter writer = new FileWriter( file, true );
+        writer.write( "{\"chunkNo\":0,\"res" );
+        writer.close();
+
+        ChunkCheckpoint resumed = new ChunkCheckpoint( file );
+        List<String> newPlan = Arrays.asList( "where key1 >= 1 order by 1" );
+        assertEquals( plan, resumed.start( newPlan, newPlan, OPTIONS, true ) );
+        assertEquals( targetPlan, resumed.getTargetChunks() );
+        assertNull( resumed.getOutcome( 0 ) );
+
+        ChunkOutcome completed = resumed.getOutcome( 1 );
+        assertEquals( "Failed", completed.getResult() );
+        assertEquals( 10, completed.getSourceCount() );
+        assertEquals( 9, completed.getTargetCount() );
+        assertEquals( Long.valueOf( 2 ), completed.getSourceTimeTaken().get( 0 ) );
+        assertEquals( "15", completed.getFailTuple().get( 0 ) );
+        assertEquals( "15 || abc", completed.getSourceData().get( "15" ) );
+    }
+
+    /**
+     * Without resume the checkpoint starts over with the new plan.
+     */
+    public void testStartOver() throws IOException
+    {
+        File file = File.createTempFile( "chunks", ".checkpoint" );
+        file.deleteOnExit();
+
+        ChunkCheckpoint checkpoint = new ChunkCheckpoint( file );
+        checkpoint.start( Arrays.asList( "a", "b" ), Arrays.asList( "a", "b" ), OPTIONS, false );
+        checkpoint.record( new ChunkOutcome( 0 ) );
+
+        List<String> plan = Arrays.asList( "c" );
+
+        ChunkCheckpoint restarted = new ChunkCheckpoint( file );
+        assertEquals( plan, restarted.start( plan, plan, OPTIONS, false ) );
+        assertNull( restarted.getOutcome( 0 ) );
+
+        ChunkCheckpoint resumed = new ChunkCheckpoint( file );
+        assertEquals( plan, resumed.start( Arrays.asList( "d" ), Arrays.asList( "d" ), OPTIONS, true ) );
+        assertNull( resumed.getOutcome( 0 ) );
+    }
+
+    /**
+     * A checkpoint made with other options is started over.
+     */
+    public void testOptionsChanged() throws IOException
+    {
+        File file = File.createTempFile( "chunks", ".checkpoint" );
+        file.deleteOnExit();
+
+        ChunkCheckpoint checkpoint = new ChunkCheckpoint( file );
+        checkpoint.start( Arrays.asList( "a", "b" ), Arrays.asList( "a", "b" ), OPTIONS, false );
+        checkpoint.record( new ChunkOutcome( 0 ) );
+
+        List<String> plan = Arrays.asList( "c" );
+
+        ChunkCheckpoint resumed = new ChunkCheckpoint( file );
+        assertEquals( plan, resumed.start( plan, plan, "{filter=id > 0, fetchSize=5000}", true ) );
+        assertNull( resumed.getOutcome( 0 ) );
+    }
+}
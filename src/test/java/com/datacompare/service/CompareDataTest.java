@@ -0,0 +1,175 @@
+package com.datacompare.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for CompareData.
+ */
+public class CompareDataTest extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public CompareDataTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return
+     */
+    public static Test suite()
+    {
+        return new TestSuite( CompareDataTest.class );
+    }
+
+    /**
+     * Rows of a table without unique key that only moved to another key do not fail.
+     */
+    public void testDuplicateValues()
+    {
+        Map<String, String> source = new LinkedHashMap<String, String>();
+        Map<String, String> target = new LinkedHashMap<String, String>();
+
+        source.put( "1", "a" );
+        source.put( "2", "a" );
+        source.put( "3", "a" );
+        source.put( "4", "b" );
+
+        target.put( "7", "a" );
+        target.put( "8", "b" );
+        target.put( "9", "c" );
+
+        CompareData compareData = new CompareData( source, target, 0, 1 );
+        compareData.run();
+
+        assertEquals( "Failed", compareData.getResult() );
+        assertEquals( 2, compareData.getSourceData().size() );
+        assertEquals( "a", compareData.getSourceData().get( "1" ) );
+        assertEquals( "a", compareData.getSourceData().get( "2" ) );
+        assertEquals( Collections.singletonMap( "9", "c" ), compareData.getTargetData() );
+    }
+
+    /**
+     * Same failed rows and failed row number as the previous quadratic comparison.
+     */
+    public void testSameAsQuadraticCompare()
+    {
+        Random random = new Random( 11 );
+
+        for ( int round = 0; round < 300; round++ )
+        {
+            Map<String, String> source = randomRows( random );
+            Map<String, String> target = randomRows( random );
+
+            Reference reference = new Reference();
+            Map<String, String> expectedSource = new HashMap<String, String>();
+            Map<String, String> expectedTarget = new HashMap<String, String>();
+            reference.compare( source, target, expectedSource );
+            reference.compare( target, source, expectedTarget );
+
+            CompareData compareData = new CompareData( new LinkedHashMap<String, String>( source ),
+                new LinkedHashMap<String, String>( target ), 0, 1 );
+            compareData.run();
+
+            assertEquals( expectedSource, compareData.getSourceData() );
+            assertEquals( expectedTarget, compareData.getTargetData() );
+            assertEquals( reference.result, compareData.getResult() );
+            assertEquals( reference.failedRowNumber, compareData.getfailedRowCount() );
+        }
+    }
+
+    /**
+     * Chunks large enough to be marked in parallel.
+     */
+    public void testLargeChunk()
+    {
+        Map<String, String> source = new HashMap<String, String>();
+        Map<String, String> target = new HashMap<String, String>();
+
+        for ( int i = 0; i < 120000; i++ )
+        {
+            source.put( String.valueOf( i ), "v" + ( i % 1000 ) );
+            target.put( String.valueOf( i ), "v" + ( i % 1000 ) );
+        }
+
+        target.put( "5", "x" );
+        target.remove( "7" );
+
+        CompareData compareData = new CompareData( source, target, 0, 1 );
+        compareData.run();
+
+        assertEquals( "Failed", compareData.getResult() );
+        assertEquals( 2, compareData.getSourceData().size() );
+        assertEquals( "v5", compareData.getSourceData().get( "5" ) );
+        assertEquals( "v7", compareData.getSourceData().get( "7" ) );
+        assertEquals( Collections.singletonMap( "5", "x" ), compareData.getTargetData() );
+    }
+
+    private Map<String, String> randomRows( Random random )
+    {
+        Map<String, String> rows = new LinkedHashMap<String, String>();
+        int size = random.nextInt( 40 );
+
+        for ( int i = 0; i < size; i++ )
+        {
+            rows.put( String.valueOf( random.nextInt( 60 ) ), "v" + random.nextInt( 8 ) );
+        }
+
+        return rows;
+    }
+
+    /**
+     * The comparison CompareData used before, with containsValue and Collections.frequency per row.
+     */
+    private static class Reference
+    {
+        private String result = "Completed";
+
+        private long tempRowNumber;
+
+        private long failedRowNumber;
+
+        private void compare( Map<String, String> data, Map<String, String> dataToCompare,
+            Map<String, String> failedEntry )
+        {
+            for ( Map.Entry<String, String> entry : data.entrySet() )
+            {
+                tempRowNumber++;
+
+                String content = entry.getValue();
+
+                if ( content.equals( dataToCompare.get( entry.getKey() ) ) )
+                {
+                    continue;
+                }
+
+                if ( dataToCompare.containsValue( content ) )
+                {
+                    int sourceCount = Collections.frequency( data.values(), content );
+                    int targetCount = Collections.frequency( dataToCompare.values(), content );
+
+                    if ( sourceCount <= targetCount
+                        || Collections.frequency( failedEntry.values(), content ) >= sourceCount - targetCount )
+                    {
+                        continue;
+                    }
+                }
+
+                result = "Failed";
+                failedRowNumber = tempRowNumber;
+                failedEntry.put( entry.getKey(), content );
+            }
+        }
+    }
+}
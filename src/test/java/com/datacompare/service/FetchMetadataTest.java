@@ -0,0 +1,138 @@
+package com.datacompare.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.datacompare.model.AppProperties;
+import com.datacompare.model.TableColumnMetadata;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for FetchMetadata.
+ */
+public class FetchMetadataTest extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FetchMetadataTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return
+     */
+    public static Test suite()
+    {
+        return new TestSuite( FetchMetadataTest.class );
+    }
+
+    /**
+     * Every database hashes the UTF-8 bytes of the same row text, whatever the type of the text columns.
+     */
+    public void testRowHashUtf8() throws Exception
+    {
+        String oracleRow = "TO_CHAR(TRUNC(ID), 'FM99999999999999999999999999999999999990') || '|' || TRIM(NAME) || '|'";
+
+        assertEquals( "LOWER(RAWTOHEX(STANDARD_HASH(UTL_I18N.STRING_TO_RAW(" + oracleRow
+                + ", 'AL32UTF8'), 'MD5'))) AS row_hash",
+                metadata( "ORACLE", "NVARCHAR2", false ).getRowHashColumn( source( "NVARCHAR2" ), false ) );
+
+        FetchMetadata utf8Database = metadata( "ORACLE", "NVARCHAR2", false );
+        utf8Database.setUtf8Database( true );
+
+        assertEquals( "LOWER(RAWTOHEX(STANDARD_HASH(TO_CHAR(" + oracleRow + "), 'MD5'))) AS row_hash",
+                utf8Database.getRowHashColumn( source( "NVARCHAR2" ), false ) );
+
+        assertEquals( "LOWER(CONVERT(VARCHAR(32), HASHBYTES('MD5', CAST(CAST(CONCAT(COALESCE(CONVERT(VARCHAR(60), "
+                + "CAST(ROUND(ID, 0, 1) AS DECIMAL(38, 0))), ''), '|', COALESCE(LTRIM(RTRIM(NAME)), ''), '|') "
+                + "AS NVARCHAR(MAX)) COLLATE Latin1_General_100_BIN2_UTF8 AS VARCHAR(MAX))), 2)) AS row_hash",
+                metadata( "SQLSERVER", "nvarchar", false ).getRowHashColumn( source( "nvarchar" ), false ) );
+
+        assertEquals( "md5(convert_to(COALESCE(id::text, '') || '|' || COALESCE(TRIM(name), '') || '|', 'UTF8')) "
+                + "AS row_hash", metadata( "POSTGRESQL", "varchar", true ).getRowHashColumn( source( "NVARCHAR2" ), true ) );
+    }
+
+    /**
+     * SQL Server before 2019 cannot convert text to UTF-8, only rows without text are hashed there.
+     */
+    public void testRowHashWithoutUtf8() throws Exception
+    {
+        FetchMetadata text = metadata( "SQLSERVER", "nvarchar", false );
+        text.setTextToUtf8( false );
+
+        assertNull( text.getRowHashColumn( source( "nvarchar" ), false ) );
+
+        FetchMetadata numbers = metadata( "SQLSERVER", "datetime", false );
+        numbers.setTextToUtf8( false );
+
+        assertEquals( "LOWER(CONVERT(VARCHAR(32), HASHBYTES('MD5', CONCAT(COALESCE(CONVERT(VARCHAR(60), "
+                + "CAST(ROUND(ID, 0, 1) AS DECIMAL(38, 0))), ''), '|', COALESCE(CONVERT(VARCHAR(19), NAME, 120), ''), "
+                + "'|')), 2)) AS row_hash", numbers.getRowHashColumn( source( "datetime" ), false ) );
+    }
+
+    /**
+     * Oracle builds the row text in a VARCHAR2, or a RAW when it converts to UTF-8, rows that may not fit are
+     * compared on the client, as are rows with columns missing on one side.
+     */
+    public void testRowHashTooLong() throws Exception
+    {
+        FetchMetadata oracle = metadata( "ORACLE", "NVARCHAR2", false );
+        oracle.getTableMetadataMap().get( "NAME" ).setColSize( 499 );
+
+        assertNull( oracle.getRowHashColumn( source( "NVARCHAR2" ), false ) );
+
+        oracle.setUtf8Database( true );
+
+        assertNotNull( oracle.getRowHashColumn( source( "NVARCHAR2" ), false ) );
+
+        FetchMetadata target = metadata( "POSTGRESQL", "varchar", true );
+        target.getTableMetadataMap().remove( "name" );
+
+        assertNull( target.getRowHashColumn( source( "NVARCHAR2" ), true ) );
+    }
+
+    private static Map<String, TableColumnMetadata> source( String textType )
+    {
+        return columns( textType, false );
+    }
+
+    private static Map<String, TableColumnMetadata> columns( String textType, boolean isTarget )
+    {
+        Map<String, TableColumnMetadata> columns = new LinkedHashMap<String, TableColumnMetadata>();
+
+        columns.put( isTarget ? "id" : "ID", column( isTarget ? "int4" : "NUMBER", "" ) );
+        columns.put( isTarget ? "name" : "NAME", column( textType, "" ) );
+
+        return columns;
+    }
+
+    private static TableColumnMetadata column( String columnType, String decimalFormat )
+    {
+        TableColumnMetadata column = new TableColumnMetadata();
+
+        column.setColumnType( columnType );
+        column.setColSize( 50 );
+        column.setDecimalFormat( decimalFormat );
+
+        return column;
+    }
+
+    private static FetchMetadata metadata( String dbType, String textType, boolean isTarget ) throws Exception
+    {
+        FetchMetadata metadata = new FetchMetadata( dbType, null, null, null, null, 0, null, null, false, null, null,
+                new AppProperties() );
+
+        metadata.setDbType( dbType );
+        metadata.setMaxTextSize( 500 );
+        metadata.setTableMetadataMap( columns( textType, isTarget ) );
+
+        return metadata;
+    }
+}
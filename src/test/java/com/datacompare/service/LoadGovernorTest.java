@@ -0,0 +1,78 @@
+package com.datacompare.service;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for LoadGovernor.
+ */
+public class LoadGovernorTest extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public LoadGovernorTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return
+     */
+    public static Test suite()
+    {
+        return new TestSuite( LoadGovernorTest.class );
+    }
+
+    /**
+     * The rate backs off when the database gets slower and recovers once the slower latency holds.
+     */
+    public void testBackOffAndRecover()
+    {
+        LoadGovernor governor = new LoadGovernor( "Test", 1000, 0 );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            governor.observe( 100, 100 * 1000L );
+        }
+
+        assertEquals( 1000, governor.getRowsPerSecond() );
+
+        governor.observe( 100, 100 * 10000L );
+        governor.observe( 100, 100 * 10000L );
+
+        assertTrue( governor.getRowsPerSecond() < 1000 );
+
+        for ( int i = 0; i < 20; i++ )
+        {
+            governor.observe( 100, 100 * 10000L );
+        }
+
+        assertTrue( governor.getRowsPerSecond() >= 100 );
+
+        for ( int i = 0; i < 100; i++ )
+        {
+            governor.observe( 100, 100 * 10000L );
+        }
+
+        assertEquals( 1000, governor.getRowsPerSecond() );
+    }
+
+    /**
+     * A take over the tokens left waits until the debt is refilled.
+     */
+    public void testAcquireWaits() throws Exception
+    {
+        LoadGovernor governor = new LoadGovernor( "Test", 1000, 0 );
+
+        long start = System.nanoTime();
+
+        governor.acquire( 1000, 0 );
+        governor.acquire( 100, 0 );
+
+        assertTrue( System.nanoTime() - start >= 80 * 1000000L );
+    }
+}
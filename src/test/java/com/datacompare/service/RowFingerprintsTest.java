@@ -0,0 +1,77 @@
+package com.datacompare.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for RowFingerprints.
+ */
+public class RowFingerprintsTest extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public RowFingerprintsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return
+     */
+    public static Test suite()
+    {
+        return new TestSuite( RowFingerprintsTest.class );
+    }
+
+    /**
+     * Rows stay reachable after other rows of their probe sequence are removed.
+     */
+    public void testPutAndRemove()
+    {
+        Random random = new Random( 5 );
+        RowFingerprints fingerprints = new RowFingerprints( 16 );
+        Map<String, Long> expected = new HashMap<String, Long>();
+
+        for ( int i = 0; i < 20000; i++ )
+        {
+            String key = String.valueOf( random.nextInt( 500 ) );
+
+            if ( random.nextBoolean() )
+            {
+                fingerprints.put( key, i, -i );
+                expected.put( key, Long.valueOf( i ) );
+            }
+            else
+            {
+                fingerprints.remove( key );
+                expected.remove( key );
+            }
+        }
+
+        assertEquals( expected.size(), fingerprints.size() );
+
+        for ( int i = 0; i < 500; i++ )
+        {
+            String key = String.valueOf( i );
+            int slot = fingerprints.indexOf( key );
+
+            if ( expected.containsKey( key ) )
+            {
+                assertTrue( slot >= 0 );
+                assertEquals( expected.get( key ).longValue(), fingerprints.highAt( slot ) );
+            }
+            else
+            {
+                assertEquals( -1, slot );
+            }
+        }
+    }
+}
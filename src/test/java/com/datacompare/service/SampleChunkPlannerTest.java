@@ -0,0 +1,79 @@
+package com.datacompare.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for SampleChunkPlanner.
+ */
+public class SampleChunkPlannerTest extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public SampleChunkPlannerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return
+     */
+    public static Test suite()
+    {
+        return new TestSuite( SampleChunkPlannerTest.class );
+    }
+
+    /**
+     * Boundaries split a skewed key distribution into equal shares and cover the whole key range.
+     */
+    public void testInterpolate()
+    {
+        // Half of the rows have keys up to 100, the other half up to 1000000
+        List<double[]> distribution = new ArrayList<double[]>();
+        distribution.add( new double[] { 1, 0 } );
+        distribution.add( new double[] { 100, 0.5 } );
+        distribution.add( new double[] { 1000000, 1 } );
+
+        long[] boundaries = SampleChunkPlanner.interpolate( distribution, 1, 1000000, 4 );
+
+        assertEquals( 5, boundaries.length );
+        assertEquals( 1, boundaries[0] );
+        assertEquals( 50, boundaries[1] );
+        assertEquals( 100, boundaries[2] );
+        assertEquals( 500050, boundaries[3] );
+        assertEquals( 1000000, boundaries[4] );
+    }
+
+    /**
+     * Boundaries stay ascending when there are more chunks than keys.
+     */
+    public void testFewKeys()
+    {
+        List<double[]> distribution = new ArrayList<double[]>();
+        distribution.add( new double[] { 7, 0 } );
+        distribution.add( new double[] { 9, 1 } );
+
+        long[] boundaries = SampleChunkPlanner.interpolate( distribution, 7, 9, 10 );
+
+        assertEquals( 7, boundaries[0] );
+        assertEquals( 9, boundaries[boundaries.length - 1] );
+
+        for ( int i = 1; i < boundaries.length; i++ )
+        {
+            assertTrue( boundaries[i] > boundaries[i - 1] );
+        }
+
+        long[] single = SampleChunkPlanner.interpolate( distribution, 7, 7, 1 );
+
+        assertEquals( 2, single.length );
+        assertEquals( 7, single[0] );
+        assertEquals( 7, single[1] );
+    }
+}
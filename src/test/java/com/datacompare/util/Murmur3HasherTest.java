@@ -0,0 +1,68 @@
+package com.datacompare.util;
+
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for Murmur3Hasher.
+ */
+public class Murmur3HasherTest extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public Murmur3HasherTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return
+     */
+    public static Test suite()
+    {
+        return new TestSuite( Murmur3HasherTest.class );
+    }
+
+    /**
+     *
+     */
+    public void testKnownValue()
+    {
+        Murmur3Hasher hasher = new Murmur3Hasher();
+
+        hasher.putUtf8( "The quick brown fox jumps over the lazy dog" );
+        hasher.finish();
+
+        assertEquals( "6c1b07bc7bbc4be347939ac4a93c437a", hasher.toHex() );
+    }
+
+    /**
+     *
+     */
+    public void testIncrementalInputMatchesBytes()
+    {
+        String value = " || 1 || café || 2020-01-01 00:00:00 || 😀 ||";
+
+        Murmur3Hasher hasher = new Murmur3Hasher();
+
+        hasher.putUtf8( value );
+        hasher.finish();
+
+        String expected = hasher.toHex();
+
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+
+        hasher.reset();
+        hasher.putBytes( bytes, 0, 5 );
+        hasher.putBytes( bytes, 5, bytes.length - 5 );
+        hasher.finish();
+
+        assertEquals( expected, hasher.toHex() );
+    }
+}
@@ -0,0 +1,140 @@
+package com.datacompare.util;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for RowEncoder.
+ */
+public class RowEncoderTest extends TestCase
+{
+    private RowEncoder encoder = new RowEncoder();
+
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public RowEncoderTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return
+     */
+    public static Test suite()
+    {
+        return new TestSuite( RowEncoderTest.class );
+    }
+
+    /**
+     *
+     */
+    public void testDecimalMatchesFormattedText()
+    {
+        DecimalFormat decimalFormat = new DecimalFormat( "##########0.00" );
+        decimalFormat.setGroupingUsed( false );
+
+        int scale = RowEncoder.decimalScale( decimalFormat );
+
+        assertEquals( 2, scale );
+
+        Random random = new Random( 42 );
+
+        double[] values = { 0, -0.0, -0.001, 0.165, 0.125, 1.005, -2.5, 123456.785, 1e15 + 0.5, 12345678901234567e9 };
+
+        for ( double value : values )
+        {
+            assertEquals( String.valueOf( value ), textHash( decimalFormat.format( value ) ), decimalHash( value, decimalFormat, scale ) );
+        }
+
+        for ( int i = 0; i < 10000; i++ )
+        {
+            double value = Math.round( ( random.nextDouble() - 0.5 ) * 1e8 ) / 1000.0;
+
+            assertEquals( String.valueOf( value ), textHash( decimalFormat.format( value ) ), decimalHash( value, decimalFormat, scale ) );
+        }
+    }
+
+    /**
+     *
+     */
+    public void testTimestampMatchesFormattedText()
+    {
+        SimpleDateFormat dateFormat = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss" );
+        Calendar calendar = (Calendar) dateFormat.getCalendar().clone();
+
+        Random random = new Random( 7 );
+
+        for ( int i = 0; i < 1000; i++ )
+        {
+            Date date = new Date( ( random.nextLong() % 200000000000000L ) );
+
+            calendar.setTime( date );
+
+            encoder.startRow();
+
+            if ( !encoder.putTimestamp( calendar, false ) )
+            {
+                encoder.putText( dateFormat.format( date ) );
+            }
+
+            encoder.finishRow();
+
+            assertEquals( dateFormat.format( date ), textHash( dateFormat.format( date ) ), encoder.getHasher().toHex() );
+        }
+    }
+
+    /**
+     *
+     */
+    public void testTextNormalization()
+    {
+        assertEquals( textHash( "a b" ), textHash( "  a \t\n b " ) );
+        assertEquals( textHash( "" ), textHash( " \t " ) );
+        assertEquals( textHash( "0" ), longHash( 0 ) );
+        assertEquals( textHash( "-42" ), longHash( -42 ) );
+
+        assertFalse( textHash( "a b" ).equals( textHash( "a b c" ) ) );
+        assertFalse( textHash( "1.50" ).equals( textHash( "1.5" ) ) );
+        assertFalse( textHash( "-0.00" ).equals( textHash( "0.00" ) ) );
+        assertFalse( textHash( "-0" ).equals( longHash( 0 ) ) );
+        assertFalse( textHash( "007" ).equals( longHash( 7 ) ) );
+        assertFalse( textHash( "2020-02-30" ).equals( textHash( "2020-03-01" ) ) );
+    }
+
+    private String textHash( String text )
+    {
+        encoder.startRow();
+        encoder.putText( text );
+        encoder.finishRow();
+
+        return encoder.getHasher().toHex();
+    }
+
+    private String longHash( long value )
+    {
+        encoder.startRow();
+        encoder.putLong( value );
+        encoder.finishRow();
+
+        return encoder.getHasher().toHex();
+    }
+
+    private String decimalHash( double value, DecimalFormat decimalFormat, int scale )
+    {
+        encoder.startRow();
+        encoder.putDecimal( value, decimalFormat, scale );
+        encoder.finishRow();
+
+        return encoder.getHasher().toHex();
+    }
+}